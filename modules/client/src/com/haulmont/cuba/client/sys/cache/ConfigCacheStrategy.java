@@ -41,6 +41,7 @@ public class ConfigCacheStrategy implements CachingStrategy {
     private static final Logger log = LoggerFactory.getLogger(ConfigCacheStrategy.class);
 
     protected volatile Map<String, String> cachedProperties = null;
+    protected volatile long cachedVersion;
 
     @Inject
     protected ConfigStorageService configStorageService;
@@ -67,13 +68,13 @@ public class ConfigCacheStrategy implements CachingStrategy {
     @Override
     public Object loadObject() {
         if (cachedProperties == null || updateSynchronously) {
-            Map<String, String> cachedPropertiesFromServer = Collections.unmodifiableMap(configStorageService.getDbProperties());
-
-            cachedProperties = cachedPropertiesFromServer;
+            long version = configStorageService.getDbPropertiesVersion();
+            if (cachedProperties == null || version != cachedVersion) {
+                cachedProperties = Collections.unmodifiableMap(configStorageService.getDbProperties());
+                cachedVersion = version;
+            }
             lastUsedTs = System.currentTimeMillis();
             cacheCleared = false;
-
-            cachedProperties = cachedPropertiesFromServer;
         } else {
             if (!backgroundUpdateTriggered) {
                 clientCacheManager.getExecutorService().submit(this::updateCacheInBackground);
@@ -95,12 +96,24 @@ public class ConfigCacheStrategy implements CachingStrategy {
         try {
             AppContext.setSecurityContext(new SecurityContext(userSession));
 
-            Map<String, String> cachedPropertiesFromServer =
-                    Collections.unmodifiableMap(configStorageService.getDbProperties());
+            // poll the version first and transfer the properties only if they have been changed on the server
+            long version = configStorageService.getDbPropertiesVersion();
+            Map<String, String> cachedPropertiesFromServer = null;
+            if (cachedProperties == null || version != cachedVersion) {
+                cachedPropertiesFromServer = Collections.unmodifiableMap(configStorageService.getDbProperties());
+            }
 
             readWriteLock.writeLock().lock();
             try {
-                cachedProperties = cachedPropertiesFromServer;
+                if (cacheCleared || cachedProperties == null) {
+                    // the cache has been cleared concurrently, the fetched properties may be outdated
+                    // so leave the cache cleared to be reloaded synchronously on the next access
+                    return;
+                }
+                if (cachedPropertiesFromServer != null) {
+                    cachedProperties = cachedPropertiesFromServer;
+                    cachedVersion = version;
+                }
                 lastUsedTs = System.currentTimeMillis();
                 cacheCleared = false;
             } finally {
@@ -124,7 +137,9 @@ public class ConfigCacheStrategy implements CachingStrategy {
 
     @Override
     public boolean needToReload() {
-        return cacheCleared || System.currentTimeMillis() - lastUsedTs > updateIntervalMs;
+        // while the background update is in progress the stale value is served without taking the write lock
+        return cacheCleared
+                || (!backgroundUpdateTriggered && System.currentTimeMillis() - lastUsedTs > updateIntervalMs);
     }
 
     public long getUpdateIntervalMs() {
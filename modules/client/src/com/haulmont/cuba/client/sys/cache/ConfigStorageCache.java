@@ -38,6 +38,11 @@ public class ConfigStorageCache implements ConfigStorageService {
         return getClientCacheManager().getCached(ConfigCacheStrategy.NAME);
     }
 
+    @Override
+    public long getDbPropertiesVersion() {
+        return getService().getDbPropertiesVersion();
+    }
+
     @Override
     public String getDbProperty(String name) {
         return getDbProperties().get(name);
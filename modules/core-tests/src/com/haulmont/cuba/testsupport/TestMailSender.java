@@ -22,9 +22,11 @@ import junit.framework.Assert;
 import org.springframework.mail.MailException;
 import org.springframework.mail.MailSendException;
 
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
 import javax.mail.internet.MimeMessage;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Used by functional tests.
@@ -36,6 +38,8 @@ public class TestMailSender extends CubaMailSender {
 
     private boolean mustFail;
 
+    private Set<String> failingAddresses = new HashSet<>();
+
     public void clearBuffer() {
         myMessages.clear();
     }
@@ -57,6 +61,34 @@ public class TestMailSender extends CubaMailSender {
         myMessages.add(mimeMessage);
     }
 
+    @Override
+    public void send(MimeMessage... mimeMessages) throws MailException {
+        if (mustFail) {
+            throw new MailSendException("Smtp server not available");
+        }
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        for (MimeMessage mimeMessage : mimeMessages) {
+            if (hasFailingAddress(mimeMessage)) {
+                failedMessages.put(mimeMessage, new SendFailedException("Address rejected"));
+            } else {
+                myMessages.add(mimeMessage);
+            }
+        }
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    private boolean hasFailingAddress(MimeMessage mimeMessage) {
+        try {
+            Address[] recipients = mimeMessage.getAllRecipients();
+            return recipients != null && Arrays.stream(recipients)
+                    .anyMatch(address -> failingAddresses.contains(address.toString()));
+        } catch (MessagingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public boolean isEmpty() {
         return myMessages.isEmpty();
     }
@@ -67,5 +99,10 @@ public class TestMailSender extends CubaMailSender {
 
     public void workNormallyPlease() {
         this.mustFail = false;
+        this.failingAddresses.clear();
+    }
+
+    public void failAddressPlease(String address) {
+        this.failingAddresses.add(address);
     }
 }
@@ -66,4 +66,20 @@ public interface ClusterConfig extends Config {
     @Property("cuba.cluster.messageSendingQueueCapacity")
     @DefaultInt(Integer.MAX_VALUE)
     int getClusterMessageSendingQueueCapacity();
+
+    /**
+     * @return maximum size in bytes of a frame containing several messages sent to the cluster together.
+     * 0 disables batching, so each message is sent in a separate frame
+     */
+    @Property("cuba.cluster.messageBatchMaxSize")
+    @DefaultInt(60000)
+    int getMessageBatchMaxSize();
+
+    /**
+     * @return time in milliseconds to wait for more messages before sending queued messages to the cluster.
+     * By default the messages queued at the moment of sending are sent without waiting
+     */
+    @Property("cuba.cluster.messageBatchMaxDelay")
+    @DefaultInt(0)
+    int getMessageBatchMaxDelay();
 }
@@ -16,6 +16,12 @@
  */
 package com.haulmont.cuba.core.app;
 
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * Interface to be implemented by middleware cluster listeners. A cluster listener receives messages from other nodes
  * in the cluster.
@@ -50,4 +56,32 @@ public interface ClusterListener<T> {
      * @param state byte array containing the state
      */
     void setState(byte[] state);
+
+    /**
+     * Write state of this cluster node to the stream sent to a joining node.
+     *
+     * <p>The clustering implementation sends the stream in chunks, so listeners with large state should override
+     * this method to write the state incrementally instead of building it in memory. The default implementation
+     * writes the result of {@link #getState()}.</p>
+     *
+     * @param output stream to write the state to
+     */
+    default void getState(OutputStream output) throws IOException {
+        byte[] state = getState();
+        if (state != null) {
+            output.write(state);
+        }
+    }
+
+    /**
+     * Set state of this cluster node reading it from the stream written by {@link #getState(OutputStream)}
+     * on other active node.
+     *
+     * <p>The default implementation reads the whole stream and passes it to {@link #setState(byte[])}.</p>
+     *
+     * @param input stream containing the state
+     */
+    default void setState(InputStream input) throws IOException {
+        setState(IOUtils.toByteArray(input));
+    }
 }
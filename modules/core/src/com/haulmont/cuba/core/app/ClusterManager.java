@@ -26,6 +26,9 @@ import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.events.AppContextInitializedEvent;
 import com.haulmont.cuba.core.sys.events.AppContextStoppedEvent;
 import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
 import org.jgroups.*;
 import org.jgroups.conf.XmlConfigurator;
 import org.jgroups.jmx.JmxConfigurator;
@@ -43,10 +46,9 @@ import javax.inject.Inject;
 import javax.management.MBeanServer;
 import java.io.*;
 import java.lang.management.ManagementFactory;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
@@ -65,6 +67,20 @@ public class ClusterManager implements ClusterManagerAPI {
 
     protected ThreadPoolExecutor executor;
 
+    /**
+     * Messages waiting to be sent asynchronously. They are sent in batches by a single task submitted to
+     * {@link #executor} when {@link #sendingScheduled} is set.
+     */
+    protected BlockingQueue<Serializable> sendQueue;
+
+    protected AtomicBoolean sendingScheduled = new AtomicBoolean();
+
+    protected LongAdder droppedMessages = new LongAdder();
+
+    protected LongAdder coalescedMessages = new LongAdder();
+
+    protected LongAdder sentBatches = new LongAdder();
+
     @Inject
     protected Resources resources;
 
@@ -79,6 +95,10 @@ public class ClusterManager implements ClusterManagerAPI {
 
     protected static final String STATE_MAGIC = "CUBA_STATE";
 
+    protected static final String CHUNKED_STATE_MAGIC = "CUBA_CHUNKED_STATE";
+
+    protected static final int STATE_CHUNK_SIZE = 64 * 1024;
+
     public JChannel getChannel() {
         return channel;
     }
@@ -86,12 +106,13 @@ public class ClusterManager implements ClusterManagerAPI {
     @PostConstruct
     protected void init() {
         int nThreads = clusterConfig.getClusterMessageSendingThreadPoolSize();
+        sendQueue = new LinkedBlockingQueue<>(clusterConfig.getClusterMessageSendingQueueCapacity());
         executor = new ThreadPoolExecutor(nThreads, nThreads,
-                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(clusterConfig.getClusterMessageSendingQueueCapacity()),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
                 new ThreadFactoryBuilder().setNameFormat("ClusterManagerMessageSender-%d").build(),
                 (r, executor) -> {
-                    SendMessageRunnable sendMessageRunnable = (SendMessageRunnable) r;
-                    log.info("Queue capacity is exceeded. Message: {}: {}", sendMessageRunnable.message.getClass(), sendMessageRunnable.message);
+                    log.warn("Sending of queued cluster messages is rejected, {} messages in queue", sendQueue.size());
+                    sendingScheduled.set(false);
                 });
     }
 
@@ -118,8 +139,18 @@ public class ClusterManager implements ClusterManagerAPI {
         if (sync != null && sync) {
             internalSend(message, true);
         } else {
-            log.trace("Submitting message: {}: {} to send asynchronously", message.getClass(), message);
-            executor.execute(new SendMessageRunnable(message));
+            queueMessage(message);
+        }
+    }
+
+    protected void queueMessage(Serializable message) {
+        log.trace("Submitting message: {}: {} to send asynchronously", message.getClass(), message);
+        if (sendQueue.offer(message)) {
+            scheduleSending();
+        } else {
+            droppedMessages.increment();
+            log.warn("Queue capacity is exceeded, {} messages dropped in total. Message: {}: {}",
+                    droppedMessages.sum(), message.getClass(), message);
         }
     }
 
@@ -134,30 +165,117 @@ public class ClusterManager implements ClusterManagerAPI {
     protected void internalSend(Serializable message, boolean sync) {
         StopWatch sw = new Slf4JStopWatch(String.format("sendClusterMessage(%s)", message.getClass().getSimpleName()));
         try {
-            byte[] bytes;
+            sendBytes(serialize(message), sync);
+        } finally {
+            sw.stop();
+        }
+    }
+
+    protected byte[] serialize(Serializable message) {
+        byte[] bytes;
+        try {
+            bytes = SerializationSupport.serialize(message);
+        } catch (Exception e) {
+            log.error("Cluster message serialization error", e);
+            throw new RuntimeException("Cluster message serialization error", e);
+        }
+        log.debug("Sending message: {}: {} ({} bytes)", message.getClass(), message, bytes.length);
+        MessageStat stat = messagesStat.get(message.getClass().getName());
+        if (stat != null) {
+            stat.updateSent(bytes.length);
+        }
+        return bytes;
+    }
+
+    protected void sendBytes(byte[] bytes, boolean sync) {
+        JChannel channel = this.channel;
+        if (channel == null)
+            return;
+
+        Message msg = new Message()
+                .setBuffer(bytes);
+        if (sync) {
+            msg.setFlag(Message.Flag.RSVP);
+        }
+        try {
+            channel.send(msg);
+        } catch (Exception e) {
+            log.error("Error sending message", e);
+        }
+    }
+
+    protected void scheduleSending() {
+        if (sendingScheduled.compareAndSet(false, true)) {
+            executor.execute(new SendQueuedMessagesRunnable());
+        }
+    }
+
+    /**
+     * Sends all queued messages, packing them into frames of up to {@link ClusterConfig#getMessageBatchMaxSize()}
+     * bytes. Equal {@link IdempotentClusterMessage}s are sent once per frame.
+     */
+    protected void sendQueuedMessages() {
+        int maxDelay = clusterConfig.getMessageBatchMaxDelay();
+        if (maxDelay > 0) {
             try {
-                bytes = SerializationSupport.serialize(message);
-            } catch (Exception e) {
-                log.error("Cluster message serialization error", e);
-                throw new RuntimeException("Cluster message serialization error", e);
+                Thread.sleep(maxDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            log.debug("Sending message: {}: {} ({} bytes)", message.getClass(), message, bytes.length);
-            MessageStat stat = messagesStat.get(message.getClass().getName());
-            if (stat != null) {
-                stat.updateSent(bytes.length);
+        }
+
+        int maxSize = clusterConfig.getMessageBatchMaxSize();
+        List<byte[]> batch = new ArrayList<>();
+        int batchSize = 0;
+        Set<Serializable> batchMessages = new HashSet<>();
+
+        Serializable message;
+        while ((message = sendQueue.poll()) != null) {
+            if (message instanceof IdempotentClusterMessage && !batchMessages.add(message)) {
+                log.trace("Coalesced message: {}: {}", message.getClass(), message);
+                coalescedMessages.increment();
+                continue;
             }
-            Message msg = new Message()
-                    .setBuffer(bytes);
-            if (sync) {
-                msg.setFlag(Message.Flag.RSVP);
+
+            byte[] bytes;
+            try {
+                bytes = serialize(message);
+            } catch (RuntimeException e) {
+                continue;
+            }
+
+            if (!batch.isEmpty() && batchSize + bytes.length > maxSize) {
+                sendBatch(batch);
+                batch = new ArrayList<>();
+                batchSize = 0;
+                // messages queued after the sent frame must not be coalesced with it
+                batchMessages.clear();
+                if (message instanceof IdempotentClusterMessage) {
+                    batchMessages.add(message);
+                }
             }
+            batch.add(bytes);
+            batchSize += bytes.length;
+        }
+        sendBatch(batch);
+    }
+
+    protected void sendBatch(List<byte[]> batch) {
+        if (batch.isEmpty())
+            return;
+
+        if (batch.size() == 1) {
+            sendBytes(batch.get(0), false);
+        } else {
+            StopWatch sw = new Slf4JStopWatch("sendClusterMessageBatch");
             try {
-                channel.send(msg);
-            } catch (Exception e) {
-                log.error("Error sending message", e);
+                byte[] bytes = SerializationSupport.serialize(new MessageBatch(batch));
+                log.debug("Sending batch of {} messages ({} bytes)", batch.size(), bytes.length);
+                sendBytes(bytes, false);
+                sentBatches.increment();
+            } finally {
+                sw.stop();
             }
-        } finally {
-            sw.stop();
         }
     }
 
@@ -275,7 +393,17 @@ public class ClusterManager implements ClusterManagerAPI {
 
     @Override
     public int getMessagesCount() {
-        return executor.getQueue().size();
+        return sendQueue.size();
+    }
+
+    @Override
+    public long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    @Override
+    public long getCoalescedMessages() {
+        return coalescedMessages.sum();
     }
 
     @Override
@@ -321,16 +449,20 @@ public class ClusterManager implements ClusterManagerAPI {
     public String printSharedStateStat() {
         StringBuilder clusterStateStat = new StringBuilder();
         for (Map.Entry<String, ClusterListener> entry : listeners.entrySet()) {
-            byte[] data;
+            long size;
             StopWatch sw = new StopWatch();
-            try {
-                data = entry.getValue().getState();
+            try (CountingOutputStream output = new CountingOutputStream(new NullOutputStream())) {
+                entry.getValue().getState(output);
+                size = output.getByteCount();
+            } catch (IOException e) {
+                log.error("Error getting state: {}", entry.getKey(), e);
+                size = -1;
             } finally {
                 sw.stop();
             }
             clusterStateStat
                     .append(String.format("State: %s, size: %s bytes, serialize time: %s ms\n",
-                            entry.getKey(), data != null ? data.length : -1, sw.getElapsedTime()));
+                            entry.getKey(), size, sw.getElapsedTime()));
         }
         return clusterStateStat.toString();
     }
@@ -347,6 +479,8 @@ public class ClusterManager implements ClusterManagerAPI {
                                 stat.getSentMessages(), stat.getSentBytes()));
             }
         }
+        messagesStats.append(String.format("Batches sent: %s; messages coalesced: %s, dropped: %s\n",
+                sentBatches.sum(), coalescedMessages.sum(), droppedMessages.sum()));
         return messagesStats.toString();
     }
 
@@ -399,6 +533,10 @@ public class ClusterManager implements ClusterManagerAPI {
                 log.debug("Null buffer received");
                 return;
             }
+            receiveBytes(bytes);
+        }
+
+        protected void receiveBytes(byte[] bytes) {
             StopWatch sw = new Slf4JStopWatch();
             String simpleClassName = null;
             try {
@@ -409,6 +547,14 @@ public class ClusterManager implements ClusterManagerAPI {
                     log.error("Cluster message deserialization error", e);
                     throw new RuntimeException("Cluster message deserialization error", e);
                 }
+                if (data instanceof MessageBatch) {
+                    List<byte[]> messages = ((MessageBatch) data).messages;
+                    log.debug("Received batch of {} messages ({} bytes)", messages.size(), bytes.length);
+                    for (byte[] message : messages) {
+                        receiveBytes(message);
+                    }
+                    return;
+                }
                 String className = data.getClass().getName();
                 simpleClassName = data.getClass().getSimpleName();
                 log.debug("Received message: {}: {} ({} bytes)", data.getClass(), data, bytes.length);
@@ -435,31 +581,26 @@ public class ClusterManager implements ClusterManagerAPI {
         @Override
         public void getState(OutputStream output) {
             log.debug("Sending state");
-            try (DataOutputStream out = new DataOutputStream(output)) {
-                Map<String, byte[]> state = new HashMap<>();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output))) {
+                out.writeUTF(CHUNKED_STATE_MAGIC);
                 for (Map.Entry<String, ClusterListener> entry : listeners.entrySet()) {
-                    byte[] data;
+                    out.writeBoolean(true);
+                    out.writeUTF(entry.getKey());
+
+                    StateChunkOutputStream chunks = new StateChunkOutputStream(out, STATE_CHUNK_SIZE);
                     StopWatch sw = new Slf4JStopWatch(String.format("getClusterState(%s)", entry.getKey()));
                     try {
-                        data = entry.getValue().getState();
+                        entry.getValue().getState(chunks);
+                        chunks.finish();
+                        log.debug("Sending state: {} ({} bytes)", entry.getKey(), chunks.getCount());
+                    } catch (RuntimeException | IOException e) {
+                        log.error("Error sending state: {}", entry.getKey(), e);
+                        chunks.abort();
                     } finally {
                         sw.stop();
                     }
-                    if (data != null && data.length > 0) {
-                        state.put(entry.getKey(), data);
-                    }
-                }
-
-                if (state.size() > 0) {
-                    out.writeUTF(STATE_MAGIC);
-                    out.writeInt(state.size());
-                    for (Map.Entry<String, byte[]> entry : state.entrySet()) {
-                        log.debug("Sending state: {} ({} bytes)", entry.getKey(), entry.getValue().length);
-                        out.writeUTF(entry.getKey());
-                        out.writeInt(entry.getValue().length);
-                        out.write(entry.getValue());
-                    }
                 }
+                out.writeBoolean(false);
             } catch (RuntimeException | IOException e) {
                 log.error("Error sending state", e);
             }
@@ -479,37 +620,66 @@ public class ClusterManager implements ClusterManagerAPI {
                     return;
 
                 String magic = in.readUTF();
-                if (!STATE_MAGIC.equals(magic)) {
+                if (CHUNKED_STATE_MAGIC.equals(magic)) {
+                    receiveChunkedState(in);
+                } else if (STATE_MAGIC.equals(magic)) {
+                    receiveState(in);
+                } else {
                     log.debug("Invalid magic in state received");
                     return;
                 }
-                int count = in.readInt();
-                for (int i = 0; i < count; i++) {
-                    String name = in.readUTF();
-                    int len = in.readInt();
-                    StopWatch sw = new Slf4JStopWatch(String.format("setClusterState(%s)", name));
-                    try {
-                        log.debug("Receiving state: {} ({} bytes)", name, len);
-                        byte[] data = new byte[len];
-                        int c = in.read(data);
-                        if (c != len) {
-                            log.error("Error receiving state: invalid data length");
-                            return;
-                        }
-                        ClusterListener listener = listeners.get(name);
-                        if (listener != null) {
-                            listener.setState(data);
-                        }
-                    } finally {
-                        sw.stop();
-                    }
-                }
                 log.debug("State received");
             } catch (Exception e) {
                 log.error("Error receiving state", e);
             }
         }
 
+        protected void receiveChunkedState(DataInputStream in) throws IOException {
+            while (in.readBoolean()) {
+                String name = in.readUTF();
+                StateChunkInputStream chunks = new StateChunkInputStream(in);
+                StopWatch sw = new Slf4JStopWatch(String.format("setClusterState(%s)", name));
+                try {
+                    ClusterListener listener = listeners.get(name);
+                    if (listener != null && !chunks.isEmpty()) {
+                        listener.setState(chunks);
+                    }
+                } catch (RuntimeException | IOException e) {
+                    log.error("Error receiving state: {}", name, e);
+                } finally {
+                    // skip the rest of the state not read by the listener to get to the next one
+                    chunks.skipRemaining();
+                    sw.stop();
+                }
+                log.debug("Received state: {} ({} bytes)", name, chunks.getCount());
+            }
+        }
+
+        /**
+         * Receives state in the format used by nodes not supporting chunked state transfer. Such nodes send
+         * the result of {@link ClusterListener#getState()}, so it is passed to {@link ClusterListener#setState(byte[])}
+         * which reads the same format.
+         */
+        protected void receiveState(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int len = in.readInt();
+                StopWatch sw = new Slf4JStopWatch(String.format("setClusterState(%s)", name));
+                try {
+                    log.debug("Receiving state: {} ({} bytes)", name, len);
+                    byte[] data = new byte[len];
+                    in.readFully(data);
+                    ClusterListener listener = listeners.get(name);
+                    if (listener != null) {
+                        listener.setState(data);
+                    }
+                } finally {
+                    sw.stop();
+                }
+            }
+        }
+
         @Override
         public void block() {
         }
@@ -519,16 +689,30 @@ public class ClusterManager implements ClusterManagerAPI {
         }
     }
 
-    protected class SendMessageRunnable implements Runnable {
-        protected Serializable message;
-
-        public SendMessageRunnable(Serializable message) {
-            this.message = message;
-        }
-
+    protected class SendQueuedMessagesRunnable implements Runnable {
         @Override
         public void run() {
-            internalSend(message, false);
+            try {
+                sendQueuedMessages();
+            } finally {
+                sendingScheduled.set(false);
+                if (!sendQueue.isEmpty()) {
+                    scheduleSending();
+                }
+            }
+        }
+    }
+
+    /**
+     * Frame containing several serialized messages sent to the cluster together.
+     */
+    public static class MessageBatch implements Serializable {
+        private static final long serialVersionUID = 4625021917043625542L;
+
+        protected final List<byte[]> messages;
+
+        public MessageBatch(List<byte[]> messages) {
+            this.messages = messages;
         }
     }
 
@@ -564,4 +748,164 @@ public class ClusterManager implements ClusterManagerAPI {
             return receivedMessages.longValue();
         }
     }
+
+    /**
+     * Writes the state of a single listener as a sequence of chunks, each prefixed with its length.
+     * The sequence ends with zero length, or with -1 if the listener has failed to write its state.
+     */
+    protected static class StateChunkOutputStream extends OutputStream {
+        protected final DataOutputStream out;
+        protected final byte[] buffer;
+        protected int position;
+        protected long count;
+
+        public StateChunkOutputStream(DataOutputStream out, int chunkSize) {
+            this.out = out;
+            this.buffer = new byte[chunkSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position == buffer.length) {
+                writeChunk();
+            }
+            buffer[position++] = (byte) b;
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (position == buffer.length) {
+                    writeChunk();
+                }
+                int n = Math.min(len, buffer.length - position);
+                System.arraycopy(b, off, buffer, position, n);
+                position += n;
+                off += n;
+                len -= n;
+                count += n;
+            }
+        }
+
+        @Override
+        public void close() {
+            // the underlying stream is shared by all listeners
+        }
+
+        public void finish() throws IOException {
+            writeChunk();
+            out.writeInt(0);
+        }
+
+        public void abort() throws IOException {
+            position = 0;
+            out.writeInt(-1);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        protected void writeChunk() throws IOException {
+            if (position > 0) {
+                out.writeInt(position);
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
+
+    /**
+     * Reads the state of a single listener written by {@link StateChunkOutputStream}.
+     */
+    protected static class StateChunkInputStream extends InputStream {
+        protected final DataInputStream in;
+        protected int remaining;
+        protected boolean finished;
+        protected boolean aborted;
+        protected long count;
+
+        public StateChunkInputStream(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of state");
+            }
+            remaining--;
+            count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int n = in.read(b, off, Math.min(len, remaining));
+            if (n < 0) {
+                throw new EOFException("Unexpected end of state");
+            }
+            remaining -= n;
+            count += n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return Math.min(remaining, in.available());
+        }
+
+        @Override
+        public void close() {
+            // the underlying stream is shared by all listeners
+        }
+
+        public boolean isEmpty() throws IOException {
+            return !hasNextChunk();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void skipRemaining() throws IOException {
+            while (hasNextChunk()) {
+                IOUtils.skipFully(in, remaining);
+                count += remaining;
+                remaining = 0;
+            }
+        }
+
+        protected boolean nextChunk() throws IOException {
+            boolean result = hasNextChunk();
+            if (aborted) {
+                throw new IOException("State transfer was aborted by the sending node");
+            }
+            return result;
+        }
+
+        protected boolean hasNextChunk() throws IOException {
+            while (remaining == 0 && !finished) {
+                int len = in.readInt();
+                if (len > 0) {
+                    remaining = len;
+                } else {
+                    finished = true;
+                    aborted = len < 0;
+                }
+            }
+            return remaining > 0;
+        }
+    }
 }
\ No newline at end of file
@@ -110,6 +110,16 @@ public interface ClusterManagerAPI {
      */
     int getMessagesCount();
 
+    /**
+     * @return count of messages not sent because the sending queue was full
+     */
+    long getDroppedMessages();
+
+    /**
+     * @return count of messages not sent because an equal {@link IdempotentClusterMessage} was sent in the same frame
+     */
+    long getCoalescedMessages();
+
     /**
      * Shared state statistics
      *
@@ -16,6 +16,8 @@
  */
 package com.haulmont.cuba.core.app;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.bali.db.ResultSetHandler;
 import com.haulmont.bali.util.Preconditions;
@@ -28,12 +30,13 @@ import org.slf4j.LoggerFactory;
 
 import org.springframework.stereotype.Component;
 import javax.inject.Inject;
-import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -52,14 +55,26 @@ public class ConfigStorage implements ConfigStorageAPI {
 
     protected Map<String, String> cache;
 
+    protected long cacheVersion;
+
     protected ReadWriteLock lock = new ReentrantReadWriteLock();
     protected Lock readLock = lock.readLock();
     protected Lock writeLock = lock.writeLock();
 
     private static final Logger log = LoggerFactory.getLogger(ConfigStorage.class);
 
-    private static class InvalidateCacheMsg implements Serializable {
+    private static class InvalidateCacheMsg implements IdempotentClusterMessage {
         private static final long serialVersionUID = -3116358584797500962L;
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof InvalidateCacheMsg;
+        }
+
+        @Override
+        public int hashCode() {
+            return InvalidateCacheMsg.class.hashCode();
+        }
     }
     
     @Inject
@@ -99,6 +114,17 @@ public class ConfigStorage implements ConfigStorageAPI {
         }
     }
 
+    @Override
+    public long getDbPropertiesVersion() {
+        readLock.lock();
+        try {
+            loadCache();
+            return cacheVersion;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     @Override
     public String getDbProperty(String name) {
         readLock.lock();
@@ -134,6 +160,7 @@ public class ConfigStorage implements ConfigStorageAPI {
                     } catch (SQLException e) {
                         throw new RuntimeException("Error loading DB-stored app properties cache", e);
                     }
+                    cacheVersion = calculateVersion(cache);
                 }
             } finally {
                 lock.readLock().lock();
@@ -142,6 +169,18 @@ public class ConfigStorage implements ConfigStorageAPI {
         }
     }
 
+    protected long calculateVersion(Map<String, String> properties) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        new TreeMap<>(properties).forEach((name, value) -> {
+            hasher.putString(name, StandardCharsets.UTF_8);
+            hasher.putBoolean(value != null);
+            if (value != null) {
+                hasher.putString(value, StandardCharsets.UTF_8);
+            }
+        });
+        return hasher.hash().asLong();
+    }
+
     @Override
     public void setDbProperty(String name, String value) {
         Preconditions.checkNotNullArgument(name, "name is null");
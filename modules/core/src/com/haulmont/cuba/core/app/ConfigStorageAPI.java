@@ -34,6 +34,14 @@ public interface ConfigStorageAPI {
      */
     Map<String, String> getDbProperties();
 
+    /**
+     * Returns version of the properties stored in the database. The version is calculated from the properties
+     * content, so it is the same on all cluster nodes and changes when the properties are changed.
+     *
+     * @return the properties version
+     */
+    long getDbPropertiesVersion();
+
     /**
      * Loads a property from the database.
      *
@@ -40,6 +40,11 @@ public class ConfigStorageServiceBean implements ConfigStorageService {
         return api.getDbProperties();
     }
 
+    @Override
+    public long getDbPropertiesVersion() {
+        return api.getDbPropertiesVersion();
+    }
+
     @Override
     public String getDbProperty(String name) {
         return api.getDbProperty(name);
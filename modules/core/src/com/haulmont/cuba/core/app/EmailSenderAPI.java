@@ -20,6 +20,8 @@ package com.haulmont.cuba.core.app;
 import com.haulmont.cuba.core.entity.SendingMessage;
 
 import javax.mail.MessagingException;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Adapter to javax.mail email sending API.
@@ -39,5 +41,13 @@ public interface EmailSenderAPI {
      */
     void sendEmail(SendingMessage sendingMessage) throws MessagingException;
 
+    /**
+     * Sends emails through a single connection to the mail server.
+     * Messages body and attachments' content must be loaded from file storage.
+     *
+     * @return messages that have not been delivered, mapped to the delivery errors
+     */
+    Map<SendingMessage, Exception> sendEmails(List<SendingMessage> sendingMessages);
+
     void updateSession();
 }
\ No newline at end of file
@@ -17,8 +17,10 @@
 package com.haulmont.cuba.core.app;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
+import com.haulmont.cuba.core.Query;
 import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.TypedQuery;
 import com.haulmont.cuba.core.entity.FileDescriptor;
@@ -26,6 +28,8 @@ import com.haulmont.cuba.core.entity.SendingAttachment;
 import com.haulmont.cuba.core.entity.SendingMessage;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.AuditInfoProvider;
+import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory;
 import com.haulmont.cuba.security.app.Authentication;
 import com.sun.mail.smtp.SMTPAddressFailedException;
 import org.apache.commons.io.FilenameUtils;
@@ -46,6 +50,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Component(EmailerAPI.NAME)
 public class Emailer implements EmailerAPI {
@@ -85,6 +90,9 @@ public class Emailer implements EmailerAPI {
     @Inject
     protected FileStorageAPI fileStorage;
 
+    @Inject
+    protected AuditInfoProvider auditInfoProvider;
+
     @Inject
     public void setConfig(Configuration configuration) {
         this.config = configuration.getConfig(EmailerConfig.class);
@@ -214,6 +222,48 @@ public class Emailer implements EmailerAPI {
         }
     }
 
+    protected void sendSendingMessages(List<SendingMessage> sendingMessages) {
+        List<SendingMessage> messagesToSend = new ArrayList<>(sendingMessages.size());
+        for (SendingMessage sendingMessage : sendingMessages) {
+            if (sendingMessage.getAddress() == null || sendingMessage.getCaption() == null
+                    || sendingMessage.getContentText() == null || sendingMessage.getFrom() == null) {
+                log.error("Unable to send email {}: address, caption, content or from is null", sendingMessage.getId());
+            } else {
+                messagesToSend.add(sendingMessage);
+            }
+        }
+
+        Map<SendingMessage, Exception> failedMessages;
+        try {
+            failedMessages = emailSender.sendEmails(messagesToSend);
+        } catch (Exception e) {
+            failedMessages = new HashMap<>();
+            for (SendingMessage sendingMessage : messagesToSend) {
+                failedMessages.put(sendingMessage, e);
+            }
+        }
+
+        List<SendingMessage> sentMessages = new ArrayList<>();
+        List<SendingMessage> messagesToRetry = new ArrayList<>();
+        List<SendingMessage> nonSentMessages = new ArrayList<>();
+        for (SendingMessage sendingMessage : messagesToSend) {
+            Exception e = failedMessages.get(sendingMessage);
+            if (e == null) {
+                sentMessages.add(sendingMessage);
+            } else {
+                log.warn("Unable to send email to '" + sendingMessage.getAddress() + "'", e);
+                if (isNeedToRetry(e)) {
+                    messagesToRetry.add(sendingMessage);
+                } else {
+                    nonSentMessages.add(sendingMessage);
+                }
+            }
+        }
+        updateSendingStatus(sentMessages, SendingStatus.SENT);
+        updateSendingStatus(messagesToRetry, SendingStatus.QUEUE);
+        updateSendingStatus(nonSentMessages, SendingStatus.NOTSENT);
+    }
+
     protected void persistAndSendEmail(EmailInfo emailInfo) throws EmailException {
         Objects.requireNonNull(emailInfo.getAddresses(), "addresses are null");
         Objects.requireNonNull(emailInfo.getCaption(), "caption is null");
@@ -313,8 +363,8 @@ public class Emailer implements EmailerAPI {
     protected String sendQueuedEmails() {
         List<SendingMessage> messagesToSend = loadEmailsToSend();
 
-        for (SendingMessage msg : messagesToSend) {
-            submitExecutorTask(msg);
+        for (List<SendingMessage> batch : Lists.partition(messagesToSend, Math.max(config.getSendingBatchSize(), 1))) {
+            submitExecutorTask(new ArrayList<>(batch));
         }
 
         if (messagesToSend.isEmpty()) {
@@ -354,46 +404,192 @@ public class Emailer implements EmailerAPI {
         }
     }
 
+    protected void submitExecutorTask(List<SendingMessage> messages) {
+        try {
+            Runnable mailSendTask = new EmailSendTask(messages);
+            mailSendTaskExecutor.execute(mailSendTask);
+        } catch (RejectedExecutionException e) {
+            updateSendingStatus(messages, SendingStatus.QUEUE);
+        } catch (Exception e) {
+            log.error("Exception while sending email: ", e);
+            if (isNeedToRetry(e)) {
+                updateSendingStatus(messages, SendingStatus.QUEUE);
+            } else {
+                updateSendingStatus(messages, SendingStatus.NOTSENT);
+            }
+        }
+    }
+
+    /**
+     * Claims queued messages and messages with an expired sending lease, and loads them with bodies and attachments.
+     * <p>A message is claimed by a conditional update setting its status to {@code SENDING} and {@code updateTs}
+     * to the current time, which starts a lease of {@link EmailerConfig#getSendingTimeoutSec()} seconds.
+     * If the DBMS supports skipping locked rows, the candidates are locked by the select statement, so several
+     * middleware nodes processing the queue at the same time get disjoint sets of messages. Otherwise the version
+     * of a candidate is used as a claim token, and the message is skipped if another node has claimed it first.
+     */
     protected List<SendingMessage> loadEmailsToSend() {
         Date sendTimeoutTime = DateUtils.addSeconds(timeSource.currentTimestamp(), -config.getSendingTimeoutSec());
+        int capacity = config.getMessageQueueCapacity();
+        String skipLockedClause = DbmsSpecificFactory.getDbmsFeatures().getSkipLockedClause(capacity);
 
         List<SendingMessage> emailsToSend = new ArrayList<>();
 
         try (Transaction tx = persistence.createTransaction()) {
             EntityManager em = persistence.getEntityManager();
-            TypedQuery<SendingMessage> query = em.createQuery(
-                    "select sm from sys$SendingMessage sm" +
-                            " where sm.status = :statusQueue or (sm.status = :statusSending and sm.updateTs < :time)" +
-                            " order by sm.createTs",
-                    SendingMessage.class
-            );
-            query.setParameter("statusQueue", SendingStatus.QUEUE.getId());
-            query.setParameter("time", sendTimeoutTime);
-            query.setParameter("statusSending", SendingStatus.SENDING.getId());
 
-            View view = metadata.getViewRepository().getView(SendingMessage.class, "sendingMessage.loadFromQueue");
-            view.setLoadPartialEntities(true); // because SendingAttachment.content has FetchType.LAZY
-            query.setView(view);
-
-            query.setMaxResults(config.getMessageQueueCapacity());
+            List<SendingMessage> candidates = skipLockedClause != null
+                    ? lockQueuedEmails(em, sendTimeoutTime, skipLockedClause)
+                    : findQueuedEmails(em, sendTimeoutTime, capacity);
 
-            List<SendingMessage> resList = query.getResultList();
-
-            for (SendingMessage msg : resList) {
+            List<SendingMessage> emailsNotSent = new ArrayList<>();
+            for (SendingMessage msg : candidates) {
                 if (shouldMarkNotSent(msg)) {
-                    msg.setStatus(SendingStatus.NOTSENT);
+                    emailsNotSent.add(msg);
                 } else {
-                    msg.setStatus(SendingStatus.SENDING);
                     emailsToSend.add(msg);
                 }
             }
+
+            if (skipLockedClause != null) {
+                claimMessages(em, emailsToSend, SendingStatus.SENDING);
+                claimMessages(em, emailsNotSent, SendingStatus.NOTSENT);
+            } else {
+                emailsToSend.removeIf(msg -> !claimMessage(em, msg, SendingStatus.SENDING));
+                emailsNotSent.removeIf(msg -> !claimMessage(em, msg, SendingStatus.NOTSENT));
+            }
             tx.commit();
         }
 
-        for (SendingMessage message : emailsToSend) {
+        return loadBodiesAndAttachments(emailsToSend);
+    }
+
+    /**
+     * Selects and locks the messages to send, skipping rows locked by other transactions.
+     */
+    protected List<SendingMessage> lockQueuedEmails(EntityManager em, Date sendTimeoutTime, String skipLockedClause) {
+        Query idsQuery = em.createNativeQuery(
+                "select ID from SYS_SENDING_MESSAGE" +
+                        " where (STATUS = ? or (STATUS = ? and UPDATE_TS < ?)) and DELETE_TS is null" +
+                        " order by CREATE_TS " + skipLockedClause
+        );
+        idsQuery.setParameter(1, SendingStatus.QUEUE.getId());
+        idsQuery.setParameter(2, SendingStatus.SENDING.getId());
+        idsQuery.setParameter(3, sendTimeoutTime);
+
+        List<UUID> ids = new ArrayList<>();
+        for (Object id : idsQuery.getResultList()) {
+            ids.add(id instanceof UUID ? (UUID) id : UuidProvider.fromString(id.toString()));
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        TypedQuery<SendingMessage> query = em.createQuery(
+                "select sm from sys$SendingMessage sm where sm.id in :ids order by sm.createTs",
+                SendingMessage.class
+        );
+        query.setParameter("ids", ids);
+        query.setViewName("sendingMessage.claim");
+        return query.getResultList();
+    }
+
+    /**
+     * Selects the messages to send without locking them.
+     */
+    protected List<SendingMessage> findQueuedEmails(EntityManager em, Date sendTimeoutTime, int capacity) {
+        TypedQuery<SendingMessage> query = em.createQuery(
+                "select sm from sys$SendingMessage sm" +
+                        " where sm.status = :statusQueue or (sm.status = :statusSending and sm.updateTs < :time)" +
+                        " order by sm.createTs",
+                SendingMessage.class
+        );
+        query.setParameter("statusQueue", SendingStatus.QUEUE.getId());
+        query.setParameter("time", sendTimeoutTime);
+        query.setParameter("statusSending", SendingStatus.SENDING.getId());
+        query.setViewName("sendingMessage.claim");
+        query.setMaxResults(capacity);
+        return query.getResultList();
+    }
+
+    /**
+     * Sets the status of messages locked by the current transaction by a single update statement.
+     */
+    protected void claimMessages(EntityManager em, List<SendingMessage> sendingMessages, SendingStatus status) {
+        if (sendingMessages.isEmpty()) {
+            return;
+        }
+        List<UUID> ids = sendingMessages.stream()
+                .map(SendingMessage::getId)
+                .collect(Collectors.toList());
+
+        Query query = em.createQuery("update sys$SendingMessage sm set sm.status = :status," +
+                " sm.version = sm.version + 1, sm.updateTs = :updateTs, sm.updatedBy = :updatedBy" +
+                " where sm.id in :ids");
+        query.setParameter("status", status.getId());
+        query.setParameter("updateTs", timeSource.currentTimestamp());
+        query.setParameter("updatedBy", auditInfoProvider.getCurrentUserLogin());
+        query.setParameter("ids", ids);
+        query.executeUpdate();
+    }
+
+    /**
+     * Sets the status of the message if its version has not changed since it was loaded.
+     *
+     * @return true if the message has been claimed, false if it has been changed by another transaction
+     */
+    protected boolean claimMessage(EntityManager em, SendingMessage sendingMessage, SendingStatus status) {
+        Query query = em.createQuery("update sys$SendingMessage sm set sm.status = :status," +
+                " sm.version = sm.version + 1, sm.updateTs = :updateTs, sm.updatedBy = :updatedBy" +
+                " where sm.id = :id and sm.version = :version");
+        query.setParameter("status", status.getId());
+        query.setParameter("updateTs", timeSource.currentTimestamp());
+        query.setParameter("updatedBy", auditInfoProvider.getCurrentUserLogin());
+        query.setParameter("id", sendingMessage.getId());
+        query.setParameter("version", sendingMessage.getVersion());
+        boolean claimed = query.executeUpdate() == 1;
+        if (!claimed) {
+            log.debug("Message to '{}' has been claimed by another transaction", sendingMessage.getAddress());
+        }
+        return claimed;
+    }
+
+    /**
+     * Loads the claimed messages with attachments by as few queries as the DBMS permits,
+     * then loads their bodies and attachment contents from the file storage.
+     */
+    protected List<SendingMessage> loadBodiesAndAttachments(List<SendingMessage> sendingMessages) {
+        if (sendingMessages.isEmpty()) {
+            return sendingMessages;
+        }
+        List<UUID> ids = sendingMessages.stream()
+                .map(SendingMessage::getId)
+                .collect(Collectors.toList());
+        Integer maxIdsBatchSize = DbmsSpecificFactory.getDbmsFeatures().getMaxIdsBatchSize();
+
+        List<SendingMessage> messages = new ArrayList<>(ids.size());
+        try (Transaction tx = persistence.createTransaction()) {
+            EntityManager em = persistence.getEntityManager();
+
+            View view = metadata.getViewRepository().getView(SendingMessage.class, "sendingMessage.loadFromQueue");
+            view.setLoadPartialEntities(true); // because SendingAttachment.content has FetchType.LAZY
+
+            for (List<UUID> batch : Lists.partition(ids, maxIdsBatchSize != null ? maxIdsBatchSize : ids.size())) {
+                TypedQuery<SendingMessage> query = em.createQuery(
+                        "select sm from sys$SendingMessage sm where sm.id in :ids order by sm.createTs",
+                        SendingMessage.class
+                );
+                query.setParameter("ids", batch);
+                query.setView(view);
+                messages.addAll(query.getResultList());
+            }
+            tx.commit();
+        }
+
+        for (SendingMessage message : messages) {
             loadBodyAndAttachments(message);
         }
-        return emailsToSend;
+        return messages;
     }
 
     @Override
@@ -564,6 +760,43 @@ public class Emailer implements EmailerAPI {
         }
     }
 
+    /**
+     * Sets the status of the messages and increments the number of attempts made by a single update statement.
+     */
+    protected void updateSendingStatus(List<SendingMessage> sendingMessages, SendingStatus status) {
+        if (sendingMessages.isEmpty()) {
+            return;
+        }
+        List<UUID> ids = sendingMessages.stream()
+                .map(SendingMessage::getId)
+                .collect(Collectors.toList());
+        try (Transaction tx = persistence.createTransaction()) {
+            EntityManager em = persistence.getEntityManager();
+
+            StringBuilder sb = new StringBuilder("update sys$SendingMessage sm set sm.status = :status," +
+                    " sm.attemptsMade = sm.attemptsMade + 1, sm.version = sm.version + 1," +
+                    " sm.updateTs = :updateTs, sm.updatedBy = :updatedBy");
+            if (status == SendingStatus.SENT) {
+                sb.append(", sm.dateSent = :updateTs");
+            }
+            if (config.isFileStorageUsed()) {
+                sb.append(", sm.contentText = null");
+            }
+            sb.append(" where sm.id in :ids");
+
+            Query query = em.createQuery(sb.toString());
+            query.setParameter("status", status.getId());
+            query.setParameter("updateTs", timeSource.currentTimestamp());
+            query.setParameter("updatedBy", auditInfoProvider.getCurrentUserLogin());
+            query.setParameter("ids", ids);
+            query.executeUpdate();
+
+            tx.commit();
+        } catch (Exception e) {
+            log.error("Error setting status {} to {} messages", status, sendingMessages.size(), e);
+        }
+    }
+
     protected void markAsNonSent(SendingMessage sendingMessage) {
         try (Transaction tx = persistence.createTransaction()) {
             EntityManager em = persistence.getEntityManager();
@@ -746,11 +979,15 @@ public class Emailer implements EmailerAPI {
 
     protected static class EmailSendTask implements Runnable {
 
-        private SendingMessage sendingMessage;
+        private List<SendingMessage> sendingMessages;
         private static final Logger log = LoggerFactory.getLogger(EmailSendTask.class);
 
         public EmailSendTask(SendingMessage message) {
-            sendingMessage = message;
+            sendingMessages = Collections.singletonList(message);
+        }
+
+        public EmailSendTask(List<SendingMessage> messages) {
+            sendingMessages = messages;
         }
 
         @Override
@@ -761,7 +998,7 @@ public class Emailer implements EmailerAPI {
 
                 authentication.begin(emailer.getEmailerLogin());
                 try {
-                    emailer.sendSendingMessage(sendingMessage);
+                    emailer.sendSendingMessages(sendingMessages);
                 } finally {
                     authentication.end();
                 }
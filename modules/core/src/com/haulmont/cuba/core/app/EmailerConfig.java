@@ -146,6 +146,16 @@ public interface EmailerConfig extends Config {
     @Default("100")
     int getMessageQueueCapacity();
 
+    /**
+     * Maximum number of queued messages sent through one connection to the SMTP server.
+     * Statuses of the messages are updated by one statement per batch.
+     */
+    @Property("cuba.email.sendingBatchSize")
+    @DefaultInt(20)
+    int getSendingBatchSize();
+
+    void setSendingBatchSize(int sendingBatchSize);
+
     /**
      * Max number of attempts to send a message, after which the message's status is set to NOT_SENT.
      */
@@ -201,8 +201,13 @@ public class JpqlQueryBuilder {
                     resultQuery = String.format("select e from %s e where e.%s = :entityId", entityName, getPrimaryKeyProperty().getName());
                     resultParameters = Maps.newHashMap(ImmutableMap.of("entityId", id));
                 } else if (ids != null && !ids.isEmpty()) {
-                    resultQuery = String.format("select e from %s e where e.%s in :entityIds", entityName, getPrimaryKeyProperty().getName());
-                    resultParameters = Maps.newHashMap(ImmutableMap.of("entityIds", ids));
+                    MetaProperty primaryKeyProperty = getPrimaryKeyProperty();
+                    if (primaryKeyProperty.getRange().isClass()) {
+                        buildEmbeddedIdsQuery(primaryKeyProperty);
+                    } else {
+                        resultQuery = String.format("select e from %s e where e.%s in :entityIds", entityName, primaryKeyProperty.getName());
+                        resultParameters = Maps.newHashMap(ImmutableMap.of("entityIds", ids));
+                    }
                 } else {
                     resultQuery = String.format("select e from %s e", entityName);
                     resultParameters = Collections.emptyMap();
@@ -214,6 +219,26 @@ public class JpqlQueryBuilder {
         restrictByPreviousResults();
     }
 
+    /**
+     * Builds a query selecting entities with embedded primary key by the list of identifiers. As JPQL does not support
+     * {@code in} for embeddable values, the query is a disjunction of equality conditions, one per identifier.
+     */
+    protected void buildEmbeddedIdsQuery(MetaProperty primaryKeyProperty) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("select e from ").append(entityName).append(" e where (");
+        resultParameters = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                sb.append(" or ");
+            }
+            String paramName = "entityId" + i;
+            sb.append("e.").append(primaryKeyProperty.getName()).append(" = :").append(paramName);
+            resultParameters.put(paramName, ids.get(i));
+        }
+        sb.append(")");
+        resultQuery = sb.toString();
+    }
+
     protected void applySorting() {
         if (sort != null) {
             resultQuery = sortJpqlGenerator.processQuery(entityName, valueProperties, resultQuery, sort);
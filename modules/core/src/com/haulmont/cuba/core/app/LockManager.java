@@ -235,6 +235,9 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
         }
     }
 
+    /**
+     * Returns the state in the format of nodes not supporting streamed state transfer: a serialized list.
+     */
     @Override
     public byte[] getState() {
         List<LockInfo> list = new ArrayList<>(locks.values());
@@ -250,6 +253,10 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
         return bos.toByteArray();
     }
 
+    /**
+     * Receives the state written by {@link #getState()} of nodes not supporting streamed state transfer.
+     */
+    @SuppressWarnings("unchecked")
     @Override
     public void setState(byte[] state) {
         if (state == null || state.length == 0)
@@ -269,4 +276,27 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
             receive(lockInfo);
         }
     }
+
+    @Override
+    public void getState(OutputStream output) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(output);
+        for (LockInfo lockInfo : locks.values()) {
+            oos.writeBoolean(true);
+            oos.writeObject(lockInfo);
+        }
+        oos.writeBoolean(false);
+        oos.flush();
+    }
+
+    @Override
+    public void setState(InputStream input) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(input);
+        try {
+            while (ois.readBoolean()) {
+                receive((LockInfo) ois.readObject());
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Error deserializing LockInfo", e);
+        }
+    }
 }
\ No newline at end of file
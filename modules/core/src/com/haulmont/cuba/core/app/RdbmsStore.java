@@ -29,6 +29,9 @@ import com.haulmont.cuba.core.app.queryresults.QueryResultsManagerAPI;
 import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.entity.contracts.Id;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.global.queryconditions.Condition;
+import com.haulmont.cuba.core.global.queryconditions.JpqlCondition;
+import com.haulmont.cuba.core.global.queryconditions.LogicalCondition;
 import com.haulmont.cuba.core.sys.EntityFetcher;
 import com.haulmont.cuba.core.sys.EntityReferencesNormalizer;
 import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory;
@@ -109,6 +112,9 @@ public class RdbmsStore implements DataStore {
     @Inject
     protected EntityReferencesNormalizer entityReferencesNormalizer;
 
+    @Inject
+    protected SortJpqlGenerator sortJpqlGenerator;
+
     protected String storeName;
 
     public RdbmsStore(String storeName) {
@@ -229,9 +235,16 @@ public class RdbmsStore implements DataStore {
             List<E> entities;
             Integer maxIdsBatchSize = DbmsSpecificFactory.getDbmsFeatures(storeName).getMaxIdsBatchSize();
             if (!context.getIds().isEmpty() && entityHasEmbeddedId(metaClass)) {
-                entities = loadListBySingleIds(context, em, view);
+                int embeddedIdsBatchSize = getEmbeddedIdsBatchSize(metaClass);
+                if (embeddedIdsBatchSize > 1) {
+                    entities = loadListByBatchesOfIds(context, em, view, embeddedIdsBatchSize);
+                } else {
+                    entities = loadListBySingleIds(context, em, view);
+                }
             } else if (!context.getIds().isEmpty() && maxIdsBatchSize != null && context.getIds().size() > maxIdsBatchSize) {
                 entities = loadListByBatchesOfIds(context, em, view, maxIdsBatchSize);
+            } else if (isKeysetPaginationApplicable(context, metaClass)) {
+                entities = loadListByKeyset(context, em, view, metaClass, ensureDistinct);
             } else {
                 Query query = createQuery(em, context, false, false);
                 query.setView(view);
@@ -296,6 +309,36 @@ public class RdbmsStore implements DataStore {
         return entities;
     }
 
+    /**
+     * Returns the number of identifiers of an entity with embedded primary key that can be loaded by a single query.
+     * The configured batch size is limited by the maximum number of query parameters supported by the DBMS,
+     * because each identifier is bound as a set of parameters, one for each primary key column.
+     */
+    protected int getEmbeddedIdsBatchSize(MetaClass metaClass) {
+        MetaProperty pkProperty = metadataTools.getPrimaryKeyProperty(metaClass);
+        if (pkProperty == null) {
+            return 1;
+        }
+        int batchSize = serverConfig.getEmbeddedIdsLoadingBatchSize();
+
+        Integer maxParametersCount = getMaxQueryParametersCount();
+        if (maxParametersCount != null) {
+            long columnsCount = pkProperty.getRange().asClass().getProperties().stream()
+                    .filter(metadataTools::isPersistent)
+                    .count();
+            batchSize = (int) Math.min(batchSize, maxParametersCount / Math.max(columnsCount, 1));
+        }
+        return batchSize;
+    }
+
+    /**
+     * @return maximum number of bind parameters in a query supported by the DBMS of this store or null if unlimited
+     */
+    @Nullable
+    protected Integer getMaxQueryParametersCount() {
+        return DbmsSpecificFactory.getDbmsFeatures(storeName).getMaxQueryParametersCount();
+    }
+
     protected <E extends Entity> List<E> checkAndReorderLoadedEntities(List<?> ids, List<E> entities, MetaClass metaClass) {
         List<E> result = new ArrayList<>(ids.size());
         Map<Object, E> idToEntityMap = entities.stream().collect(Collectors.toMap(Entity::getId, Function.identity()));
@@ -327,6 +370,209 @@ public class RdbmsStore implements DataStore {
         return entities;
     }
 
+    /**
+     * Checks whether the query of the given context can be executed in the keyset pagination mode.
+     *
+     * @see LoadContext.Query#setKeysetPagination(boolean)
+     */
+    protected boolean isKeysetPaginationApplicable(LoadContext<?> context, MetaClass metaClass) {
+        LoadContext.Query contextQuery = context.getQuery();
+        if (contextQuery == null || !contextQuery.isKeysetPagination()) {
+            return false;
+        }
+        MetaProperty pkProperty = metadataTools.getPrimaryKeyProperty(metaClass);
+        if (pkProperty == null || pkProperty.getRange().isClass()) {
+            log.debug("Keyset pagination is not applicable to {}: entity has no simple primary key", metaClass);
+            return false;
+        }
+        Sort sort = contextQuery.getSort();
+        boolean asc = sort == null || sort.getOrders().isEmpty()
+                || sort.getOrders().get(0).getDirection() == Sort.Direction.ASC;
+        // instances are compared by the primary key value, so the query must be sorted by the value itself
+        MetaPropertyPath pkPropertyPath = metaClass.getPropertyPath(pkProperty.getName());
+        if (pkPropertyPath == null
+                || !("{E}." + pkProperty.getName()).equals(getKeysetSortExpression(pkPropertyPath, asc))) {
+            log.debug("Keyset pagination is not applicable to {}: primary key is sorted by an expression", metaClass);
+            return false;
+        }
+        if (sort != null) {
+            Sort.Direction direction = null;
+            for (Sort.Order order : sort.getOrders()) {
+                if (direction != null && direction != order.getDirection()) {
+                    log.debug("Keyset pagination is not applicable to {}: sorting in different directions", metaClass);
+                    return false;
+                }
+                direction = order.getDirection();
+
+                MetaPropertyPath propertyPath = metaClass.getPropertyPath(order.getProperty());
+                if (propertyPath == null || !isKeysetPaginationProperty(propertyPath, pkProperty)
+                        || getKeysetSortExpression(propertyPath, asc) == null) {
+                    log.debug("Keyset pagination is not applicable to {}: unsupported sort property {}",
+                            metaClass, order.getProperty());
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    protected boolean isKeysetPaginationProperty(MetaPropertyPath propertyPath, MetaProperty pkProperty) {
+        MetaProperty metaProperty = propertyPath.getMetaProperty();
+        if (metaProperty.equals(pkProperty) && propertyPath.getMetaProperties().length == 1) {
+            return true;
+        }
+        if (!metadataTools.isPersistent(propertyPath)
+                || metaProperty.getRange().isClass()
+                || metadataTools.isLob(metaProperty)) {
+            return false;
+        }
+        // null values cannot be compared, so only mandatory properties are supported
+        for (MetaProperty property : propertyPath.getMetaProperties()) {
+            if (!property.isMandatory() || property.getRange().getCardinality().isMany()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the expression by which {@link SortJpqlGenerator} sorts the query by the given property, so that
+     * the keyset condition compares the same values as the ORDER BY clause.
+     *
+     * @return the expression or null if the property is sorted by several expressions or is not sorted
+     */
+    @Nullable
+    protected String getKeysetSortExpression(MetaPropertyPath propertyPath, boolean asc) {
+        List<String> expressions = sortJpqlGenerator.getPropertySortExpressions(propertyPath, asc);
+        return expressions.size() == 1 ? expressions.get(0) : null;
+    }
+
+    /**
+     * Loads the requested page by chunks, each chunk starting right after the last instance of the previous one
+     * in the order of the sort properties and the primary key. Unlike {@link #getResultListIteratively}, the cost of
+     * loading a page does not depend on its position in the whole result when filtering by in-memory constraints
+     * or ensuring distinct results.
+     */
+    @SuppressWarnings("unchecked")
+    protected <E extends Entity> List<E> loadListByKeyset(LoadContext<E> context, EntityManager em, View view,
+                                                          MetaClass metaClass, boolean ensureDistinct) {
+        LoadContext.Query contextQuery = context.getQuery();
+        String pkName = metadataTools.getPrimaryKeyName(metaClass);
+
+        Sort sort = contextQuery.getSort();
+        if (sort == null || sort.getOrders().isEmpty()) {
+            sort = Sort.by(pkName);
+        }
+        boolean asc = sort.getOrders().get(0).getDirection() == Sort.Direction.ASC;
+        List<String> keysetExpressions = new ArrayList<>();
+        for (Sort.Order order : sort.getOrders()) {
+            if (order.getProperty().equals(pkName)) {
+                break;
+            }
+            keysetExpressions.add(getKeysetSortExpression(metaClass.getPropertyPath(order.getProperty()), asc));
+        }
+
+        int requestedMax = contextQuery.getMaxResults();
+        boolean needToFilterByInMemoryReadConstraints = needToFilterByInMemoryReadConstraints(context);
+
+        Collection<E> filteredCollection = ensureDistinct ? new LinkedHashSet<>() : new ArrayList<>();
+        Object afterId = contextQuery.getAfterId();
+        int chunkSize = requestedMax;
+        while (true) {
+            LoadContext<E> chunkContext = (LoadContext<E>) context.copy();
+            LoadContext.Query chunkQuery = chunkContext.getQuery();
+            chunkQuery.setSort(sort);
+            chunkQuery.setFirstResult(0);
+            chunkQuery.setMaxResults(chunkSize);
+            if (afterId != null) {
+                applyKeysetCondition(em, chunkQuery, context.getMetaClass(), metaClass, keysetExpressions, pkName, afterId, asc);
+            }
+
+            Query query = createQuery(em, chunkContext, false, false);
+            query.setView(view);
+            List<E> list = executeQuery(query, false);
+            if (list.isEmpty()) {
+                break;
+            }
+
+            afterId = list.get(list.size() - 1).getId();
+            boolean lastChunk = chunkSize == 0 || list.size() < chunkSize;
+            if (needToFilterByInMemoryReadConstraints) {
+                security.filterByConstraints((Collection<Entity>) list);
+            }
+            filteredCollection.addAll(list);
+
+            if (lastChunk || filteredCollection.size() >= requestedMax) {
+                break;
+            }
+            // request the rest with a margin for instances filtered out by constraints or duplicates
+            chunkSize = (requestedMax - filteredCollection.size()) * 2;
+        }
+
+        // Copy by iteration because subList() returns non-serializable class
+        int max = requestedMax == 0 ? filteredCollection.size() : Math.min(requestedMax, filteredCollection.size());
+        List<E> result = new ArrayList<>(max);
+        for (E item : filteredCollection) {
+            if (result.size() >= max)
+                break;
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * Restricts the query to the instances following the given one in the order of the keyset expressions and
+     * the primary key. The values of the keyset expressions for the given instance are obtained by a separate query.
+     */
+    protected void applyKeysetCondition(EntityManager em, LoadContext.Query contextQuery, String entityName,
+                                        MetaClass metaClass, List<String> keysetExpressions, String pkName,
+                                        Object afterId, boolean asc) {
+        List<?> values = Collections.emptyList();
+        if (!keysetExpressions.isEmpty()) {
+            String selectedProperties = keysetExpressions.stream()
+                    .map(expression -> expression.replace(QueryTransformer.ALIAS_PLACEHOLDER, "e"))
+                    .collect(Collectors.joining(", "));
+            Query valuesQuery = em.createQuery(String.format("select %s from %s e where e.%s = :entityId",
+                    selectedProperties, entityName, pkName));
+            valuesQuery.setParameter("entityId", afterId);
+            List<?> rows = valuesQuery.getResultList();
+            if (rows.isEmpty()) {
+                throw new EntityAccessException(metaClass, afterId);
+            }
+            Object row = rows.get(0);
+            values = row instanceof Object[] ? Arrays.asList((Object[]) row) : Collections.singletonList(row);
+        }
+
+        // (p0 > :v0) or (p0 = :v0 and p1 > :v1) or ... or (p0 = :v0 and ... and id > :id)
+        String operator = asc ? " > " : " < ";
+        StringBuilder where = new StringBuilder("(");
+        for (int i = 0; i <= keysetExpressions.size(); i++) {
+            if (i > 0) {
+                where.append(" or ");
+            }
+            where.append("(");
+            for (int j = 0; j < i; j++) {
+                where.append(keysetExpressions.get(j)).append(" = :_ks_value").append(j).append(" and ");
+            }
+            if (i < keysetExpressions.size()) {
+                where.append(keysetExpressions.get(i)).append(operator).append(":_ks_value").append(i);
+            } else {
+                where.append("{E}.").append(pkName).append(operator).append(":_ks_id");
+            }
+            where.append(")");
+        }
+        where.append(")");
+
+        for (int i = 0; i < values.size(); i++) {
+            contextQuery.setParameter("_ks_value" + i, values.get(i));
+        }
+        contextQuery.setParameter("_ks_id", afterId);
+
+        Condition keysetCondition = JpqlCondition.where(where.toString());
+        Condition condition = contextQuery.getCondition();
+        contextQuery.setCondition(condition == null ? keysetCondition : LogicalCondition.and().add(condition).add(keysetCondition));
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         if (log.isDebugEnabled())
@@ -21,6 +21,7 @@ import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
 import com.haulmont.cuba.core.config.defaults.*;
+import com.haulmont.cuba.core.config.type.CommaSeparatedStringListTypeFactory;
 import com.haulmont.cuba.core.config.type.Factory;
 import com.haulmont.cuba.core.config.type.TokenizedStringListFactory;
 import com.haulmont.cuba.security.app.UserSessionsAPI;
@@ -140,6 +141,30 @@ public interface ServerConfig extends Config {
     @DefaultBoolean(true)
     boolean getImmutableFileStorage();
 
+    /**
+     * Whether a saved file is written to all {@link FileStorageAPI} storage directories in one pass. Otherwise, the
+     * file is written to the primary directory and copied to the other directories asynchronously.
+     *
+     * @return true if files are written to all storage directories synchronously
+     */
+    @Property("cuba.fileStorageSyncReplication")
+    @DefaultBoolean(false)
+    boolean getFileStorageSyncReplication();
+
+    /**
+     * @return whether the file storage log ({@code storage.log}) is forced to disk after each group of records
+     */
+    @Property("cuba.fileStorageLogSync")
+    @DefaultBoolean(false)
+    boolean getFileStorageLogSync();
+
+    /**
+     * @return size in bytes after which the file storage log ({@code storage.log}) is rotated. 0 disables rotation.
+     */
+    @Property("cuba.fileStorageLogMaxSize")
+    @DefaultLong(0)
+    long getFileStorageLogMaxSize();
+
     /**
      * @return Scheduled tasks execution control.
      */
@@ -284,6 +309,34 @@ public interface ServerConfig extends Config {
     @DefaultInt(50)
     int getCrossDataStoreReferenceLoadingBatchSize();
 
+    /**
+     * @return batch size for loading entities having embedded (composite) primary key by a list of identifiers.
+     * If less than 2, such entities are loaded by a separate query for each identifier.
+     */
+    @Property("cuba.embeddedIdsLoadingBatchSize")
+    @Source(type = SourceType.DATABASE)
+    @DefaultInt(50)
+    int getEmbeddedIdsLoadingBatchSize();
+    void setEmbeddedIdsLoadingBatchSize(int batchSize);
+
+    /**
+     * @return batch size for loading existing and referenced entities by a list of identifiers when importing
+     * entities by {@code EntityImportExportAPI}
+     */
+    @Property("cuba.entityImportLoadingBatchSize")
+    @Source(type = SourceType.DATABASE)
+    @DefaultInt(500)
+    int getEntityImportLoadingBatchSize();
+    void setEntityImportLoadingBatchSize(int batchSize);
+
+    /**
+     * @return number of entities loaded at once when exporting entities to a stream by {@code EntityImportExportAPI}
+     */
+    @Property("cuba.entityExportLoadingBatchSize")
+    @Source(type = SourceType.DATABASE)
+    @DefaultInt(1000)
+    int getEntityExportLoadingBatchSize();
+
     /**
      * @return use read-only transactions in {@code DataManager} load operations and do not commit them
      */
@@ -400,4 +453,36 @@ public interface ServerConfig extends Config {
     @Property("cuba.security.rolesPolicyVersion")
     @DefaultInt(2)
     int getRolesPolicyVersion();
+
+    /**
+     * @return maximum number of JPQL transformation results kept by {@code QueryTransformationCache}.
+     * 0 disables caching.
+     */
+    @Property("cuba.queryTransformationCacheSize")
+    @DefaultInt(1000)
+    int getQueryTransformationCacheSize();
+
+    /**
+     * @return maximum number of query strings with applied row-level constraints kept by {@code PersistenceSecurity}.
+     * 0 disables caching.
+     */
+    @Property("cuba.constrainedQueryCacheSize")
+    @DefaultInt(1000)
+    int getConstrainedQueryCacheSize();
+
+    /**
+     * @return maximum number of fetch group descriptions kept by {@code FetchGroupManager}. 0 disables caching.
+     */
+    @Property("cuba.fetchGroupCacheSize")
+    @DefaultInt(1000)
+    int getFetchGroupCacheSize();
+
+    /**
+     * Names of user session attributes indexed by {@code UserSessionsAPI} for fast lookup of sessions by attribute
+     * value, e.g. a tenant id. Indexed attributes should be changed through {@code UserSessionService} or followed
+     * by {@code UserSessionsAPI.propagate()}, otherwise the index is not updated.
+     */
+    @Property("cuba.userSessionIndexedAttributes")
+    @Factory(factory = CommaSeparatedStringListTypeFactory.class)
+    List<String> getUserSessionIndexedAttributes();
 }
\ No newline at end of file
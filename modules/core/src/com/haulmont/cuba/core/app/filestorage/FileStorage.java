@@ -26,6 +26,7 @@ import com.haulmont.cuba.core.sys.SecurityContext;
 import com.haulmont.cuba.security.global.UserSession;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,11 +36,14 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -59,8 +63,15 @@ public class FileStorage implements FileStorageAPI {
     @Inject
     protected Configuration configuration;
 
+    @Inject
+    protected FileStorageJournal journal;
+
+    protected static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
     protected boolean isImmutableFileStorage;
 
+    protected boolean isSyncReplication;
+
     protected ExecutorService writeExecutor = Executors.newFixedThreadPool(5,
             new ThreadFactoryBuilder().setNameFormat("FileStorageWriter-%d").build());
 
@@ -68,7 +79,9 @@ public class FileStorage implements FileStorageAPI {
 
     @PostConstruct
     public void init() {
-        this.isImmutableFileStorage = configuration.getConfig(ServerConfig.class).getImmutableFileStorage();
+        ServerConfig serverConfig = configuration.getConfig(ServerConfig.class);
+        this.isImmutableFileStorage = serverConfig.getImmutableFileStorage();
+        this.isSyncReplication = serverConfig.getFileStorageSyncReplication();
     }
 
     /**
@@ -116,51 +129,134 @@ public class FileStorage implements FileStorageAPI {
         final File file = new File(dir, getFileName(fileDescr));
         checkFileExists(file);
 
+        List<File> copies = new ArrayList<>();
+        for (int i = 1; i < roots.length; i++) {
+            if (!roots[i].exists()) {
+                log.error("Error saving {} into {} : directory doesn't exist", fileDescr, roots[i]);
+                continue;
+            }
+            copies.add(new File(getStorageDir(roots[i], fileDescr), getFileName(fileDescr)));
+        }
+
+        long size;
+        if (isSyncReplication) {
+            // Write to primary and secondary storages in one pass
+            size = writeFiles(fileDescr, inputStream, file, copies);
+        } else {
+            size = writeFiles(fileDescr, inputStream, file, Collections.emptyList());
+            // Copy file to secondary storages asynchronously
+            copyFilesAsync(fileDescr, file, copies);
+        }
+
+        return size;
+    }
+
+    /**
+     * Writes the stream contents to the primary file and all copies reading the stream only once. A failure to write
+     * a copy is logged and does not interrupt writing of the primary file.
+     */
+    protected long writeFiles(FileDescriptor fileDescr, InputStream inputStream, File file, List<File> copies)
+            throws FileStorageException {
+        ReadableByteChannel source = Channels.newChannel(inputStream);
+        Map<File, FileChannel> copyChannels = new LinkedHashMap<>();
+        FileChannel channel = null;
         long size = 0;
-        OutputStream os = null;
         try {
-            os = FileUtils.openOutputStream(file);
-            size = IOUtils.copyLarge(inputStream, os);
-            os.flush();
+            channel = openWriteChannel(file);
+            for (File copy : copies) {
+                try {
+                    copyChannels.put(copy, openWriteChannel(copy));
+                } catch (IOException e) {
+                    log.error("Error saving {} into {} : {}", fileDescr, copy.getAbsolutePath(), e.getMessage());
+                }
+            }
+
+            if (copyChannels.isEmpty() && source instanceof FileChannel) {
+                FileChannel sourceChannel = (FileChannel) source;
+                long count = sourceChannel.size() - sourceChannel.position();
+                while (size < count) {
+                    long transferred = channel.transferFrom(sourceChannel, size, count - size);
+                    if (transferred <= 0)
+                        break;
+                    size += transferred;
+                }
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+                while (source.read(buffer) >= 0) {
+                    buffer.flip();
+                    size += buffer.remaining();
+                    writeFully(channel, buffer);
+                    Iterator<Map.Entry<File, FileChannel>> iterator = copyChannels.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        Map.Entry<File, FileChannel> entry = iterator.next();
+                        try {
+                            writeFully(entry.getValue(), buffer.duplicate());
+                        } catch (IOException e) {
+                            log.error("Error saving {} into {} : {}", fileDescr, entry.getKey().getAbsolutePath(), e.getMessage());
+                            IOUtils.closeQuietly(entry.getValue());
+                            FileUtils.deleteQuietly(entry.getKey());
+                            iterator.remove();
+                        }
+                    }
+                    buffer.clear();
+                }
+            }
+
+            channel.close();
             writeLog(file, false);
         } catch (IOException e) {
-            IOUtils.closeQuietly(os);
+            IOUtils.closeQuietly(channel);
             FileUtils.deleteQuietly(file);
+            for (Map.Entry<File, FileChannel> entry : copyChannels.entrySet()) {
+                IOUtils.closeQuietly(entry.getValue());
+                FileUtils.deleteQuietly(entry.getKey());
+            }
 
             throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, file.getAbsolutePath(), e);
-        } finally {
-            IOUtils.closeQuietly(os);
         }
 
-        // Copy file to secondary storages asynchronously
-
-        final SecurityContext securityContext = AppContext.getSecurityContext();
-        for (int i = 1; i < roots.length; i++) {
-            if (!roots[i].exists()) {
-                log.error("Error saving {} into {} : directory doesn't exist", fileDescr, roots[i]);
-                continue;
+        for (Map.Entry<File, FileChannel> entry : copyChannels.entrySet()) {
+            try {
+                entry.getValue().close();
+                writeLog(entry.getKey(), false);
+            } catch (IOException e) {
+                log.error("Error saving {} into {} : {}", fileDescr, entry.getKey().getAbsolutePath(), e.getMessage());
+                FileUtils.deleteQuietly(entry.getKey());
             }
+        }
+        return size;
+    }
 
-            File copyDir = getStorageDir(roots[i], fileDescr);
-            final File fileCopy = new File(copyDir, getFileName(fileDescr));
-
-            writeExecutor.submit(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        AppContext.setSecurityContext(securityContext);
-                        FileUtils.copyFile(file, fileCopy, true);
-                        writeLog(fileCopy, false);
-                    } catch (Exception e) {
-                        log.error("Error saving {} into {} : {}", fileDescr, fileCopy.getAbsolutePath(), e.getMessage());
-                    } finally {
-                        AppContext.setSecurityContext(null);
-                    }
+    protected void copyFilesAsync(FileDescriptor fileDescr, File file, Collection<File> copies) {
+        final SecurityContext securityContext = AppContext.getSecurityContext();
+        for (File fileCopy : copies) {
+            writeExecutor.submit(() -> {
+                try {
+                    AppContext.setSecurityContext(securityContext);
+                    FileUtils.copyFile(file, fileCopy, true);
+                    writeLog(fileCopy, false);
+                } catch (Exception e) {
+                    log.error("Error saving {} into {} : {}", fileDescr, fileCopy.getAbsolutePath(), e.getMessage());
+                } finally {
+                    AppContext.setSecurityContext(null);
                 }
             });
         }
+    }
 
-        return size;
+    protected FileChannel openWriteChannel(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Unable to create directory " + dir.getAbsolutePath());
+        }
+        return FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    protected void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
     }
 
     protected void checkFileExists(File file) throws FileStorageException {
@@ -193,7 +289,7 @@ public class FileStorage implements FileStorageAPI {
         saveStream(fileDescr, new ByteArrayInputStream(data));
     }
 
-    protected synchronized void writeLog(File file, boolean remove) {
+    protected void writeLog(File file, boolean remove) {
         File rootDir;
         try {
             rootDir = file.getParentFile().getParentFile().getParentFile().getParentFile();
@@ -215,14 +311,7 @@ public class FileStorage implements FileStorageAPI {
         sb.append(remove ? "REMOVE" : "CREATE").append(" ");
         sb.append("\"").append(file.getAbsolutePath()).append("\"\n");
 
-        File logFile = new File(rootDir, "storage.log");
-        try {
-            try (FileOutputStream fos = new FileOutputStream(logFile, true)) {
-                IOUtils.write(sb.toString(), fos, StandardCharsets.UTF_8);
-            }
-        } catch (IOException e) {
-            log.error("Unable to write log", e);
-        }
+        journal.append(rootDir, sb.toString());
     }
 
     @Override
@@ -288,14 +377,92 @@ public class FileStorage implements FileStorageAPI {
     }
 
     @Override
-    public byte[] loadFile(FileDescriptor fileDescr) throws FileStorageException {
-        InputStream inputStream = openStream(fileDescr);
+    public InputStream openStream(FileDescriptor fileDescr, long offset, long length) throws FileStorageException {
+        checkRange(offset);
+
+        FileChannel channel = openReadChannel(fileDescr);
         try {
-            return IOUtils.toByteArray(inputStream);
+            channel.position(offset);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(channel);
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
+        }
+        InputStream inputStream = Channels.newInputStream(channel);
+        return length < 0 ? inputStream : new BoundedInputStream(inputStream, length);
+    }
+
+    @Override
+    public long transferTo(FileDescriptor fileDescr, long offset, long length, WritableByteChannel target)
+            throws FileStorageException {
+        checkRange(offset);
+        checkNotNullArgument(target, "Target channel is null");
+
+        try (FileChannel channel = openReadChannel(fileDescr)) {
+            long end = length < 0 ? channel.size() : Math.min(channel.size(), offset + length);
+            long position = offset;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0)
+                    break;
+                position += transferred;
+            }
+            return Math.max(position - offset, 0);
+        } catch (IOException e) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
+        }
+    }
+
+    @Override
+    public byte[] loadFile(FileDescriptor fileDescr) throws FileStorageException {
+        try (FileChannel channel = openReadChannel(fileDescr)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File is too large to load into memory: " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    break;
+            }
+            return buffer.hasRemaining() ? Arrays.copyOf(buffer.array(), buffer.position()) : buffer.array();
         } catch (IOException e) {
             throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
-        } finally {
-            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Opens a channel to read the file from the first storage directory where it is accessible.
+     */
+    protected FileChannel openReadChannel(FileDescriptor fileDescr) throws FileStorageException {
+        checkFileDescriptor(fileDescr);
+
+        File[] roots = getStorageRoots();
+        if (roots.length == 0) {
+            log.error("No storage directories available");
+            throw new FileStorageException(FileStorageException.Type.FILE_NOT_FOUND, fileDescr.getId().toString());
+        }
+
+        for (File root : roots) {
+            File dir = getStorageDir(root, fileDescr);
+
+            File file = new File(dir, getFileName(fileDescr));
+            if (!file.exists()) {
+                log.error("File " + file + " not found");
+                continue;
+            }
+
+            try {
+                return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            } catch (IOException e) {
+                log.error("Error opening channel for " + file, e);
+            }
+        }
+        throw new FileStorageException(FileStorageException.Type.FILE_NOT_FOUND, fileDescr.getId().toString());
+    }
+
+    protected void checkRange(long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative");
         }
     }
 
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.filestorage;
+
+import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.sys.events.AppContextStoppedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Appends records to the {@code storage.log} files located in the file storage root directories.
+ * <p>
+ * Callers put records to a lock-free queue and return immediately. A single writer thread drains the queue and
+ * appends all records accumulated for a root directory in one write, optionally followed by fsync
+ * ({@link ServerConfig#getFileStorageLogSync()}). The log file is rotated when it exceeds
+ * {@link ServerConfig#getFileStorageLogMaxSize()}.
+ */
+@Component(FileStorageJournal.NAME)
+public class FileStorageJournal {
+
+    public static final String NAME = "cuba_FileStorageJournal";
+
+    public static final String LOG_FILE_NAME = "storage.log";
+
+    private static final Logger log = LoggerFactory.getLogger(FileStorageJournal.class);
+
+    protected static final String ROTATED_SUFFIX_FORMAT = "yyyyMMdd-HHmmss";
+
+    protected static final long PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    protected final Queue<Record> queue = new ConcurrentLinkedQueue<>();
+
+    protected ServerConfig serverConfig;
+
+    protected volatile Thread writer;
+
+    protected volatile boolean stopped;
+
+    @Inject
+    public FileStorageJournal(Configuration configuration) {
+        serverConfig = configuration.getConfig(ServerConfig.class);
+    }
+
+    /**
+     * Appends a line to the log of the given storage root directory.
+     *
+     * @param rootDir storage root directory
+     * @param line    log record terminated by a line separator
+     */
+    public void append(File rootDir, String line) {
+        queue.offer(new Record(rootDir, line));
+        if (stopped) {
+            // the writer thread may have already finished
+            writeQueued();
+        } else {
+            LockSupport.unpark(getWriter());
+        }
+    }
+
+    /**
+     * Reads the log of the given storage root directory, including rotated files, in the order of writing.
+     *
+     * @param rootDir      storage root directory
+     * @param lineConsumer consumer of the log records
+     */
+    public void replay(File rootDir, Consumer<String> lineConsumer) throws IOException {
+        File[] rotated = rootDir.listFiles((dir, name) -> name.startsWith(LOG_FILE_NAME + "."));
+        List<File> files = new ArrayList<>();
+        if (rotated != null) {
+            Arrays.sort(rotated, Comparator.comparing(File::getName, this::compareRotatedNames));
+            files.addAll(Arrays.asList(rotated));
+        }
+        files.add(new File(rootDir, LOG_FILE_NAME));
+
+        for (File file : files) {
+            if (!file.exists())
+                continue;
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineConsumer.accept(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares names of rotated log files in the order of rotation. Files rotated within the same second have
+     * a numeric counter appended to the timestamp.
+     */
+    protected int compareRotatedNames(String name1, String name2) {
+        int prefixLength = LOG_FILE_NAME.length() + 1 + ROTATED_SUFFIX_FORMAT.length();
+        if (name1.length() < prefixLength || name2.length() < prefixLength) {
+            return name1.compareTo(name2);
+        }
+        int result = name1.substring(0, prefixLength).compareTo(name2.substring(0, prefixLength));
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(getRotationCounter(name1, prefixLength), getRotationCounter(name2, prefixLength));
+    }
+
+    protected int getRotationCounter(String name, int prefixLength) {
+        if (name.length() <= prefixLength + 1) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(name.substring(prefixLength + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    protected Thread getWriter() {
+        Thread writer = this.writer;
+        if (writer == null) {
+            synchronized (this) {
+                writer = this.writer;
+                if (writer == null) {
+                    writer = new Thread(this::processQueue, "FileStorageJournal");
+                    writer.setDaemon(true);
+                    writer.start();
+                    this.writer = writer;
+                }
+            }
+        }
+        return writer;
+    }
+
+    protected void processQueue() {
+        while (true) {
+            try {
+                if (!writeQueued()) {
+                    if (stopped)
+                        break;
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+            } catch (Throwable e) {
+                log.error("Unable to write file storage log", e);
+            }
+        }
+    }
+
+    /**
+     * Writes all records accumulated in the queue.
+     *
+     * @return false if the queue was empty
+     */
+    protected boolean writeQueued() {
+        List<Record> batch = new ArrayList<>();
+        Record record;
+        while ((record = queue.poll()) != null) {
+            batch.add(record);
+        }
+        if (batch.isEmpty()) {
+            return false;
+        }
+        write(batch);
+        return true;
+    }
+
+    protected synchronized void write(List<Record> batch) {
+        Map<File, StringBuilder> linesByDir = new LinkedHashMap<>();
+        for (Record record : batch) {
+            linesByDir.computeIfAbsent(record.rootDir, dir -> new StringBuilder()).append(record.line);
+        }
+
+        boolean sync = serverConfig.getFileStorageLogSync();
+        long maxSize = serverConfig.getFileStorageLogMaxSize();
+        for (Map.Entry<File, StringBuilder> entry : linesByDir.entrySet()) {
+            File logFile = new File(entry.getKey(), LOG_FILE_NAME);
+            try {
+                if (maxSize > 0 && logFile.length() >= maxSize) {
+                    rotate(logFile);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(entry.getValue().toString().getBytes(StandardCharsets.UTF_8));
+                try (FileChannel channel = FileChannel.open(logFile.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    if (sync) {
+                        channel.force(false);
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Unable to write log", e);
+            }
+        }
+    }
+
+    protected void rotate(File logFile) throws IOException {
+        String suffix = new SimpleDateFormat(ROTATED_SUFFIX_FORMAT).format(new Date());
+        File rotated = new File(logFile.getParentFile(), LOG_FILE_NAME + "." + suffix);
+        for (int i = 1; rotated.exists(); i++) {
+            rotated = new File(logFile.getParentFile(), LOG_FILE_NAME + "." + suffix + "-" + i);
+        }
+        if (!logFile.renameTo(rotated)) {
+            throw new IOException("Unable to rename " + logFile + " to " + rotated);
+        }
+        log.info("File storage log rotated to {}", rotated);
+    }
+
+    @EventListener(AppContextStoppedEvent.class)
+    protected void applicationStopped() {
+        stopped = true;
+        Thread writer = this.writer;
+        if (writer == null) {
+            return;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            if (writer.isAlive()) {
+                log.warn("File storage log writer has not been stopped in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected static class Record {
+        protected final File rootDir;
+        protected final String line;
+
+        protected Record(File rootDir, String line) {
+            this.rootDir = rootDir;
+            this.line = line;
+        }
+    }
+}
@@ -17,13 +17,16 @@
 
 package com.haulmont.cuba.core.app.importexport;
 
+import com.google.common.collect.Lists;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.chile.core.model.Range;
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.PersistenceSecurity;
 import com.haulmont.cuba.core.app.DataStore;
+import com.haulmont.cuba.core.app.FileStorageAPI;
 import com.haulmont.cuba.core.app.RdbmsStore;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.app.StoreFactory;
 import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesManagerAPI;
 import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesUtils;
@@ -33,31 +36,35 @@ import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.global.validation.CustomValidationException;
 import com.haulmont.cuba.core.global.validation.groups.RestApiChecks;
-import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.validation.groups.Default;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import static java.lang.String.format;
 
 @Component(EntityImportExportAPI.NAME)
 public class EntityImportExport implements EntityImportExportAPI {
 
+    private static final Logger log = LoggerFactory.getLogger(EntityImportExport.class);
+
     @Inject
     protected EntitySerializationAPI entitySerialization;
 
@@ -88,6 +95,12 @@ public class EntityImportExport implements EntityImportExportAPI {
     @Inject
     protected GlobalConfig globalConfig;
 
+    @Inject
+    protected ServerConfig serverConfig;
+
+    @Inject
+    protected FileStorageAPI fileStorage;
+
     @Override
     public byte[] exportEntitiesToZIP(Collection<? extends Entity> entities, View view) {
         return exportEntitiesToZIP(reloadEntities(entities, view));
@@ -95,24 +108,76 @@ public class EntityImportExport implements EntityImportExportAPI {
 
     @Override
     public byte[] exportEntitiesToZIP(Collection<? extends Entity> entities) {
-        String json = entitySerialization.toJson(entities, null, EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
-        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
-
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(byteArrayOutputStream);
-        zipOutputStream.setMethod(ZipArchiveOutputStream.STORED);
+        writeZip(entities, byteArrayOutputStream, true);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public void exportEntitiesToZIP(LoadContext<? extends Entity> loadContext, OutputStream outputStream, boolean compress) {
+        try (Stream<Entity> stream = loadEntitiesStream(loadContext)) {
+            writeZip(stream::iterator, outputStream, compress);
+        }
+    }
+
+    @Override
+    public void exportEntitiesToZIP(LoadContext<? extends Entity> loadContext, FileDescriptor fileDescriptor, boolean compress)
+            throws FileStorageException {
+        File tempFile = null;
+        try {
+            tempFile = Files.createTempFile(Paths.get(globalConfig.getTempDir()), "entities", ".zip").toFile();
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                exportEntitiesToZIP(loadContext, outputStream, compress);
+            }
+            try (InputStream inputStream = new FileInputStream(tempFile)) {
+                fileDescriptor.setSize(fileStorage.saveStream(fileDescriptor, inputStream));
+            }
+        } catch (IOException e) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescriptor.getName(), e);
+        } finally {
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    @Override
+    public void exportEntitiesToJSON(LoadContext<? extends Entity> loadContext, OutputStream outputStream) {
+        try (Stream<Entity> stream = loadEntitiesStream(loadContext)) {
+            writeJson(stream::iterator, outputStream,
+                    EntitySerializationOption.COMPACT_REPEATED_ENTITIES, EntitySerializationOption.PRETTY_PRINT);
+        }
+    }
+
+    /**
+     * Loads entities by chunks of {@link ServerConfig#getEntityExportLoadingBatchSize()} instances as the returned
+     * stream is consumed.
+     */
+    protected Stream<Entity> loadEntitiesStream(LoadContext<? extends Entity> loadContext) {
+        return dataManager.loadListStream(loadContext, Math.max(serverConfig.getEntityExportLoadingBatchSize(), 1))
+                .map(Entity.class::cast);
+    }
+
+    /**
+     * Writes the ZIP archive with a single "entities.json" entry. The entry is deflated, because a stored entry
+     * requires its size and CRC to be known before the content is written.
+     */
+    protected void writeZip(Iterable<? extends Entity> entities, OutputStream outputStream, boolean compress) {
+        ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputStream);
+        zipOutputStream.setMethod(ZipArchiveOutputStream.DEFLATED);
+        zipOutputStream.setLevel(compress ? Deflater.DEFAULT_COMPRESSION : Deflater.NO_COMPRESSION);
         zipOutputStream.setEncoding(StandardCharsets.UTF_8.name());
-        ArchiveEntry singleDesignEntry = newStoredEntry("entities.json", jsonBytes);
         try {
-            zipOutputStream.putArchiveEntry(singleDesignEntry);
-            zipOutputStream.write(jsonBytes);
+            zipOutputStream.putArchiveEntry(new ZipArchiveEntry("entities.json"));
+            writeJson(entities, zipOutputStream, EntitySerializationOption.COMPACT_REPEATED_ENTITIES);
             zipOutputStream.closeArchiveEntry();
-        } catch (Exception e) {
+            zipOutputStream.finish();
+        } catch (IOException e) {
             throw new RuntimeException("Error on creating zip archive during entities export", e);
-        } finally {
-            IOUtils.closeQuietly(zipOutputStream);
         }
-        return byteArrayOutputStream.toByteArray();
+    }
+
+    protected void writeJson(Iterable<? extends Entity> entities, OutputStream outputStream, EntitySerializationOption... options) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        entitySerialization.writeJson(entities, writer, null, options);
     }
 
     @Override
@@ -141,16 +206,6 @@ public class EntityImportExport implements EntityImportExportAPI {
         return dataManager.loadList(ctx);
     }
 
-    protected ArchiveEntry newStoredEntry(String name, byte[] data) {
-        ZipArchiveEntry zipEntry = new ZipArchiveEntry(name);
-        zipEntry.setSize(data.length);
-        zipEntry.setCompressedSize(zipEntry.getSize());
-        CRC32 crc32 = new CRC32();
-        crc32.update(data);
-        zipEntry.setCrc(crc32.getValue());
-        return zipEntry;
-    }
-
     @Override
     public Collection<Entity> importEntitiesFromJson(String json, EntityImportView view) {
         Collection<Entity> result = new ArrayList<>();
@@ -201,6 +256,34 @@ public class EntityImportExport implements EntityImportExportAPI {
 
     @Override
     public Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate, boolean optimisticLocking) {
+        View regularView = buildViewFromImportView(importView);
+        return importEntities(entities, importView, regularView, validate, optimisticLocking);
+    }
+
+    @Override
+    public Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate,
+                                             boolean optimisticLocking, int batchSize) {
+        if (batchSize <= 0 || entities.size() <= batchSize) {
+            return importEntities(entities, importView, validate, optimisticLocking);
+        }
+
+        View regularView = buildViewFromImportView(importView);
+        List<Entity> result = new ArrayList<>(entities.size());
+        int processed = 0;
+        long startTs = System.currentTimeMillis();
+        for (List<? extends Entity> batch : Lists.partition(new ArrayList<>(entities), batchSize)) {
+            result.addAll(importEntities(batch, importView, regularView, validate, optimisticLocking));
+            processed += batch.size();
+
+            long elapsed = Math.max(System.currentTimeMillis() - startTs, 1);
+            log.info("Imported {} of {} {} entities in {} ms, {} entities/sec",
+                    processed, entities.size(), importView.getEntityClass().getSimpleName(), elapsed, processed * 1000L / elapsed);
+        }
+        return result;
+    }
+
+    protected Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, View regularView,
+                                                boolean validate, boolean optimisticLocking) {
         List<ReferenceInfo> referenceInfoList = new ArrayList<>();
         CommitContext commitContext = new CommitContext();
         commitContext.setSoftDeletion(false);
@@ -210,25 +293,24 @@ public class EntityImportExport implements EntityImportExportAPI {
         //
         //1. entities that should be persisted are processed first, fields that should be references to existing entities
         //are stored in the referenceInfoList variable
+        Map<Entity, Entity> dstEntities = loadDstEntities(entities, regularView);
         for (Entity srcEntity : entities) {
-            View regularView = buildViewFromImportView(importView);
-            //set softDeletion to false because we can import deleted entity, so we'll restore it and update
-            LoadContext<? extends Entity> ctx = LoadContext.create(srcEntity.getClass())
-                    .setSoftDeletion(false)
-                    .setView(regularView)
-                    .setLoadDynamicAttributes(true)
-                    .setId(srcEntity.getId())
-                    .setAuthorizationRequired(true);
-            Entity dstEntity = dataManager.load(ctx);
+            Entity dstEntity = dstEntities.containsKey(srcEntity) ?
+                    dstEntities.get(srcEntity) :
+                    loadDstEntity(srcEntity, regularView);
 
             importEntity(srcEntity, dstEntity, importView, regularView, commitContext, referenceInfoList, optimisticLocking);
         }
 
         //2. references to existing entities are processed
 
-        //store a list of loaded entities in the collection to prevent unnecessary database requests for searching the
-        //same instance
-        Set<Entity> loadedEntities = new HashSet<>();
+        //store loaded entities and the entities being committed in the map to prevent unnecessary database requests
+        //for searching the same instance. Referenced entities are loaded in batches beforehand
+        Map<Entity, Entity> loadedEntities = new HashMap<>();
+        for (Entity commitInstance : commitContext.getCommitInstances()) {
+            loadedEntities.put(commitInstance, commitInstance);
+        }
+        loadReferencedEntities(referenceInfoList, loadedEntities);
         for (ReferenceInfo referenceInfo : referenceInfoList) {
             processReferenceInfo(referenceInfo, commitContext, loadedEntities);
         }
@@ -261,6 +343,113 @@ public class EntityImportExport implements EntityImportExportAPI {
         return dataManager.commit(commitContext);
     }
 
+    /**
+     * Loads existing entities corresponding to the passed source entities by batches of identifiers.
+     *
+     * @return map of source entities to loaded entities. The value is null if the entity doesn't exist in the database.
+     * Source entities that cannot be loaded by a list of identifiers are absent in the map.
+     */
+    protected Map<Entity, Entity> loadDstEntities(Collection<? extends Entity> srcEntities, View regularView) {
+        Map<Entity, Entity> result = new HashMap<>();
+        for (Map.Entry<MetaClass, List<Entity>> entry : groupByMetaClass(srcEntities).entrySet()) {
+            MetaClass metaClass = entry.getKey();
+            for (List<Entity> batch : Lists.partition(entry.getValue(), Math.max(serverConfig.getEntityImportLoadingBatchSize(), 1))) {
+                //set softDeletion to false because we can import deleted entity, so we'll restore it and update
+                LoadContext<? extends Entity> ctx = LoadContext.create(metaClass.getJavaClass())
+                        .setSoftDeletion(false)
+                        .setView(regularView)
+                        .setLoadDynamicAttributes(true)
+                        .setAuthorizationRequired(true);
+                putLoadedEntities(result, batch, ctx);
+            }
+        }
+        return result;
+    }
+
+    protected Entity loadDstEntity(Entity srcEntity, View regularView) {
+        //set softDeletion to false because we can import deleted entity, so we'll restore it and update
+        LoadContext<? extends Entity> ctx = LoadContext.create(srcEntity.getClass())
+                .setSoftDeletion(false)
+                .setView(regularView)
+                .setLoadDynamicAttributes(true)
+                .setId(srcEntity.getId())
+                .setAuthorizationRequired(true);
+        return dataManager.load(ctx);
+    }
+
+    /**
+     * Loads entities referenced by the passed reference infos by batches of identifiers and puts them to the
+     * {@code loadedEntities} map. Missing entities are put with null value.
+     */
+    protected void loadReferencedEntities(Collection<ReferenceInfo> referenceInfoList, Map<Entity, Entity> loadedEntities) {
+        Set<Entity> references = new LinkedHashSet<>();
+        for (ReferenceInfo referenceInfo : referenceInfoList) {
+            Object propertyValue = referenceInfo.getPropertyValue();
+            if (propertyValue instanceof Entity) {
+                references.add((Entity) propertyValue);
+            } else if (propertyValue instanceof Collection) {
+                for (Object item : (Collection<?>) propertyValue) {
+                    if (item instanceof Entity) {
+                        references.add((Entity) item);
+                    }
+                }
+            }
+        }
+        references.removeIf(loadedEntities::containsKey);
+
+        for (Map.Entry<MetaClass, List<Entity>> entry : groupByMetaClass(references).entrySet()) {
+            MetaClass metaClass = entry.getKey();
+            for (List<Entity> batch : Lists.partition(entry.getValue(), Math.max(serverConfig.getEntityImportLoadingBatchSize(), 1))) {
+                LoadContext<? extends Entity> ctx = LoadContext.create(metaClass.getJavaClass())
+                        .setSoftDeletion(false)
+                        .setView(new View(metaClass.getJavaClass(), false));
+                putLoadedEntities(loadedEntities, batch, ctx);
+            }
+        }
+    }
+
+    /**
+     * Groups entities that can be loaded by a list of identifiers by their meta-classes. Entities with composite
+     * primary keys and entities with DB-generated identifiers that are not assigned yet are skipped.
+     */
+    protected Map<MetaClass, List<Entity>> groupByMetaClass(Collection<? extends Entity> entities) {
+        Map<MetaClass, List<Entity>> result = new LinkedHashMap<>();
+        for (Entity entity : entities) {
+            MetaClass metaClass = entity.getMetaClass();
+            MetaProperty pkProperty = metadata.getTools().getPrimaryKeyProperty(metaClass);
+            if (getDbId(entity) != null && pkProperty != null && !pkProperty.getRange().isClass()) {
+                result.computeIfAbsent(metaClass, k -> new ArrayList<>()).add(entity);
+            }
+        }
+        return result;
+    }
+
+    protected void putLoadedEntities(Map<Entity, Entity> result, List<Entity> entities, LoadContext<? extends Entity> ctx) {
+        String pkName = metadata.getTools().getPrimaryKeyName(metadata.getClassNN(ctx.getEntityMetaClass()));
+        List<Object> ids = entities.stream()
+                .map(this::getDbId)
+                .collect(Collectors.toList());
+        ctx.setQuery(LoadContext.createQuery("select e from " + ctx.getEntityMetaClass() + " e where e." + pkName + " in :ids")
+                .setParameter("ids", ids));
+
+        Map<Object, Entity> loaded = new HashMap<>();
+        for (Entity entity : dataManager.loadList(ctx)) {
+            loaded.put(getDbId(entity), entity);
+        }
+        for (Entity entity : entities) {
+            result.put(entity, loaded.get(getDbId(entity)));
+        }
+    }
+
+    /**
+     * @return identifier of the entity as it is stored in the database, or null if it is not assigned yet
+     */
+    @Nullable
+    protected Object getDbId(Entity entity) {
+        Object id = entity.getId();
+        return id instanceof IdProxy ? ((IdProxy) id).get() : id;
+    }
+
     /**
      * Method imports the entity.
      *
@@ -557,7 +746,7 @@ public class EntityImportExport implements EntityImportExportAPI {
      * Method finds and set a reference value to the entity or throws EntityImportException if ERROR_ON_MISSING policy
      * is violated
      */
-    protected void processReferenceInfo(ReferenceInfo referenceInfo, CommitContext commitContext, Set<Entity> loadedEntities) {
+    protected void processReferenceInfo(ReferenceInfo referenceInfo, CommitContext commitContext, Map<Entity, Entity> loadedEntities) {
         Entity entity = referenceInfo.getEntity();
         EntityImportViewProperty viewProperty = referenceInfo.getViewProperty();
         MetaProperty metaProperty = entity.getMetaClass().getPropertyNN(viewProperty.getName());
@@ -694,23 +883,20 @@ public class EntityImportExport implements EntityImportExportAPI {
     }
 
     protected Entity findReferenceEntity(Entity entity, EntityImportViewProperty viewProperty, CommitContext commitContext,
-                                         Set<Entity> loadedEntities) {
-        Entity result = Stream.concat(loadedEntities.stream(), commitContext.getCommitInstances().stream())
-                .filter(item -> item.equals(entity))
-                .findFirst().orElse(null);
-        if (result == null) {
+                                         Map<Entity, Entity> loadedEntities) {
+        Entity result = loadedEntities.get(entity);
+        if (result == null && !loadedEntities.containsKey(entity)) {
             LoadContext<? extends Entity> ctx = LoadContext.create(entity.getClass())
                     .setSoftDeletion(false)
                     .setView(new View(entity.getMetaClass().getJavaClass(), false))
                     .setId(entity.getId());
             result = dataManager.load(ctx);
-            if (result == null) {
-                if (viewProperty.getReferenceImportBehaviour() == ReferenceImportBehaviour.ERROR_ON_MISSING) {
-                    throw new EntityImportException(String.format("Referenced entity for property '%s' with id = %s is missing",
-                            viewProperty.getName(), entity.getId()));
-                }
-            } else {
-                loadedEntities.add(result);
+            loadedEntities.put(entity, result);
+        }
+        if (result == null) {
+            if (viewProperty.getReferenceImportBehaviour() == ReferenceImportBehaviour.ERROR_ON_MISSING) {
+                throw new EntityImportException(String.format("Referenced entity for property '%s' with id = %s is missing",
+                        viewProperty.getName(), entity.getId()));
             }
         }
         return result;
@@ -18,8 +18,12 @@
 package com.haulmont.cuba.core.app.importexport;
 
 import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.entity.FileDescriptor;
+import com.haulmont.cuba.core.global.FileStorageException;
+import com.haulmont.cuba.core.global.LoadContext;
 import com.haulmont.cuba.core.global.View;
 
+import java.io.OutputStream;
 import java.util.Collection;
 
 /**
@@ -50,6 +54,37 @@ public interface EntityImportExportAPI {
      */
     String exportEntitiesToJSON(Collection<? extends Entity> entities);
 
+    /**
+     * Exports entities loaded by the given context to the ZIP archive written to the output stream. Entities are loaded
+     * by chunks and serialized one by one, so the memory consumption doesn't depend on the number of entities.
+     * The archive can be imported by {@link #importEntitiesFromZIP(byte[], EntityImportView)}.
+     *
+     * @param loadContext  context defining entities to export and their view. The query is executed by chunks using
+     *                     {@link com.haulmont.cuba.core.global.DataManager#loadListStream(LoadContext, int)}
+     * @param outputStream stream to write the archive to. It is not closed by the method
+     * @param compress     whether to compress the archive content or just store it in the deflate format
+     */
+    void exportEntitiesToZIP(LoadContext<? extends Entity> loadContext, OutputStream outputStream, boolean compress);
+
+    /**
+     * Exports entities loaded by the given context to the ZIP archive and saves it to the file storage. Works like
+     * {@link #exportEntitiesToZIP(LoadContext, OutputStream, boolean)}; the archive is written to a temporary file first.
+     * <p>
+     * The size of the passed file descriptor is set to the size of the archive. The file descriptor is not saved
+     * to the database.
+     */
+    void exportEntitiesToZIP(LoadContext<? extends Entity> loadContext, FileDescriptor fileDescriptor, boolean compress)
+            throws FileStorageException;
+
+    /**
+     * Exports entities loaded by the given context to JSON written to the output stream in UTF-8. Works like
+     * {@link #exportEntitiesToZIP(LoadContext, OutputStream, boolean)}.
+     *
+     * @param loadContext  context defining entities to export and their view
+     * @param outputStream stream to write JSON to. It is not closed by the method
+     */
+    void exportEntitiesToJSON(LoadContext<? extends Entity> loadContext, OutputStream outputStream);
+
     /**
      * See documentation for {@link EntityImportExportService#importEntitiesFromJSON(String, EntityImportView)}
      */
@@ -74,4 +109,10 @@ public interface EntityImportExportAPI {
      * See documentation for {@link EntityImportExportService#importEntities(Collection, EntityImportView, boolean, boolean)}
      */
     Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate, boolean optimisticLocking);
+
+    /**
+     * See documentation for {@link EntityImportExportService#importEntities(Collection, EntityImportView, boolean, boolean, int)}
+     */
+    Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate,
+                                      boolean optimisticLocking, int batchSize);
 }
@@ -74,4 +74,10 @@ public class EntityImportExportServiceBean implements EntityImportExportService
     public Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate, boolean optimisticLocking) {
         return entityImportExport.importEntities(entities, importView, validate, optimisticLocking);
     }
+
+    @Override
+    public Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate,
+                                             boolean optimisticLocking, int batchSize) {
+        return entityImportExport.importEntities(entities, importView, validate, optimisticLocking, batchSize);
+    }
 }
\ No newline at end of file
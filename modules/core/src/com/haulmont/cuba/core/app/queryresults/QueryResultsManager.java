@@ -25,6 +25,7 @@ import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.QueryHolder;
 import com.haulmont.cuba.core.sys.persistence.DbTypeConverter;
+import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory;
 import com.haulmont.cuba.security.app.UserSessionsAPI;
 import com.haulmont.cuba.security.global.UserSession;
 import org.slf4j.Logger;
@@ -32,7 +33,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -62,7 +67,7 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
     @Inject
     protected Metadata metadata;
 
-    protected static final int BATCH_SIZE = 100;
+    protected static final int BATCH_SIZE = 1000;
 
     protected static final int DELETE_BATCH_SIZE = 100;
 
@@ -164,9 +169,8 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
         Transaction tx = persistence.createTransaction();
         try {
             EntityManager em = persistence.getEntityManager();
-            DbTypeConverter converter = persistence.getDbTypeConverter();
             Object idFromList = idList.get(0);
-            String columnName = null;
+            String columnName;
             if (idFromList instanceof String) {
                 columnName = "STRING_ENTITY_ID";
             } else if (idFromList instanceof Long) {
@@ -176,19 +180,12 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
             } else {
                 columnName = "ENTITY_ID";
             }
-            QueryRunner runner = new QueryRunner();
+            String arrayElementTypeName = DbmsSpecificFactory.getDbmsFeatures().getArrayElementTypeName(idFromList.getClass());
             try {
-                String userSessionIdStr = converter.getSqlObject(userSessionId).toString(); // assuming that UUID can be passed to query as string in all databases
-                String sql = String.format("insert into SYS_QUERY_RESULT (SESSION_ID, QUERY_KEY, %s) values ('%s', %s, ?)",
-                        columnName, userSessionIdStr, queryKey);
-                int[] paramTypes = new int[]{converter.getSqlType(idFromList.getClass())};
-                for (int i = 0; i < idList.size(); i += BATCH_SIZE) {
-                    List<UUID> sublist = idList.subList(i, Math.min(i + BATCH_SIZE, idList.size()));
-                    Object[][] params = new Object[sublist.size()][1];
-                    for (int j = 0; j < sublist.size(); j++) {
-                        params[j][0] = converter.getSqlObject(sublist.get(j));
-                    }
-                    runner.batch(em.getConnection(), sql, params, paramTypes);
+                if (arrayElementTypeName != null) {
+                    insertByArray(em.getConnection(), userSessionId, queryKey, columnName, arrayElementTypeName, idList);
+                } else {
+                    insertByBatches(em.getConnection(), userSessionId, queryKey, columnName, idList);
                 }
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -201,21 +198,67 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
         }
     }
 
+    /**
+     * Inserts all identifiers by a single statement binding them as an array parameter.
+     */
+    protected void insertByArray(Connection connection, UUID userSessionId, int queryKey, String columnName,
+                                 String arrayElementTypeName, List idList) throws SQLException {
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        String sql = String.format("insert into SYS_QUERY_RESULT (SESSION_ID, QUERY_KEY, %s) select ?, ?, %s",
+                columnName, DbmsSpecificFactory.getDbmsFeatures().getArrayElementsExpression());
+        Array array = connection.createArrayOf(arrayElementTypeName, idList.toArray());
+        try {
+            QueryRunner runner = new QueryRunner();
+            runner.update(connection, sql,
+                    new Object[]{converter.getSqlObject(userSessionId), queryKey, array},
+                    new int[]{converter.getSqlType(UUID.class), Types.INTEGER, Types.ARRAY});
+        } finally {
+            array.free();
+        }
+    }
+
+    /**
+     * Inserts identifiers by JDBC batches of {@link #BATCH_SIZE} rows using a single prepared statement.
+     */
+    protected void insertByBatches(Connection connection, UUID userSessionId, int queryKey, String columnName,
+                                   List idList) throws SQLException {
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        String sql = String.format("insert into SYS_QUERY_RESULT (SESSION_ID, QUERY_KEY, %s) values (?, ?, ?)",
+                columnName);
+        int paramType = converter.getSqlType(idList.get(0).getClass());
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            // the session id and the query key are the same for all rows of the batch
+            statement.setObject(1, converter.getSqlObject(userSessionId), converter.getSqlType(UUID.class));
+            statement.setInt(2, queryKey);
+            int count = 0;
+            for (Object id : idList) {
+                statement.setObject(3, converter.getSqlObject(id), paramType);
+                statement.addBatch();
+                if (++count % BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            if (count % BATCH_SIZE != 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
     @Override
     public void delete(int queryKey) {
         DbTypeConverter converter = persistence.getDbTypeConverter();
         UUID userSessionId = userSessionSource.getUserSession().getId();
-        String userSessionIdStr = converter.getSqlObject(userSessionId).toString();
         long start = System.currentTimeMillis();
         String logMsg = "Delete query results for " + userSessionId + " / " + queryKey;
         log.debug(logMsg);
 
-        String sql = "delete from SYS_QUERY_RESULT where SESSION_ID = '"
-                + userSessionIdStr + "' and QUERY_KEY = " + queryKey;
+        String sql = "delete from SYS_QUERY_RESULT where SESSION_ID = ? and QUERY_KEY = ?";
 
         QueryRunner runner = new QueryRunner(persistence.getDataSource());
         try {
-            runner.update(sql);
+            runner.update(sql,
+                    new Object[]{converter.getSqlObject(userSessionId), queryKey},
+                    new int[]{converter.getSqlType(UUID.class), Types.INTEGER});
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -228,9 +271,9 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
         try {
             DbTypeConverter converter = persistence.getDbTypeConverter();
             UUID userSessionId = userSessionSource.getUserSession().getId();
-            String userSessionIdStr = converter.getSqlObject(userSessionId).toString();
-            runner.update("delete from SYS_QUERY_RESULT where SESSION_ID = '"
-                    + userSessionIdStr + "'");
+            runner.update("delete from SYS_QUERY_RESULT where SESSION_ID = ?",
+                    new Object[]{converter.getSqlObject(userSessionId)},
+                    new int[]{converter.getSqlType(UUID.class)});
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
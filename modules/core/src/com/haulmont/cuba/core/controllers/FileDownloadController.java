@@ -35,6 +35,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -42,6 +43,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.util.UUID;
 
 /**
@@ -85,12 +87,36 @@ public class FileDownloadController {
             response.setIntHeader("Expires", -1);
             response.setHeader("Content-Type", FileTypesHelper.DEFAULT_MIME_TYPE);
 
+            long offset = 0;
+            long length = -1;
+            if (fd != null && fd.getSize() != null) {
+                response.setHeader("Accept-Ranges", "bytes");
+                long[] range = parseRange(request.getHeader("Range"), fd.getSize());
+                if (range != null) {
+                    if (range.length == 0) {
+                        response.setHeader("Content-Range", "bytes */" + fd.getSize());
+                        response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                        return;
+                    }
+                    offset = range[0];
+                    length = range[1] - range[0] + 1;
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + fd.getSize());
+                    response.setHeader("Content-Length", String.valueOf(length));
+                }
+            }
+
             InputStream is = null;
             ServletOutputStream os = null;
             try {
-                is = fd != null ? fileStorage.openStream(fd) : FileUtils.openInputStream(file);
-                os = response.getOutputStream();
-                IOUtils.copy(is, os);
+                if (fd != null) {
+                    os = response.getOutputStream();
+                    fileStorage.transferTo(fd, offset, length, Channels.newChannel(os));
+                } else {
+                    is = FileUtils.openInputStream(file);
+                    os = response.getOutputStream();
+                    IOUtils.copy(is, os);
+                }
                 os.flush();
             } catch (FileStorageException e) {
                 log.error("Unable to download file", e);
@@ -107,6 +133,45 @@ public class FileDownloadController {
         }
     }
 
+    /**
+     * Parses a single byte range of the {@code Range} request header.
+     *
+     * @return null if the header is absent or not supported, empty array if the range is not satisfiable,
+     * otherwise an array of the first and the last byte positions
+     */
+    @Nullable
+    protected long[] parseRange(@Nullable String header, long size) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0)
+            return null;
+
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0)
+            return null;
+
+        long first;
+        long last;
+        try {
+            String start = spec.substring(0, dash).trim();
+            String end = spec.substring(dash + 1).trim();
+            if (start.isEmpty()) {
+                if (end.isEmpty())
+                    return null;
+                first = Math.max(size - Long.parseLong(end), 0);
+                last = size - 1;
+            } else {
+                first = Long.parseLong(start);
+                last = end.isEmpty() ? size - 1 : Math.min(Long.parseLong(end), size - 1);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (first >= size || first > last)
+            return new long[0];
+        return new long[]{first, last};
+    }
+
     protected UserSession getSession(HttpServletRequest request, HttpServletResponse response) throws IOException {
         UUID sessionId;
         try {
@@ -82,6 +82,16 @@ public class ClusterManager implements ClusterManagerMBean {
         return clusterManager.getMessagesCount();
     }
 
+    @Override
+    public long getDroppedMessages() {
+        return clusterManager.getDroppedMessages();
+    }
+
+    @Override
+    public long getCoalescedMessages() {
+        return clusterManager.getCoalescedMessages();
+    }
+
     @Override
     public String printSharedStateStat() {
         return clusterManager.printSharedStateStat();
@@ -61,6 +61,18 @@ public interface ClusterManagerMBean {
      */
     int getMessagesCount();
 
+    /**
+     * @return message count dropped because the sending queue was full
+     * @see com.haulmont.cuba.core.app.ClusterManagerAPI#getDroppedMessages()
+     */
+    long getDroppedMessages();
+
+    /**
+     * @return message count not sent because an equal idempotent message was sent in the same frame
+     * @see com.haulmont.cuba.core.app.ClusterManagerAPI#getCoalescedMessages()
+     */
+    long getCoalescedMessages();
+
     @ManagedOperation(description = "Shared state statistics")
     String printSharedStateStat();
 
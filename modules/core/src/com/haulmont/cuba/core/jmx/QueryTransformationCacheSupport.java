@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.jmx;
+
+import com.haulmont.cuba.core.sys.QueryTransformationCache;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+
+@Component("cuba_QueryTransformationCacheSupportMBean")
+public class QueryTransformationCacheSupport implements QueryTransformationCacheSupportMBean {
+
+    @Inject
+    protected QueryTransformationCache transformationCache;
+
+    @Override
+    public int getMaxSize() {
+        return transformationCache.getMaxSize();
+    }
+
+    @Override
+    public long getSize() {
+        return transformationCache.getSize();
+    }
+
+    @Override
+    public long getHitCount() {
+        return transformationCache.getStats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return transformationCache.getStats().missCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return transformationCache.getStats().hitRate();
+    }
+
+    @Override
+    public String invalidateAll() {
+        transformationCache.invalidateAll();
+        return "Done";
+    }
+}
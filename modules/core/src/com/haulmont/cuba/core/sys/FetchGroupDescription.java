@@ -25,20 +25,24 @@ public class FetchGroupDescription {
     protected Set<String> fetchGroupAttributes = new TreeSet<>();
     protected Map<String, String> fetchHints = new TreeMap<>(); //sort hints by attribute path
     protected boolean batches;
+    protected boolean sealed;
 
     public Set<String> getAttributes() {
         return Collections.unmodifiableSet(fetchGroupAttributes);
     }
 
     public void addAttribute(String attributePath) {
+        checkNotSealed();
         fetchGroupAttributes.add(attributePath);
     }
 
     public void addAttributes(List<String> attributePaths) {
+        checkNotSealed();
         fetchGroupAttributes.addAll(attributePaths);
     }
 
     public void removeAttributeIf(Predicate<String> filter) {
+        checkNotSealed();
         fetchGroupAttributes.removeIf(filter);
     }
 
@@ -47,6 +51,7 @@ public class FetchGroupDescription {
     }
 
     public void addHint(String attributePath, String hint) {
+        checkNotSealed();
         fetchHints.put(attributePath, hint);
         if (QueryHints.BATCH.equals(hint)) {
             batches = true;
@@ -56,4 +61,17 @@ public class FetchGroupDescription {
     public boolean hasBatches() {
         return batches;
     }
+
+    /**
+     * Makes the description read-only, so it can be shared.
+     */
+    public void seal() {
+        sealed = true;
+    }
+
+    protected void checkNotSealed() {
+        if (sealed) {
+            throw new IllegalStateException("FetchGroupDescription is shared and cannot be modified");
+        }
+    }
 }
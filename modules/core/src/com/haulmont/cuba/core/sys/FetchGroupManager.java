@@ -17,11 +17,14 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.chile.core.model.Range;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.entity.BaseUuidEntity;
 import com.haulmont.cuba.core.entity.EmbeddableEntity;
 import com.haulmont.cuba.core.entity.Entity;
@@ -39,6 +42,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.ClassUtils;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.lang.reflect.Method;
 import java.util.*;
@@ -60,6 +64,18 @@ public class FetchGroupManager {
     @Inject
     private ViewRepository viewRepository;
 
+    @Inject
+    private ServerConfig serverConfig;
+
+    private Cache<FetchGroupKey, FetchGroupDescription> descriptions;
+
+    @PostConstruct
+    private void init() {
+        descriptions = CacheBuilder.newBuilder()
+                .maximumSize(serverConfig.getFetchGroupCacheSize())
+                .build();
+    }
+
     public void setView(JpaQuery query, String queryString, @Nullable View view, boolean singleResultExpected) {
         Preconditions.checkNotNullArgument(query, "query is null");
         if (view != null) {
@@ -128,10 +144,76 @@ public class FetchGroupManager {
         }
     }
 
+    /**
+     * Calculates fetch group attributes and fetch hints for the given query and view.
+     * <p>
+     * Results are cached by query string and view. Views returned by {@link ViewRepository} and not modified
+     * are identified by the stored view they share, other views by their structure. Results are dropped when
+     * deployed views change.
+     *
+     * @return read-only description, it is shared between callers
+     */
     public FetchGroupDescription calculateFetchGroup(String queryString,
                                                      View view,
                                                      boolean singleResultExpected,
                                                      boolean useFetchGroup) {
+        FetchGroupKey key = new FetchGroupKey(queryString, getViewKey(view), singleResultExpected,
+                useFetchGroup, getViewsVersion());
+        FetchGroupDescription description = descriptions.getIfPresent(key);
+        if (description == null) {
+            description = createFetchGroupDescription(queryString, view, singleResultExpected, useFetchGroup);
+            description.seal();
+            descriptions.put(key, description);
+        }
+        return description;
+    }
+
+    /**
+     * Removes all cached fetch group descriptions.
+     */
+    public void clearCache() {
+        descriptions.invalidateAll();
+    }
+
+    private int getViewsVersion() {
+        // minimal views of related entities are taken from the repository, so redeploy must invalidate results
+        return viewRepository instanceof AbstractViewRepository
+                ? ((AbstractViewRepository) viewRepository).getVersion()
+                : 0;
+    }
+
+    private Object getViewKey(View view) {
+        Map<String, ViewProperty> storedProperties = ViewInternalAccess.getStoredProperties(view);
+        if (storedProperties != null) {
+            // stored views are immutable, so the view is identified without traversal
+            return new StoredViewKey(view.getEntityClass(), storedProperties);
+        }
+        return getViewStructure(view);
+    }
+
+    private String getViewStructure(View view) {
+        StringBuilder sb = new StringBuilder();
+        appendViewStructure(sb, view);
+        return sb.toString();
+    }
+
+    private void appendViewStructure(StringBuilder sb, View view) {
+        sb.append(view.getEntityClass().getName()).append('{');
+        for (ViewProperty property : view.getProperties()) {
+            sb.append(property.getName()).append(':').append(property.getFetchMode());
+            if (property.getView() != null) {
+                sb.append('=');
+                appendViewStructure(sb, property.getView());
+            }
+            sb.append(',');
+        }
+        sb.append('}');
+    }
+
+    private FetchGroupDescription createFetchGroupDescription(String queryString,
+                                                              View view,
+                                                              boolean singleResultExpected,
+                                                              boolean useFetchGroup) {
         Set<FetchGroupField> fetchGroupFields = new LinkedHashSet<>();
         processView(view, null, fetchGroupFields, useFetchGroup);
 
@@ -507,4 +589,65 @@ public class FetchGroupManager {
             return path();
         }
     }
-}
\ No newline at end of file
+
+    protected static class FetchGroupKey {
+        private final String queryString;
+        private final Object viewKey;
+        private final boolean singleResultExpected;
+        private final boolean useFetchGroup;
+        private final int viewsVersion;
+
+        public FetchGroupKey(String queryString, Object viewKey, boolean singleResultExpected,
+                             boolean useFetchGroup, int viewsVersion) {
+            this.queryString = queryString;
+            this.viewKey = viewKey;
+            this.singleResultExpected = singleResultExpected;
+            this.useFetchGroup = useFetchGroup;
+            this.viewsVersion = viewsVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            FetchGroupKey that = (FetchGroupKey) o;
+
+            return singleResultExpected == that.singleResultExpected
+                    && useFetchGroup == that.useFetchGroup
+                    && viewsVersion == that.viewsVersion
+                    && Objects.equals(queryString, that.queryString)
+                    && viewKey.equals(that.viewKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(queryString, viewKey, singleResultExpected, useFetchGroup, viewsVersion);
+        }
+    }
+
+    protected static class StoredViewKey {
+        private final Class<?> entityClass;
+        private final Map<String, ViewProperty> storedProperties;
+
+        public StoredViewKey(Class<?> entityClass, Map<String, ViewProperty> storedProperties) {
+            this.entityClass = entityClass;
+            this.storedProperties = storedProperties;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            StoredViewKey that = (StoredViewKey) o;
+
+            return entityClass == that.entityClass && storedProperties == that.storedProperties;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * entityClass.hashCode() + System.identityHashCode(storedProperties);
+        }
+    }
+}
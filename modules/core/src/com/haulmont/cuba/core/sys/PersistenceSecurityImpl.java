@@ -17,6 +17,8 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Multimap;
 import com.haulmont.chile.core.datatypes.Datatype;
 import com.haulmont.chile.core.datatypes.Datatypes;
@@ -28,6 +30,7 @@ import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.PersistenceSecurity;
 import com.haulmont.cuba.core.Query;
 import com.haulmont.cuba.core.app.AttributeSecuritySupport;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.jpql.JpqlSyntaxException;
@@ -44,6 +47,7 @@ import org.codehaus.groovy.runtime.MethodClosure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.io.Serializable;
 import java.text.ParseException;
@@ -76,6 +80,15 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
     @Inject
     protected EntityStates entityStates;
 
+    protected Cache<ConstrainedQueryKey, ConstrainedQuery> constrainedQueries;
+
+    @PostConstruct
+    protected void init() {
+        constrainedQueries = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getConfig(ServerConfig.class).getConstrainedQueryCacheSize())
+                .build();
+    }
+
     @Override
     public boolean applyConstraints(Query query) {
         QueryParser parser = QueryTransformerFactory.createParser(query.getQueryString());
@@ -89,14 +102,20 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
         if (constraints.isEmpty())
             return false;
 
-        QueryTransformer transformer = QueryTransformerFactory.createTransformer(query.getQueryString());
+        ConstrainedQueryKey key = new ConstrainedQueryKey(query.getQueryString(), constraints);
+        ConstrainedQuery constrainedQuery = constrainedQueries.getIfPresent(key);
+        if (constrainedQuery == null) {
+            QueryTransformer transformer = QueryTransformerFactory.createTransformer(query.getQueryString());
 
-        for (JpqlAccessConstraint constraint : constraints) {
-            processConstraint(transformer, constraint, entityName);
+            for (JpqlAccessConstraint constraint : constraints) {
+                processConstraint(transformer, constraint, entityName);
+            }
+            constrainedQuery = new ConstrainedQuery(transformer.getResult(), transformer.getAddedParams());
+            constrainedQueries.put(key, constrainedQuery);
         }
-        query.setQueryString(transformer.getResult());
+        query.setQueryString(constrainedQuery.queryString);
 
-        for (String paramName : transformer.getAddedParams()) {
+        for (String paramName : constrainedQuery.addedParams) {
             setQueryParam(query, paramName);
         }
         return true;
@@ -530,4 +549,50 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
             return result;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Identifies a query with applied constraints: the source query string and the JPQL of the constraints.
+     * The constraints are compared by content, so the key stays valid when constraints are reloaded.
+     */
+    protected static class ConstrainedQueryKey {
+        protected final String queryString;
+        protected final List<String> constraints;
+        protected final int hashCode;
+
+        public ConstrainedQueryKey(String queryString, List<JpqlAccessConstraint> constraints) {
+            this.queryString = queryString;
+            this.constraints = new ArrayList<>(constraints.size() * 2);
+            for (JpqlAccessConstraint constraint : constraints) {
+                this.constraints.add(constraint.getJoin());
+                this.constraints.add(constraint.getWhere());
+            }
+            this.hashCode = 31 * queryString.hashCode() + this.constraints.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ConstrainedQueryKey that = (ConstrainedQueryKey) o;
+            return hashCode == that.hashCode
+                    && queryString.equals(that.queryString)
+                    && constraints.equals(that.constraints);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    protected static class ConstrainedQuery {
+        protected final String queryString;
+        protected final Set<String> addedParams;
+
+        public ConstrainedQuery(String queryString, Set<String> addedParams) {
+            this.queryString = queryString;
+            this.addedParams = Collections.unmodifiableSet(new LinkedHashSet<>(addedParams));
+        }
+    }
+}
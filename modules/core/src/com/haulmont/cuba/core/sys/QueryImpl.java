@@ -84,6 +84,8 @@ public class QueryImpl<T> implements TypedQuery<T> {
     protected ServerConfig serverConfig;
     @Inject
     protected QueryHintsProcessor hintsProcessor;
+    @Inject
+    protected QueryTransformationCache transformationCache;
 
     protected javax.persistence.EntityManager emDelegate;
     protected JpaQuery query;
@@ -239,7 +241,75 @@ public class QueryImpl<T> implements TypedQuery<T> {
     }
 
     protected String transformQueryString() {
-        String result = expandMacros(queryString);
+        String expandedQueryString = expandMacros(queryString);
+        if (!transformationCache.isEnabled()) {
+            return transformQueryString(expandedQueryString);
+        }
+
+        QueryTransformationCache.Key key = new QueryTransformationCache.Key(expandedQueryString,
+                firstResult != null && firstResult > 0, getParamShapes());
+        QueryTransformationCache.Plan plan = transformationCache.get(key);
+        if (plan != null) {
+            applyTransformationPlan(plan);
+            return plan.getQueryString();
+        }
+
+        Set<String> paramNames = getNamedParamNames();
+        String result = transformQueryString(expandedQueryString);
+        paramNames.removeAll(getNamedParamNames());
+        transformationCache.put(key, new QueryTransformationCache.Plan(result, paramNames));
+        return result;
+    }
+
+    /**
+     * Describes parameters in the way they affect {@link #transformQueryString(String)}: null values, empty
+     * collections and case-insensitive strings change the resulting query.
+     */
+    protected List<String> getParamShapes() {
+        List<String> shapes = new ArrayList<>(params.size());
+        for (Param param : params) {
+            String shape;
+            if (param.value == null) {
+                shape = "null";
+            } else if (param.value instanceof Collection && ((Collection) param.value).isEmpty()) {
+                shape = "empty";
+            } else if (param.value instanceof String && ((String) param.value).startsWith("(?i)")) {
+                shape = "ci";
+            } else {
+                shape = "value";
+            }
+            shapes.add(param.name + ":" + shape);
+        }
+        Collections.sort(shapes);
+        return shapes;
+    }
+
+    protected Set<String> getNamedParamNames() {
+        Set<String> names = new HashSet<>();
+        for (Param param : params) {
+            if (param.isNamedParam()) {
+                names.add((String) param.name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Applies the changes of parameters made by {@link #transformQueryString(String)} when it created the plan.
+     */
+    protected void applyTransformationPlan(QueryTransformationCache.Plan plan) {
+        for (Iterator<Param> iterator = params.iterator(); iterator.hasNext(); ) {
+            Param param = iterator.next();
+            if (param.isNamedParam() && plan.getRemovedParams().contains(param.name)) {
+                iterator.remove();
+            } else if (param.value instanceof String && ((String) param.value).startsWith("(?i)")) {
+                param.value = ((String) param.value).substring(4).toLowerCase();
+            }
+        }
+    }
+
+    protected String transformQueryString(String expandedQueryString) {
+        String result = expandedQueryString;
 
         boolean rebuildParser = false;
         QueryParser parser = queryTransformerFactory.parser(result);
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.core.global.Configuration;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Caches results of the JPQL transformations performed by {@link QueryImpl} before creating a JPA query: entity
+ * name replacement for extended entities, adding sorting by id for paging, rewriting of parameters and selection
+ * of nested entities. Each of them requires parsing the query, while the same query strings are executed
+ * repeatedly with the same shape of parameters.
+ * <p>
+ * The size of the cache is defined by {@link ServerConfig#getQueryTransformationCacheSize()}.
+ */
+@Component(QueryTransformationCache.NAME)
+public class QueryTransformationCache {
+
+    public static final String NAME = "cuba_QueryTransformationCache";
+
+    protected Cache<Key, Plan> cache;
+
+    protected int maxSize;
+
+    @Inject
+    public QueryTransformationCache(Configuration configuration) {
+        maxSize = configuration.getConfig(ServerConfig.class).getQueryTransformationCacheSize();
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    @Nullable
+    public Plan get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(Key key, Plan plan) {
+        if (isEnabled()) {
+            cache.put(key, plan);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Identifies a transformation: the query string after macro expansion, whether the query is paged, and the shape
+     * of parameter values which affects the transformation.
+     */
+    public static class Key {
+
+        protected final String queryString;
+        protected final boolean paging;
+        protected final List<String> paramShapes;
+        protected final int hashCode;
+
+        public Key(String queryString, boolean paging, List<String> paramShapes) {
+            this.queryString = queryString;
+            this.paging = paging;
+            this.paramShapes = paramShapes;
+            this.hashCode = Objects.hash(queryString, paging, paramShapes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return paging == key.paging
+                    && hashCode == key.hashCode
+                    && queryString.equals(key.queryString)
+                    && paramShapes.equals(key.paramShapes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Result of a transformation: the transformed query string and the names of parameters which have been
+     * removed from the query.
+     */
+    public static class Plan {
+
+        protected final String queryString;
+        protected final Set<String> removedParams;
+
+        public Plan(String queryString, Set<String> removedParams) {
+            this.queryString = queryString;
+            this.removedParams = removedParams;
+        }
+
+        public String getQueryString() {
+            return queryString;
+        }
+
+        public Set<String> getRemovedParams() {
+            return removedParams;
+        }
+    }
+}
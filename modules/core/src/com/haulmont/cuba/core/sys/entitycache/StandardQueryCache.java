@@ -18,8 +18,10 @@ package com.haulmont.cuba.core.sys.entitycache;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Striped;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -29,17 +31,30 @@ import javax.inject.Inject;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Query cache based on Guava cache.
+ * <p>
+ * Keeps two secondary indexes: query identifier to query key and metaClass name to identifiers of
+ * the queries related to this metaClass. Both indexes are maintained by the cache removal listener,
+ * so entries evicted by the cache are removed from the indexes as well.
+ * <p>
+ * Puts and type invalidations are coordinated by striped locks on type names, so a put of a query
+ * cannot interleave with invalidation of one of its related types.
+ */
 @Component(QueryCache.NAME)
 public class StandardQueryCache implements QueryCache {
 
+    protected static final int LOCK_STRIPES = 64;
+
     protected Cache<QueryKey, QueryResult> data;
-    protected ConcurrentMap<String, CopyOnWriteArrayList<QueryKey>> typeIndex = new ConcurrentHashMap<>();
-    protected ReadWriteLock lock = new ReentrantReadWriteLock();
+    protected ConcurrentMap<UUID, QueryKey> idIndex = new ConcurrentHashMap<>();
+    protected ConcurrentMap<String, Set<UUID>> typeIndex = new ConcurrentHashMap<>();
+
+    protected Striped<ReadWriteLock> typeLocks = Striped.readWriteLock(LOCK_STRIPES);
+    protected Striped<Lock> keyLocks = Striped.lock(LOCK_STRIPES);
 
     @Inject
     protected QueryCacheConfig queryCacheConfig;
@@ -48,7 +63,10 @@ public class StandardQueryCache implements QueryCache {
 
     @PostConstruct
     protected void init() {
-        data = CacheBuilder.newBuilder().maximumSize(queryCacheConfig.getQueryCacheMaxSize()).build();
+        data = CacheBuilder.newBuilder()
+                .maximumSize(queryCacheConfig.getQueryCacheMaxSize())
+                .removalListener(this::onRemoval)
+                .build();
     }
 
     @Override
@@ -58,107 +76,123 @@ public class StandardQueryCache implements QueryCache {
 
     @Override
     public void put(QueryKey queryKey, QueryResult queryResult) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
+        Lock keyLock = keyLocks.get(queryKey);
+        keyLock.lock();
         try {
-            data.put(queryKey, queryResult);
-
-            for (String type : queryResult.getRelatedTypes()) {
-                CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(type);
-                if (keys == null) {
-                    typeIndex.putIfAbsent(type, new CopyOnWriteArrayList<>());
-                    keys = typeIndex.get(type);
+            List<Lock> readLocks = new ArrayList<>();
+            for (ReadWriteLock typeLock : typeLocks.bulkGet(queryResult.getRelatedTypes())) {
+                readLocks.add(typeLock.readLock());
+            }
+            readLocks.forEach(Lock::lock);
+            try {
+                // remove an equal key first, so the cache always holds the key registered in the indexes
+                data.invalidate(queryKey);
+
+                idIndex.put(queryKey.getId(), queryKey);
+                for (String type : queryResult.getRelatedTypes()) {
+                    typeIndex.compute(type, (t, ids) -> {
+                        if (ids == null) {
+                            ids = ConcurrentHashMap.newKeySet();
+                        }
+                        ids.add(queryKey.getId());
+                        return ids;
+                    });
                 }
-                keys.add(queryKey);
+
+                data.put(queryKey, queryResult);
+            } finally {
+                readLocks.forEach(Lock::unlock);
             }
         } finally {
-            readLock.unlock();
+            keyLock.unlock();
         }
     }
 
     @Override
     public QueryKey findQueryKeyById(UUID queryId) {
-        Set<QueryKey> keys = Sets.newHashSet(data.asMap().keySet());
-        for (QueryKey key : keys) {
-            if (Objects.equals(queryId, key.getId())) {
-                return key;
-            }
-        }
-        return null;
+        return idIndex.get(queryId);
     }
 
     @Override
     public void invalidate(QueryKey queryKey) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            log.debug("Invalidate query by key {}", queryKey.printDescription());
-            data.invalidate(queryKey);
-        } finally {
-            readLock.unlock();
-        }
+        log.debug("Invalidate query by key {}", queryKey.printDescription());
+        data.invalidate(queryKey);
     }
 
     @Override
     public void invalidate(String typeName) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
+        Lock writeLock = typeLocks.get(typeName).writeLock();
+        writeLock.lock();
         try {
-            CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(typeName);
-            if (keys == null) return;
-            log.debug("Invalidate cache for type {}", typeName);
-            Arrays.stream(keys.toArray()).forEach(it -> data.invalidate(it));
+            invalidateType(typeName);
         } finally {
-            readLock.unlock();
+            writeLock.unlock();
         }
     }
 
     @Override
     public void invalidate(Set<String> typeNames) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
+        List<Lock> writeLocks = new ArrayList<>();
+        for (ReadWriteLock typeLock : typeLocks.bulkGet(typeNames)) {
+            writeLocks.add(typeLock.writeLock());
+        }
+        writeLocks.forEach(Lock::lock);
         try {
-            typeNames.forEach(typeName -> {
-                        CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(typeName);
-                        if (keys == null) return;
-                        log.debug("Invalidate cache for type {}", typeName);
-                        Arrays.stream(keys.toArray()).forEach(it -> data.invalidate(it));
-                    }
-            );
+            typeNames.forEach(this::invalidateType);
         } finally {
-            readLock.unlock();
+            writeLocks.forEach(Lock::unlock);
+        }
+    }
+
+    protected void invalidateType(String typeName) {
+        Set<UUID> ids = typeIndex.get(typeName);
+        if (ids == null) return;
+        log.debug("Invalidate cache for type {}", typeName);
+        for (UUID id : ids.toArray(new UUID[0])) {
+            QueryKey queryKey = idIndex.get(id);
+            if (queryKey != null) {
+                data.invalidate(queryKey);
+            }
         }
     }
 
     @Override
     public QueryKey invalidate(UUID queryId) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            Set<QueryKey> keys = Sets.newHashSet(data.asMap().keySet());
-            for (QueryKey key : keys) {
-                if (Objects.equals(queryId, key.getId())) {
-                    log.debug("Invalidate query by identifier {}", queryId);
-                    data.invalidate(key);
-                    return key;
-                }
-            }
-        } finally {
-            readLock.unlock();
+        QueryKey queryKey = idIndex.get(queryId);
+        if (queryKey != null) {
+            log.debug("Invalidate query by identifier {}", queryId);
+            data.invalidate(queryKey);
         }
-        return null;
+        return queryKey;
     }
 
     @Override
     public void invalidateAll() {
-        Lock writeLock = lock.writeLock();
-        writeLock.lock();
-        try {
-            log.debug("Invalidate all cache");
-            data.invalidateAll();
-            typeIndex.clear();
-        } finally {
-            writeLock.unlock();
+        log.debug("Invalidate all cache");
+        data.invalidateAll();
+    }
+
+    /**
+     * Keeps the secondary indexes consistent with the cache contents. Invoked by the cache for
+     * explicitly invalidated entries as well as for entries evicted because of the size limit.
+     */
+    protected void onRemoval(RemovalNotification<QueryKey, QueryResult> notification) {
+        QueryKey queryKey = notification.getKey();
+        if (queryKey == null || notification.getCause() == RemovalCause.REPLACED) {
+            return;
+        }
+
+        UUID id = queryKey.getId();
+        idIndex.remove(id, queryKey);
+
+        QueryResult queryResult = notification.getValue();
+        if (queryResult != null) {
+            for (String type : queryResult.getRelatedTypes()) {
+                typeIndex.computeIfPresent(type, (t, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
         }
     }
 
@@ -110,4 +110,44 @@ public interface DbmsFeatures {
     default Integer getMaxIdsBatchSize() {
         return null;
     }
+
+    /**
+     * @return maximum number of bind parameters that can be safely used in a single query.
+     * {@code null} is returned if there is no any limit
+     */
+    default Integer getMaxQueryParametersCount() {
+        return null;
+    }
+
+    /**
+     * Returns SQL type name of elements of a {@link java.sql.Array} to bind a list of values of the given class
+     * as a single parameter, e.g. for bulk inserts.
+     *
+     * @return type name or null if array parameters of such elements are not supported and JDBC batches must be used
+     * @see #getArrayElementsExpression()
+     */
+    @Nullable
+    default String getArrayElementTypeName(Class<?> elementClass) {
+        return null;
+    }
+
+    /**
+     * @return SQL expression returning elements of an array parameter as rows, to be used in the select list
+     * of {@code insert ... select} statements
+     * @see #getArrayElementTypeName(Class)
+     */
+    default String getArrayElementsExpression() {
+        return "unnest(?)";
+    }
+
+    /**
+     * Returns the clause to append to an ordered select statement to return at most the given number of rows,
+     * locking them for update and skipping the rows locked by other transactions.
+     *
+     * @return clause text or null if the DBMS does not support skipping locked rows
+     */
+    @Nullable
+    default String getSkipLockedClause(int maxResults) {
+        return null;
+    }
 }
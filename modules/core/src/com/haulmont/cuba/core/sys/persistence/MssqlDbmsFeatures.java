@@ -77,4 +77,10 @@ public class MssqlDbmsFeatures implements DbmsFeatures {
     public boolean supportsLobSortingAndFiltering() {
         return true;
     }
+
+    @Override
+    public Integer getMaxQueryParametersCount() {
+        // SQL Server limits the number of parameters in a request to 2100
+        return 2000;
+    }
 }
\ No newline at end of file
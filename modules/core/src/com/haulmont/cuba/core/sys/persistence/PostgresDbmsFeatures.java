@@ -20,6 +20,7 @@ package com.haulmont.cuba.core.sys.persistence;
 import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @SuppressWarnings("UnusedDeclaration")
 public class PostgresDbmsFeatures implements DbmsFeatures {
@@ -77,4 +78,28 @@ public class PostgresDbmsFeatures implements DbmsFeatures {
     public boolean supportsLobSortingAndFiltering() {
         return true;
     }
+
+    @Override
+    public Integer getMaxQueryParametersCount() {
+        // PostgreSQL JDBC driver limits the number of parameters to 32767
+        return 32000;
+    }
+
+    @Override
+    public String getArrayElementTypeName(Class<?> elementClass) {
+        if (elementClass == UUID.class)
+            return "uuid";
+        if (elementClass == Long.class)
+            return "int8";
+        if (elementClass == Integer.class)
+            return "int4";
+        if (elementClass == String.class)
+            return "varchar";
+        return null;
+    }
+
+    @Override
+    public String getSkipLockedClause(int maxResults) {
+        return "limit " + maxResults + " for update skip locked";
+    }
 }
\ No newline at end of file
@@ -73,7 +73,8 @@ public class CubaRemoteInvocationExecutor implements RemoteInvocationExecutor {
                     if (StringUtils.isNotBlank(sessionProviderUrl)) {
                         log.debug("User session {} not found, trying to get it from {}", sessionId, sessionProviderUrl);
                         try {
-                            HttpServiceProxy proxyFactory = new HttpServiceProxy(getServerSelector(sessionProviderUrl));
+                            HttpServiceProxy proxyFactory = new HttpServiceProxy(getServerSelector(sessionProviderUrl),
+                                    AppBeans.get(RemotingHttpClientPool.NAME));
                             proxyFactory.setServiceUrl("cuba_TrustedClientService");
                             proxyFactory.setServiceInterface(TrustedClientService.class);
                             proxyFactory.afterPropertiesSet();
@@ -29,16 +29,21 @@ import org.springframework.web.util.NestedServletException;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OptionalDataException;
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Exports a middleware service bean as an HTTP invoker service endpoint.
  */
 public class HttpServiceExporter extends HttpInvokerServiceExporter implements BeanNameAware {
 
+    protected static final String HTTP_HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+
+    protected static final String HTTP_HEADER_CONTENT_ENCODING = "Content-Encoding";
+
+    protected static final String ENCODING_GZIP = "gzip";
+
     public HttpServiceExporter() {
         super();
         setRegisterTraceInterceptor(false);
@@ -105,6 +110,32 @@ public class HttpServiceExporter extends HttpInvokerServiceExporter implements B
         }
     }
 
+    /**
+     * Decompresses the request body if the client has compressed it.
+     */
+    @Override
+    protected InputStream decorateInputStream(HttpServletRequest request, InputStream is) throws IOException {
+        String contentEncoding = request.getHeader(HTTP_HEADER_CONTENT_ENCODING);
+        if (contentEncoding != null && contentEncoding.toLowerCase().contains(ENCODING_GZIP)) {
+            return new GZIPInputStream(is);
+        }
+        return is;
+    }
+
+    /**
+     * Compresses the result if the client accepts compressed responses.
+     */
+    @Override
+    protected OutputStream decorateOutputStream(HttpServletRequest request, HttpServletResponse response,
+                                                OutputStream os) throws IOException {
+        String acceptEncoding = request.getHeader(HTTP_HEADER_ACCEPT_ENCODING);
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains(ENCODING_GZIP)) {
+            response.setHeader(HTTP_HEADER_CONTENT_ENCODING, ENCODING_GZIP);
+            return new GZIPOutputStream(os);
+        }
+        return os;
+    }
+
     @Override
     protected void doWriteRemoteInvocationResult(RemoteInvocationResult result, ObjectOutputStream oos) throws IOException {
         SerializationSupport.serialize(result, oos);
@@ -46,7 +46,6 @@ import javax.annotation.concurrent.GuardedBy;
 import javax.inject.Inject;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.*;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
@@ -78,6 +77,8 @@ public class EntityLog implements EntityLogAPI {
     protected DataManager dataManager;
     @Inject
     protected ServerConfig serverConfig;
+    @Inject
+    protected EntityLogAsyncWriter asyncWriter;
 
     protected volatile boolean loaded;
     protected EntityLogConfig config;
@@ -90,6 +91,8 @@ public class EntityLog implements EntityLogAPI {
     protected ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     protected ThreadLocal<Boolean> entityLogSwitchedOn = new ThreadLocal<>();
 
+    protected final boolean legacyChangesOverridden = isLegacyChangesOverridden();
+
     @Inject
     public EntityLog(Configuration configuration) {
         config = configuration.getConfig(EntityLogConfig.class);
@@ -112,22 +115,35 @@ public class EntityLog implements EntityLogAPI {
         if (items == null || items.isEmpty())
             return;
 
-        Set<EntityLogItem> saved = new LinkedHashSet<>();
+        Map<List<Object>, List<EntityLogItem>> itemsByEntity = new LinkedHashMap<>();
         for (EntityLogItem item : items) {
-            List<EntityLogItem> sameEntityList = items.stream()
-                    .filter(entityLogItem -> entityLogItem.getDbGeneratedIdEntity() != null ?
-                            entityLogItem.getDbGeneratedIdEntity().equals(item.getDbGeneratedIdEntity()) :
-                            entityLogItem.getObjectEntityId().equals(item.getObjectEntityId()))
-                    .collect(Collectors.toList());
+            itemsByEntity.computeIfAbsent(getItemGroupKey(item), key -> new ArrayList<>()).add(item);
+        }
+
+        List<EntityLogItem> itemsToSave = new ArrayList<>(itemsByEntity.size());
+        for (List<EntityLogItem> sameEntityList : itemsByEntity.values()) {
             EntityLogItem itemToSave = sameEntityList.get(0);
-            if (!saved.contains(itemToSave)) {
-                computeChanges(itemToSave, sameEntityList);
-                saved.add(itemToSave);
+            computeChanges(itemToSave, sameEntityList);
+            itemsToSave.add(itemToSave);
+        }
+
+        if (config.getAsyncWriting()) {
+            saveItemsAsync(itemsToSave);
+        } else {
+            for (EntityLogItem itemToSave : itemsToSave) {
                 saveItem(itemToSave);
             }
         }
     }
 
+    /**
+     * Returns the key of a group of items related to the same entity instance in the current transaction.
+     */
+    protected List<Object> getItemGroupKey(EntityLogItem item) {
+        Object id = item.getDbGeneratedIdEntity() != null ? item.getDbGeneratedIdEntity() : item.getObjectEntityId();
+        return Arrays.asList(item.getEntity(), id);
+    }
+
     protected void computeChanges(EntityLogItem itemToSave, List<EntityLogItem> sameEntityList) {
         Set<String> notDynamicAttributes = sameEntityList.stream()
                 .flatMap(entityLogItem -> entityLogItem.getAttributes().stream().map(EntityLogAttr::getName))
@@ -165,31 +181,17 @@ public class EntityLog implements EntityLogAPI {
 
         sameEntityList.addAll(dynamicAttributeChanges);
 
-        Properties properties = new Properties();
-
-        for (EntityLogAttr attr : itemToSave.getAttributes()) {
-            properties.setProperty(attr.getName(), attr.getValue());
-            if (attr.getValueId() != null) {
-                properties.setProperty(attr.getName() + EntityLogAttr.VALUE_ID_SUFFIX, attr.getValueId());
-            }
-            if (attr.getOldValue() != null) {
-                properties.setProperty(attr.getName() + EntityLogAttr.OLD_VALUE_SUFFIX, attr.getOldValue());
-            }
-            if (attr.getOldValueId() != null) {
-                properties.setProperty(attr.getName() + EntityLogAttr.OLD_VALUE_ID_SUFFIX, attr.getOldValueId());
-            }
-            if (attr.getMessagesPack() != null) {
-                properties.setProperty(attr.getName() + EntityLogAttr.MP_SUFFIX, attr.getMessagesPack());
-            }
-        }
-
         if (itemToSave.getType() == EntityLogItem.Type.MODIFY) {
             sameEntityList.stream()
                     .filter(entityLogItem -> entityLogItem.getType() == EntityLogItem.Type.CREATE)
                     .findFirst()
                     .ifPresent(entityLogItem -> itemToSave.setType(EntityLogItem.Type.CREATE));
         }
-        itemToSave.setChanges(getChanges(properties));
+        if (legacyChangesOverridden) {
+            itemToSave.setChanges(getChanges(EntityLogChangesFormat.toProperties(itemToSave.getAttributes())));
+        } else {
+            itemToSave.setChanges(EntityLogChangesFormat.encode(itemToSave.getAttributes()));
+        }
     }
 
     protected void setAttributeOldValue(EntityLogAttr entityLogAttr, EntityLogItem itemToSave) {
@@ -247,6 +249,27 @@ public class EntityLog implements EntityLogAPI {
         }
     }
 
+    /**
+     * Passes the items to {@link EntityLogAsyncWriter} after commit of the current transaction.
+     * Items not accepted by the writer are saved synchronously in a new transaction.
+     */
+    protected void saveItemsAsync(List<EntityLogItem> items) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                for (EntityLogItem item : items) {
+                    if (item.getDbGeneratedIdEntity() != null) {
+                        item.setObjectEntityId(item.getDbGeneratedIdEntity().getId().getNN());
+                    }
+                }
+                List<EntityLogItem> rejected = asyncWriter.enqueue(items);
+                if (!rejected.isEmpty()) {
+                    asyncWriter.persistItems(rejected);
+                }
+            }
+        });
+    }
+
     @Override
     public synchronized boolean isEnabled() {
         return config.getEnabled() && isLoggingForCurrentThread();
@@ -686,17 +709,30 @@ public class EntityLog implements EntityLogAPI {
         return result;
     }
 
+    /**
+     * Encodes attributes to the format of {@link EntityLogChangesFormat}. Called instead of the encoder only if it is
+     * overridden in a subclass.
+     *
+     * @deprecated changes are encoded by {@link EntityLogChangesFormat#encode(Collection)}
+     */
+    @Deprecated
     protected String getChanges(Properties properties) {
-        try {
-            StringWriter writer = new StringWriter();
-            properties.store(writer, null);
-            String changes = writer.toString();
-            if (changes.startsWith("#"))
-                changes = changes.substring(changes.indexOf("\n") + 1); // cut off comments line
-            return changes;
-        } catch (IOException e) {
-            throw new RuntimeException("Error writing entity log attributes", e);
+        return EntityLogChangesFormat.encode(EntityLogChangesFormat.fromProperties(properties, null));
+    }
+
+    protected boolean isLegacyChangesOverridden() {
+        for (Class<?> c = getClass(); c != EntityLog.class && c != null; c = c.getSuperclass()) {
+            if (c.getName().contains("$$")) {
+                // skip proxies generated by Spring
+                continue;
+            }
+            try {
+                c.getDeclaredMethod("getChanges", Properties.class);
+                return true;
+            } catch (NoSuchMethodException ignored) {
+            }
         }
+        return false;
     }
 
     @Override
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.haulmont.bali.db.QueryRunner;
+import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.Persistence;
+import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.entity.ReferenceToEntity;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.TimeSource;
+import com.haulmont.cuba.core.sys.AuditInfoProvider;
+import com.haulmont.cuba.core.sys.events.AppContextStoppedEvent;
+import com.haulmont.cuba.core.sys.persistence.DbTypeConverter;
+import com.haulmont.cuba.security.entity.EntityLogItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes {@link EntityLogItem}s to the database in a background thread. Items are accumulated in a bounded queue
+ * and inserted into {@code SEC_ENTITY_LOG} by JDBC batches, bypassing the ORM and entity listeners.
+ * <p>
+ * A batch which cannot be written is retried {@link EntityLogConfig#getAsyncRetryAttempts()} times with
+ * exponential backoff, then its items are persisted one by one through the ORM.
+ * On application stop, the items still in the queue are written synchronously and the items passed to
+ * {@link #enqueue(Collection)} afterwards are rejected, so the caller persists them itself.
+ * <p>
+ * Used by {@link EntityLog} if {@link EntityLogConfig#getAsyncWriting()} is true.
+ */
+@Component(EntityLogAsyncWriter.NAME)
+public class EntityLogAsyncWriter {
+
+    public static final String NAME = "cuba_EntityLogAsyncWriter";
+
+    private static final Logger log = LoggerFactory.getLogger(EntityLogAsyncWriter.class);
+
+    protected static final String INSERT_SQL = "insert into SEC_ENTITY_LOG (ID, CREATE_TS, CREATED_BY, SYS_TENANT_ID, " +
+            "EVENT_TS, USER_ID, CHANGE_TYPE, ENTITY, ENTITY_INSTANCE_NAME, " +
+            "ENTITY_ID, STRING_ENTITY_ID, INT_ENTITY_ID, LONG_ENTITY_ID, CHANGES) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Inject
+    protected Persistence persistence;
+    @Inject
+    protected TimeSource timeSource;
+    @Inject
+    protected AuditInfoProvider auditInfoProvider;
+
+    protected EntityLogConfig config;
+
+    @GuardedBy("this")
+    protected BlockingQueue<QueuedItem> queue;
+    @GuardedBy("this")
+    protected ExecutorService executor;
+
+    protected volatile boolean stopped;
+    protected final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+
+    protected long retryDelayMs = 1000;
+    protected long stopTimeoutMs = 10000;
+
+    protected AtomicLong writtenCount = new AtomicLong();
+    protected AtomicLong rejectedCount = new AtomicLong();
+    protected volatile long lastBatchLag;
+
+    @Inject
+    public EntityLogAsyncWriter(Configuration configuration) {
+        config = configuration.getConfig(EntityLogConfig.class);
+    }
+
+    /**
+     * Puts the items to the queue. Must be called after commit of the transaction which created the items,
+     * in the thread of this transaction.
+     *
+     * @return items that have not been accepted because the queue is full or the writer is stopped
+     */
+    public List<EntityLogItem> enqueue(Collection<EntityLogItem> items) {
+        List<EntityLogItem> rejected = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        // the read lock guarantees that the items are not added after the queue is drained on stop
+        stopLock.readLock().lock();
+        try {
+            BlockingQueue<QueuedItem> queue = stopped ? null : getQueue();
+            for (EntityLogItem item : items) {
+                prepareItem(item);
+                if (queue == null || !queue.offer(new QueuedItem(item, now))) {
+                    rejected.add(item);
+                }
+            }
+        } finally {
+            stopLock.readLock().unlock();
+        }
+        if (!rejected.isEmpty()) {
+            rejectedCount.addAndGet(rejected.size());
+            log.debug("EntityLog queue is full or the writer is stopped, {} items are not accepted", rejected.size());
+        }
+        return rejected;
+    }
+
+    /**
+     * Persists the items through the ORM in a new transaction.
+     */
+    public void persistItems(Collection<EntityLogItem> items) {
+        try (Transaction tx = persistence.createTransaction()) {
+            EntityManager em = persistence.getEntityManager();
+            for (EntityLogItem item : items) {
+                em.persist(item);
+            }
+            tx.commit();
+        }
+    }
+
+    /**
+     * Sets the audit attributes here because the writer thread has no security context.
+     */
+    protected void prepareItem(EntityLogItem item) {
+        if (item.getCreateTs() == null) {
+            item.setCreateTs(timeSource.currentTimestamp());
+        }
+        if (item.getCreatedBy() == null) {
+            item.setCreatedBy(auditInfoProvider.getCurrentUserLogin());
+        }
+    }
+
+    /**
+     * @return number of items waiting to be written
+     */
+    public int getQueueSize() {
+        BlockingQueue<QueuedItem> queue = this.queue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * @return time in milliseconds the oldest item in the queue has been waiting
+     */
+    public long getQueueLag() {
+        BlockingQueue<QueuedItem> queue = this.queue;
+        QueuedItem head = queue == null ? null : queue.peek();
+        return head == null ? 0 : System.currentTimeMillis() - head.enqueueTime;
+    }
+
+    /**
+     * @return time in milliseconds between enqueueing and writing of the oldest item in the last written batch
+     */
+    public long getLastBatchLag() {
+        return lastBatchLag;
+    }
+
+    /**
+     * @return total number of written items
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * @return total number of items not accepted to the queue
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    protected synchronized BlockingQueue<QueuedItem> getQueue() {
+        if (queue == null) {
+            queue = new ArrayBlockingQueue<>(config.getAsyncQueueCapacity());
+            startWriterThread();
+        }
+        return queue;
+    }
+
+    protected void startWriterThread() {
+        executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("EntityLogWriter-%d").setDaemon(true).build());
+        executor.submit(this::processQueue);
+    }
+
+    protected void processQueue() {
+        List<QueuedItem> batch = new ArrayList<>();
+        while (!stopped) {
+            try {
+                QueuedItem first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, config.getAsyncBatchSize() - 1);
+                writeBatchWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                log.error("Error writing EntityLog items", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the batch, retrying with exponential backoff. If all attempts fail, or the writer is being stopped,
+     * the items are persisted one by one through the ORM, so only items which cannot be saved at all are lost.
+     */
+    protected void writeBatchWithRetry(List<QueuedItem> batch) {
+        int attempts = Math.max(config.getAsyncRetryAttempts(), 0);
+        long delay = retryDelayMs;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                writeBatch(batch);
+                return;
+            } catch (Exception e) {
+                if (attempt >= attempts || stopped) {
+                    log.error("Error writing {} EntityLog items, persisting them one by one", batch.size(), e);
+                    break;
+                }
+                log.warn("Error writing {} EntityLog items, retrying in {} ms", batch.size(), delay, e);
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            delay *= 2;
+        }
+        persistItemsOneByOne(batch);
+    }
+
+    protected void persistItemsOneByOne(List<QueuedItem> batch) {
+        for (QueuedItem queuedItem : batch) {
+            try {
+                persistItems(Collections.singletonList(queuedItem.item));
+                writtenCount.incrementAndGet();
+            } catch (Exception e) {
+                log.error("Unable to save EntityLog item {} of {} {}", queuedItem.item.getId(),
+                        queuedItem.item.getEntity(), queuedItem.item.getObjectEntityId(), e);
+            }
+        }
+    }
+
+    protected void writeBatch(List<QueuedItem> batch) throws SQLException {
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        int uuidType = converter.getSqlType(UUID.class);
+        int dateType = converter.getSqlType(Date.class);
+        int[] paramTypes = new int[]{
+                uuidType, dateType, Types.VARCHAR, Types.VARCHAR,
+                dateType, uuidType, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+                uuidType, Types.VARCHAR, Types.INTEGER, Types.BIGINT, Types.LONGVARCHAR
+        };
+
+        Object[][] params = new Object[batch.size()][];
+        for (int i = 0; i < batch.size(); i++) {
+            EntityLogItem item = batch.get(i).item;
+            ReferenceToEntity entityRef = item.getEntityRef();
+            params[i] = new Object[]{
+                    converter.getSqlObject(item.getId()),
+                    converter.getSqlObject(item.getCreateTs()),
+                    item.getCreatedBy(),
+                    item.getSysTenantId(),
+                    converter.getSqlObject(item.getEventTs()),
+                    item.getUser() == null ? null : converter.getSqlObject(item.getUser().getId()),
+                    item.getType() == null ? null : item.getType().getId(),
+                    item.getEntity(),
+                    item.getEntityInstanceName(),
+                    converter.getSqlObject(entityRef.getEntityId()),
+                    entityRef.getStringEntityId(),
+                    entityRef.getIntEntityId(),
+                    entityRef.getLongEntityId(),
+                    item.getChanges()
+            };
+        }
+
+        try (Transaction tx = persistence.createTransaction()) {
+            QueryRunner runner = new QueryRunner();
+            runner.batch(persistence.getEntityManager().getConnection(), INSERT_SQL, params, paramTypes);
+            tx.commit();
+        }
+
+        writtenCount.addAndGet(batch.size());
+        lastBatchLag = System.currentTimeMillis() - batch.get(0).enqueueTime;
+        log.trace("Written {} EntityLog items", batch.size());
+    }
+
+    @EventListener(AppContextStoppedEvent.class)
+    protected void applicationStopped() {
+        stopLock.writeLock().lock();
+        try {
+            stopped = true;
+        } finally {
+            stopLock.writeLock().unlock();
+        }
+
+        BlockingQueue<QueuedItem> queue;
+        ExecutorService executor;
+        synchronized (this) {
+            queue = this.queue;
+            executor = this.executor;
+        }
+        if (queue == null) {
+            return;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(stopTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    log.warn("EntityLog writer has not been stopped in time, writing the queue in the current thread");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // write the rest synchronously, the writer thread can still be busy with its last batch
+        List<QueuedItem> batch = new ArrayList<>();
+        while (queue.drainTo(batch, config.getAsyncBatchSize()) > 0) {
+            try {
+                writeBatch(batch);
+            } catch (Exception e) {
+                log.error("Error writing {} EntityLog items on shutdown, persisting them one by one", batch.size(), e);
+                persistItemsOneByOne(batch);
+            }
+            batch.clear();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    protected static class QueuedItem {
+        protected final EntityLogItem item;
+        protected final long enqueueTime;
+
+        protected QueuedItem(EntityLogItem item, long enqueueTime) {
+            this.item = item;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
 import com.haulmont.cuba.core.config.defaults.DefaultBoolean;
+import com.haulmont.cuba.core.config.defaults.DefaultInt;
 
 /**
  * {@link com.haulmont.cuba.security.app.EntityLog} configuration parameters
@@ -35,4 +36,36 @@ public interface EntityLogConfig extends Config {
     @DefaultBoolean(true)
     boolean getEnabled();
     void setEnabled(boolean value);
+
+    /**
+     * @return Whether the EntityLog items are written asynchronously after commit of the transaction
+     * by {@link EntityLogAsyncWriter} using JDBC batches
+     */
+    @Property("cuba.entityLog.asyncWriting")
+    @DefaultBoolean(false)
+    boolean getAsyncWriting();
+    void setAsyncWriting(boolean value);
+
+    /**
+     * @return Maximum number of EntityLog items waiting for asynchronous writing. If the queue is full,
+     * the items are written synchronously.
+     */
+    @Property("cuba.entityLog.asyncQueueCapacity")
+    @DefaultInt(10000)
+    int getAsyncQueueCapacity();
+
+    /**
+     * @return Maximum number of EntityLog items written by a single JDBC batch in the asynchronous mode
+     */
+    @Property("cuba.entityLog.asyncBatchSize")
+    @DefaultInt(500)
+    int getAsyncBatchSize();
+
+    /**
+     * @return Number of retries of a failed JDBC batch in the asynchronous mode, with the delay doubled after each
+     * attempt. After that, the items of the batch are persisted one by one.
+     */
+    @Property("cuba.entityLog.asyncRetryAttempts")
+    @DefaultInt(3)
+    int getAsyncRetryAttempts();
 }
\ No newline at end of file
@@ -17,6 +17,7 @@ package com.haulmont.cuba.security.app;
 
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.cuba.core.app.ClusterListener;
+import com.haulmont.cuba.core.app.ClusterListenerAdapter;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
 import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.global.Configuration;
@@ -37,6 +38,7 @@ import javax.inject.Inject;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -84,10 +86,93 @@ public class UserSessions implements UserSessionsAPI {
         }
     }
 
+    /**
+     * Compact cluster message carrying last used timestamps of sessions. Zero timestamp means session removal.
+     */
+    public static class UserSessionsTouch implements Serializable {
+        private static final long serialVersionUID = 2592841917430470916L;
+
+        public final Map<UUID, Long> lastUsedTs;
+
+        public UserSessionsTouch(Map<UUID, Long> lastUsedTs) {
+            this.lastUsedTs = lastUsedTs;
+        }
+
+        @Override
+        public String toString() {
+            return "UserSessionsTouch{sessions: " + lastUsedTs.size() + "}";
+        }
+    }
+
+    /**
+     * Values by which a session is currently indexed.
+     */
+    protected static class SessionIndexEntry {
+        protected final long expiryBucket;
+        protected final UUID userId;
+        protected final UUID substitutedUserId;
+        protected final Object[] attributeValues;
+
+        public SessionIndexEntry(long expiryBucket, UUID userId, UUID substitutedUserId, Object[] attributeValues) {
+            this.expiryBucket = expiryBucket;
+            this.userId = userId;
+            this.substitutedUserId = substitutedUserId;
+            this.attributeValues = attributeValues;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            SessionIndexEntry that = (SessionIndexEntry) o;
+
+            return expiryBucket == that.expiryBucket
+                    && Objects.equals(userId, that.userId)
+                    && Objects.equals(substitutedUserId, that.substitutedUserId)
+                    && Arrays.equals(attributeValues, that.attributeValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(expiryBucket, userId, substitutedUserId, Arrays.hashCode(attributeValues));
+        }
+    }
+
     private static final Logger log = LoggerFactory.getLogger(UserSessions.class);
 
+    protected static final long NO_EXPIRY_BUCKET = -1;
+
     protected Map<UUID, UserSessionInfo> cache = new ConcurrentHashMap<>();
 
+    /**
+     * Non-system sessions grouped by {@code lastUsedTs / expiryBucketMillis}, so eviction checks only old buckets.
+     */
+    protected Map<Long, Set<UUID>> expiryBuckets = new ConcurrentHashMap<>();
+
+    protected long expiryBucketMillis = 10000;
+
+    /**
+     * Sessions by ids of their users and substituted users.
+     */
+    protected Map<UUID, Set<UUID>> userIndex = new ConcurrentHashMap<>();
+
+    protected List<String> indexedAttributes = Collections.emptyList();
+
+    /**
+     * Sessions by values of attributes from {@link #indexedAttributes}, in the same order.
+     */
+    protected List<Map<Object, Set<UUID>>> attributeIndexes = Collections.emptyList();
+
+    protected Map<UUID, SessionIndexEntry> indexEntries = new ConcurrentHashMap<>();
+
+    /**
+     * Last used timestamps waiting to be sent to the cluster by {@link #sendTouches()}.
+     */
+    protected Map<UUID, Long> touches = new ConcurrentHashMap<>();
+
+    protected volatile long lastTouchesSentTs;
+
     protected volatile int expirationTimeout = 1800;
 
     protected volatile int sendTimeout = 10;
@@ -128,6 +213,15 @@ public class UserSessions implements UserSessionsAPI {
         setExpirationTimeoutSec(serverConfig.getUserSessionExpirationTimeoutSec());
         setSendTimeoutSec(serverConfig.getUserSessionSendTimeoutSec());
         touchTimeout = serverConfig.getUserSessionTouchTimeoutSec();
+
+        List<String> attributes = serverConfig.getUserSessionIndexedAttributes();
+        if (attributes != null && !attributes.isEmpty()) {
+            indexedAttributes = new ArrayList<>(attributes);
+            attributeIndexes = new ArrayList<>();
+            for (int i = 0; i < indexedAttributes.size(); i++) {
+                attributeIndexes.add(new ConcurrentHashMap<>());
+            }
+        }
     }
 
     @Inject
@@ -151,6 +245,25 @@ public class UserSessions implements UserSessionsAPI {
                     public void setState(byte[] state) {
                         receiveClusterState(state);
                     }
+
+                    @Override
+                    public void getState(OutputStream output) throws IOException {
+                        sendClusterState(output);
+                    }
+
+                    @Override
+                    public void setState(InputStream input) throws IOException {
+                        receiveClusterState(input);
+                    }
+                }
+        );
+        this.clusterManager.addListener(
+                UserSessionsTouch.class,
+                new ClusterListenerAdapter<UserSessionsTouch>() {
+                    @Override
+                    public void receive(UserSessionsTouch message) {
+                        receiveClusterTouch(message);
+                    }
                 }
         );
     }
@@ -168,6 +281,28 @@ public class UserSessions implements UserSessionsAPI {
         }
     }
 
+    protected void receiveClusterTouch(UserSessionsTouch message) {
+        for (Map.Entry<UUID, Long> entry : message.lastUsedTs.entrySet()) {
+            UUID id = entry.getKey();
+            long lastUsedTs = entry.getValue();
+            if (lastUsedTs == 0) {
+                UserSessionInfo usi = removeSessionInfo(id);
+                if (usi != null) {
+                    log.debug("Removing session due to cluster message: {}", usi);
+                }
+            } else {
+                UserSessionInfo usi = getSessionInfo(id);
+                if (usi != null && usi.lastUsedTs < lastUsedTs) {
+                    usi.lastUsedTs = lastUsedTs;
+                    putSessionInfo(id, usi);
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives sessions written by {@link #sendClusterState()} of nodes not supporting streamed state transfer.
+     */
     protected void receiveClusterState(byte[] state) {
         if (state == null || state.length == 0) {
             log.debug("Received empty user sessions cache");
@@ -188,6 +323,28 @@ public class UserSessions implements UserSessionsAPI {
         }
     }
 
+    /**
+     * Reads sessions written by {@link #sendClusterState(OutputStream)} one by one, applying each as it is read.
+     */
+    protected void receiveClusterState(InputStream input) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(input);
+        int size = 0;
+        try {
+            while (ois.readBoolean()) {
+                UserSessionInfo usi = (UserSessionInfo) ois.readObject();
+                receiveClusterMessage(usi);
+                size++;
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Error reading user session", e);
+        }
+        log.debug("Received user sessions cache: {} sessions. Cache now contains {} sessions", size, cache.size());
+    }
+
+    /**
+     * Returns sessions in the format of nodes not supporting streamed state transfer: the number of sessions
+     * followed by the sessions.
+     */
     protected byte[] sendClusterState() {
         List<UserSessionInfo> infoList = getSessionInfoStream().collect(Collectors.toList());
         if (infoList.isEmpty())
@@ -208,6 +365,23 @@ public class UserSessions implements UserSessionsAPI {
         return bytes;
     }
 
+    /**
+     * Writes sessions one by one, without collecting them in memory. Each session is preceded by {@code true},
+     * the end of the sequence is marked by {@code false}.
+     */
+    protected void sendClusterState(OutputStream output) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(output);
+        int size = 0;
+        for (Iterator<UserSessionInfo> it = getSessionInfoStream().iterator(); it.hasNext(); ) {
+            oos.writeBoolean(true);
+            oos.writeObject(it.next());
+            size++;
+        }
+        oos.writeBoolean(false);
+        oos.flush();
+        log.debug("Sending user sessions cache to cluster: {} sessions", size);
+    }
+
     @Override
     public void add(UserSession session) {
         UserSessionInfo usi = new UserSessionInfo(session, timeSource.currentTimeMillis());
@@ -226,8 +400,7 @@ public class UserSessions implements UserSessionsAPI {
         if (usi != null) {
             log.debug("Removed session: {}", usi);
             if (!session.isSystem()) {
-                usi.lastUsedTs = 0;
-                clusterManager.send(usi);
+                sendRemoval(Collections.singletonList(session.getId()));
             }
         }
     }
@@ -292,7 +465,7 @@ public class UserSessions implements UserSessionsAPI {
                 if (propagate && !usi.session.isSystem()) {
                     if (now > (usi.lastSentTs + toMillis(sendTimeout))) {
                         usi.lastSentTs = now;
-                        clusterManager.send(usi);
+                        touches.put(id, usi.lastUsedTs);
                     }
                 }
             }
@@ -309,10 +482,33 @@ public class UserSessions implements UserSessionsAPI {
             usi.lastUsedTs = now;
             usi.lastSentTs = now;
             putSessionInfo(id, usi);
+            touches.remove(id);
             clusterManager.send(usi);
         }
     }
 
+    @Override
+    public void sendTouches() {
+        if (!AppContext.isStarted() || touches.isEmpty())
+            return;
+
+        long now = timeSource.currentTimeMillis();
+        if (now < lastTouchesSentTs + toMillis(sendTimeout))
+            return;
+        lastTouchesSentTs = now;
+
+        Map<UUID, Long> lastUsedTs = new HashMap<>();
+        for (Map.Entry<UUID, Long> entry : touches.entrySet()) {
+            lastUsedTs.put(entry.getKey(), entry.getValue());
+            // a concurrent touch replaces the value and stays for the next batch
+            touches.remove(entry.getKey(), entry.getValue());
+        }
+        if (!lastUsedTs.isEmpty()) {
+            log.trace("Sending {} touched sessions to cluster", lastUsedTs.size());
+            clusterManager.send(new UserSessionsTouch(lastUsedTs));
+        }
+    }
+
     @Override
     public int getExpirationTimeoutSec() {
         return expirationTimeout;
@@ -372,8 +568,7 @@ public class UserSessions implements UserSessionsAPI {
         if (usi != null) {
             log.debug("Killed session: {}", usi);
 
-            usi.lastUsedTs = 0;
-            clusterManager.send(usi);
+            sendRemoval(Collections.singletonList(id));
         }
     }
 
@@ -381,6 +576,12 @@ public class UserSessions implements UserSessionsAPI {
     public List<UUID> findUserSessionsByAttribute(String attributeName, Object attributeValue) {
         Preconditions.checkNotNullArgument(attributeName);
 
+        int index = indexedAttributes.indexOf(attributeName);
+        if (index >= 0 && attributeValue != null) {
+            return findIndexedSessions(attributeIndexes.get(index), attributeValue,
+                    session -> Objects.equals(session.getAttribute(attributeName), attributeValue));
+        }
+
         //noinspection UnnecessaryLocalVariable
         List<UUID> sessionIds = getSessionInfoStream()
                 .filter(usInfo -> Objects.equals(usInfo.session.getAttribute(attributeName), attributeValue))
@@ -390,6 +591,31 @@ public class UserSessions implements UserSessionsAPI {
         return sessionIds;
     }
 
+    @Override
+    public List<UUID> findUserSessionsByUser(UUID userId) {
+        Preconditions.checkNotNullArgument(userId);
+
+        return findIndexedSessions(userIndex, userId,
+                session -> userId.equals(session.getUser().getId())
+                        || (session.getSubstitutedUser() != null && userId.equals(session.getSubstitutedUser().getId())));
+    }
+
+    protected <K> List<UUID> findIndexedSessions(Map<K, Set<UUID>> index, K key, Predicate<UserSession> filter) {
+        Set<UUID> ids = index.get(key);
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        List<UUID> sessionIds = new ArrayList<>();
+        for (UUID id : ids) {
+            // index entries can be stale, so check the actual session
+            UserSessionInfo usi = getSessionInfo(id);
+            if (usi != null && filter.test(usi.session)) {
+                sessionIds.add(id);
+            }
+        }
+        return sessionIds;
+    }
+
     @Override
     public void processEviction() {
         if (!AppContext.isStarted())
@@ -398,18 +624,42 @@ public class UserSessions implements UserSessionsAPI {
         log.trace("Processing eviction");
         long now = timeSource.currentTimeMillis();
 
-        getSessionInfoStream()
-                .filter(info -> !info.session.isSystem() && now > (info.lastUsedTs + toMillis(expirationTimeout)))
-                .forEach(usi -> {
+        long lastBucket = (now - toMillis(expirationTimeout)) / expiryBucketMillis;
+
+        List<UUID> removed = new ArrayList<>();
+        for (Map.Entry<Long, Set<UUID>> entry : expiryBuckets.entrySet()) {
+            if (entry.getKey() > lastBucket)
+                continue;
+
+            for (UUID id : entry.getValue()) {
+                UserSessionInfo usi = getSessionInfo(id);
+                if (usi == null || getExpiryBucket(usi) != entry.getKey()) {
+                    // stale entry left by concurrent updates
+                    removeFromIndex(expiryBuckets, entry.getKey(), id);
+                } else if (now > (usi.lastUsedTs + toMillis(expirationTimeout))) {
                     log.debug("Removing session due to timeout: {}", usi);
 
                     userSessionLog.updateSessionLogRecord(usi.getSession(), SessionAction.EXPIRATION);
 
-                    removeSessionInfo(usi.session.getId());
+                    removeSessionInfo(id);
 
-                    usi.lastUsedTs = 0;
-                    clusterManager.send(usi);
-                });
+                    removed.add(id);
+                }
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            sendRemoval(removed);
+        }
+    }
+
+    protected void sendRemoval(Collection<UUID> ids) {
+        Map<UUID, Long> lastUsedTs = new HashMap<>();
+        for (UUID id : ids) {
+            touches.remove(id);
+            lastUsedTs.put(id, 0L);
+        }
+        clusterManager.send(new UserSessionsTouch(lastUsedTs));
     }
 
     protected UserSessionInfo getSessionInfo(UUID id) {
@@ -418,11 +668,87 @@ public class UserSessions implements UserSessionsAPI {
 
     protected void putSessionInfo(UUID id, UserSessionInfo info) {
         cache.put(id, info);
+        indexSessionInfo(id, info);
     }
 
     @Nullable
     protected UserSessionInfo removeSessionInfo(UUID id) {
-        return cache.remove(id);
+        UserSessionInfo usi = cache.remove(id);
+        SessionIndexEntry indexEntry = indexEntries.remove(id);
+        if (indexEntry != null) {
+            updateIndexes(id, indexEntry, null);
+        }
+        return usi;
+    }
+
+    protected void indexSessionInfo(UUID id, UserSessionInfo info) {
+        UserSession session = info.session;
+        Object[] attributeValues = new Object[indexedAttributes.size()];
+        for (int i = 0; i < attributeValues.length; i++) {
+            attributeValues[i] = session.getAttribute(indexedAttributes.get(i));
+        }
+        SessionIndexEntry indexEntry = new SessionIndexEntry(
+                getExpiryBucket(info),
+                session.getUser().getId(),
+                session.getSubstitutedUser() != null ? session.getSubstitutedUser().getId() : null,
+                attributeValues);
+
+        SessionIndexEntry oldEntry = indexEntries.get(id);
+        if (!indexEntry.equals(oldEntry)) {
+            oldEntry = indexEntries.put(id, indexEntry);
+            updateIndexes(id, oldEntry, indexEntry);
+        }
+    }
+
+    protected void updateIndexes(UUID id, @Nullable SessionIndexEntry oldEntry, @Nullable SessionIndexEntry newEntry) {
+        long oldBucket = oldEntry != null ? oldEntry.expiryBucket : NO_EXPIRY_BUCKET;
+        long newBucket = newEntry != null ? newEntry.expiryBucket : NO_EXPIRY_BUCKET;
+        if (oldBucket != newBucket) {
+            if (oldBucket != NO_EXPIRY_BUCKET)
+                removeFromIndex(expiryBuckets, oldBucket, id);
+            if (newBucket != NO_EXPIRY_BUCKET)
+                addToIndex(expiryBuckets, newBucket, id);
+        }
+
+        updateIndex(userIndex, id,
+                oldEntry != null ? oldEntry.userId : null, newEntry != null ? newEntry.userId : null);
+        updateIndex(userIndex, id,
+                oldEntry != null ? oldEntry.substitutedUserId : null, newEntry != null ? newEntry.substitutedUserId : null);
+
+        for (int i = 0; i < attributeIndexes.size(); i++) {
+            updateIndex(attributeIndexes.get(i), id,
+                    oldEntry != null ? oldEntry.attributeValues[i] : null,
+                    newEntry != null ? newEntry.attributeValues[i] : null);
+        }
+    }
+
+    protected <K> void updateIndex(Map<K, Set<UUID>> index, UUID id, @Nullable K oldKey, @Nullable K newKey) {
+        if (!Objects.equals(oldKey, newKey)) {
+            if (oldKey != null)
+                removeFromIndex(index, oldKey, id);
+            if (newKey != null)
+                addToIndex(index, newKey, id);
+        }
+    }
+
+    protected <K> void addToIndex(Map<K, Set<UUID>> index, K key, UUID id) {
+        index.compute(key, (k, ids) -> {
+            if (ids == null)
+                ids = ConcurrentHashMap.newKeySet();
+            ids.add(id);
+            return ids;
+        });
+    }
+
+    protected <K> void removeFromIndex(Map<K, Set<UUID>> index, K key, UUID id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    protected long getExpiryBucket(UserSessionInfo info) {
+        return info.session.isSystem() ? NO_EXPIRY_BUCKET : info.lastUsedTs / expiryBucketMillis;
     }
 
     protected Stream<UserSessionInfo> getSessionInfoStream() {
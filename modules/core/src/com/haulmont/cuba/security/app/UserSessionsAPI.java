@@ -143,6 +143,14 @@ public interface UserSessionsAPI extends UserSessionFinder {
     @Deprecated
     List<UUID> findUserSessionsByAttribute(String attributeName, Object attributeValue);
 
+    /**
+     * Find sessions of the given user, including sessions where the user is substituted.
+     *
+     * @param userId user id
+     * @return list of session ids
+     */
+    List<UUID> findUserSessionsByUser(UUID userId);
+
     /**
      * INTERNAL.
      *
@@ -184,4 +192,12 @@ public interface UserSessionsAPI extends UserSessionFinder {
      * Evict timed out sessions from the cache.
      */
     void processEviction();
+
+    /**
+     * INTERNAL.
+     *
+     * Send last used timestamps of sessions refreshed with propagation to the cluster in a single message.
+     * Sessions are sent not more often than once in {@link #getSendTimeoutSec()}.
+     */
+    void sendTouches();
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ package com.haulmont.cuba.security.jmx;
 
 import com.haulmont.cuba.security.app.Authenticated;
 import com.haulmont.cuba.security.app.EntityLogAPI;
+import com.haulmont.cuba.security.app.EntityLogAsyncWriter;
 
 import org.springframework.stereotype.Component;
 import javax.inject.Inject;
@@ -29,6 +30,9 @@ public class EntityLog implements EntityLogMBean {
     @Inject
     protected EntityLogAPI entityLog;
 
+    @Inject
+    protected EntityLogAsyncWriter asyncWriter;
+
     @Override
     public boolean isEnabled() {
         return entityLog.isEnabled();
@@ -44,4 +48,29 @@ public class EntityLog implements EntityLogMBean {
     public void invalidateCache() {
         entityLog.invalidateCache();
     }
+
+    @Override
+    public int getAsyncQueueSize() {
+        return asyncWriter.getQueueSize();
+    }
+
+    @Override
+    public long getAsyncQueueLag() {
+        return asyncWriter.getQueueLag();
+    }
+
+    @Override
+    public long getAsyncLastBatchLag() {
+        return asyncWriter.getLastBatchLag();
+    }
+
+    @Override
+    public long getAsyncWrittenCount() {
+        return asyncWriter.getWrittenCount();
+    }
+
+    @Override
+    public long getAsyncRejectedCount() {
+        return asyncWriter.getRejectedCount();
+    }
 }
\ No newline at end of file
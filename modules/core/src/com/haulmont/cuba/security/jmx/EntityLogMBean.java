@@ -36,4 +36,29 @@ public interface EntityLogMBean {
      * The configuration will be recreated from the database on next lifecycle event.
      */
     void invalidateCache();
+
+    /**
+     * Number of items waiting for asynchronous writing
+     */
+    int getAsyncQueueSize();
+
+    /**
+     * Time in milliseconds the oldest item waits for asynchronous writing
+     */
+    long getAsyncQueueLag();
+
+    /**
+     * Time in milliseconds between enqueueing and writing of the last asynchronously written batch
+     */
+    long getAsyncLastBatchLag();
+
+    /**
+     * Total number of asynchronously written items
+     */
+    long getAsyncWrittenCount();
+
+    /**
+     * Total number of items written synchronously because the asynchronous queue was full
+     */
+    long getAsyncRejectedCount();
 }
@@ -17,23 +17,17 @@
 
 package com.haulmont.cuba.security.listener;
 
-import com.google.common.collect.Ordering;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.global.EntityStates;
 import com.haulmont.cuba.core.listener.BeforeDetachEntityListener;
-import com.haulmont.cuba.security.entity.EntityLogAttr;
 import com.haulmont.cuba.security.entity.EntityLogItem;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
-import java.io.StringReader;
-import java.util.*;
-
-import static com.haulmont.cuba.security.entity.EntityLogAttr.*;
+import java.util.LinkedHashSet;
 
 @Component("cuba_EntityLogItemDetachListener")
 public class EntityLogItemDetachListener implements BeforeDetachEntityListener<EntityLogItem> {
@@ -46,9 +40,6 @@ public class EntityLogItemDetachListener implements BeforeDetachEntityListener<E
     @Inject
     protected EntityStates entityStates;
 
-    protected final String[] skipNames = new String[]{VALUE_ID_SUFFIX,
-            MP_SUFFIX, OLD_VALUE_SUFFIX, OLD_VALUE_ID_SUFFIX};
-
     @Override
     public void onBeforeDetach(EntityLogItem item, EntityManager entityManager) {
         if (item.getAttributes() != null)
@@ -59,40 +50,13 @@ public class EntityLogItemDetachListener implements BeforeDetachEntityListener<E
 
     protected void fillAttributesFromChangesField(EntityLogItem item) {
         log.trace("fillAttributesFromChangesField for {}", item);
-        List<EntityLogAttr> attributes = new ArrayList<>();
 
         if (!entityStates.isLoaded(item, "changes")) {
-            item.setAttributes(new LinkedHashSet<>(attributes));
+            item.setAttributes(new LinkedHashSet<>());
             return;
         }
 
-        StringReader reader = new StringReader(item.getChanges());
-        Properties properties = new Properties();
-        try {
-            properties.load(reader);
-            Enumeration<?> names = properties.propertyNames();
-            while (names.hasMoreElements()) {
-                String name = (String) names.nextElement();
-                if (StringUtils.endsWithAny(name, skipNames))
-                    continue;
-
-                EntityLogAttr attr = new EntityLogAttr();
-                attr.setLogItem(item);
-                attr.setName(name);
-                attr.setValue(properties.getProperty(name));
-                attr.setValueId(properties.getProperty(name + VALUE_ID_SUFFIX));
-                attr.setOldValue(properties.getProperty(name + OLD_VALUE_SUFFIX));
-                attr.setOldValueId(properties.getProperty(name + OLD_VALUE_ID_SUFFIX));
-                attr.setMessagesPack(properties.getProperty(name + MP_SUFFIX));
-
-                attributes.add(attr);
-            }
-        } catch (Exception e) {
-            log.error("Unable to fill EntityLog attributes for {}", item, e);
-        }
-
-        attributes.sort((o1, o2) -> Ordering.natural().compare(o1.getName(), o2.getName()));
-
-        item.setAttributes(new LinkedHashSet<>(attributes));
+        // most loaded items are never displayed with their attributes, so they are decoded on first access
+        item.decodeAttributesOnAccess();
     }
-}
\ No newline at end of file
+}
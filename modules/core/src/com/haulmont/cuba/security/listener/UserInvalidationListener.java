@@ -23,7 +23,6 @@ import com.haulmont.cuba.security.app.UserManagementService;
 import com.haulmont.cuba.security.app.UserSessionsAPI;
 import com.haulmont.cuba.security.entity.User;
 import com.haulmont.cuba.security.events.UserInvalidationEvent;
-import com.haulmont.cuba.security.global.UserSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.event.EventListener;
@@ -34,7 +33,6 @@ import javax.inject.Inject;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Component("cuba_UserInvalidationListener")
 public class UserInvalidationListener {
@@ -58,11 +56,7 @@ public class UserInvalidationListener {
         log.info("Handling user invalidation: {}", user.getLogin());
 
         try (Transaction tx = persistence.createTransaction()) {
-            List<UUID> sessionsIds = userSessionsAPI.getUserSessionsStream()
-                    .filter(session -> session != null &&
-                            (user.equals(session.getUser()) || user.equals(session.getSubstitutedUser())))
-                    .map(UserSession::getId)
-                    .collect(Collectors.toList());
+            List<UUID> sessionsIds = userSessionsAPI.findUserSessionsByUser(user.getId());
 
             sessionsIds.forEach(userSessionsAPI::killSession);
 
@@ -18,7 +18,9 @@ package com.haulmont.cuba.core;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.QueryTransformationCache;
 import com.haulmont.cuba.security.ConstraintTest;
 import com.haulmont.cuba.security.entity.*;
 import com.haulmont.cuba.testsupport.TestContainer;
@@ -653,4 +655,39 @@ public class QueryTest {
             tx.end();
         }
     }
+
+    @Test
+    public void testTransformationCache() {
+        QueryTransformationCache cache = AppBeans.get(QueryTransformationCache.class);
+        String queryString = "select u from sec$User u where u.login like :login and u.id in :ids order by u.login";
+
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            EntityManager em = cont.persistence().getEntityManager();
+
+            long hitCount = cache.getStats().hitCount();
+            for (int i = 0; i < 2; i++) {
+                List<User> users = em.createQuery(queryString, User.class)
+                        .setParameter("login", "(?i)TESTLOGIN%")
+                        .setParameter("ids", Arrays.asList(userId, user2Id))
+                        .getResultList();
+                assertEquals(2, users.size());
+
+                users = em.createQuery(queryString, User.class)
+                        .setParameter("login", "testLogin2")
+                        .setParameter("ids", Arrays.asList(userId, user2Id))
+                        .getResultList();
+                assertEquals(1, users.size());
+
+                // condition with empty collection parameter is replaced
+                users = em.createQuery(queryString, User.class)
+                        .setParameter("login", "testLogin%")
+                        .setParameter("ids", Collections.emptyList())
+                        .getResultList();
+                assertTrue(users.isEmpty());
+            }
+            assertTrue(cache.getStats().hitCount() >= hitCount + 3);
+
+            tx.commit();
+        }
+    }
 }
@@ -22,6 +22,8 @@ import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.bali.db.ResultSetHandler;
 import com.haulmont.cuba.core.entity.EntitySnapshot;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.FetchGroupDescription;
+import com.haulmont.cuba.core.sys.FetchGroupManager;
 import com.haulmont.cuba.security.entity.*;
 import com.haulmont.cuba.testmodel.multiplelinks.LinkEntity;
 import com.haulmont.cuba.testmodel.multiplelinks.MultiLinkEntity;
@@ -38,8 +40,11 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.*;
 
 import static com.haulmont.cuba.testsupport.TestSupport.assertFail;
 import static com.haulmont.cuba.testsupport.TestSupport.reserialize;
@@ -459,6 +464,115 @@ public class ViewTest {
         assertNull(viewRepository.getView(User.class, View.LOCAL).getProperty("group"));
     }
 
+    @Test
+    public void testSharedView() throws Exception {
+        ViewRepository viewRepository = cont.metadata().getViewRepository();
+        View view = viewRepository.getView(User.class, "user.edit");
+        assertFalse(view.isSealed());
+
+        View groupView = view.getProperty("group").getView();
+        assertFalse(groupView.isSealed());
+        groupView.addProperty("hierarchyList");
+        assertSame(groupView, view.getProperty("group").getView());
+        assertNotNull(view.getProperty("group").getView().getProperty("hierarchyList"));
+
+        View sameView = viewRepository.getView(User.class, "user.edit");
+        assertNotSame(view, sameView);
+        assertNotSame(groupView, sameView.getProperty("group").getView());
+        assertNull(sameView.getProperty("group").getView().getProperty("hierarchyList"));
+    }
+
+    @Test
+    public void testSharedViewProperties() throws Exception {
+        ViewRepository viewRepository = cont.metadata().getViewRepository();
+        View view = viewRepository.getView(User.class, "user.edit");
+        View sameView = viewRepository.getView(User.class, "user.edit");
+
+        // unlike deep copies, views returned by the repository share the stored properties
+        assertSame(view.getProperty("login"), sameView.getProperty("login"));
+        assertNotSame(view.getProperty("login"), View.copy(view).getProperty("login"));
+
+        view.addProperty("group", viewRepository.getView(Group.class, View.MINIMAL));
+        assertEquals(View.MINIMAL, view.getProperty("group").getView().getName());
+        assertSame(view.getProperty("login"), sameView.getProperty("login"));
+        assertNotEquals(View.MINIMAL, sameView.getProperty("group").getView().getName());
+        assertNotEquals(View.MINIMAL,
+                viewRepository.getView(User.class, "user.edit").getProperty("group").getView().getName());
+    }
+
+    @Test
+    public void testSharedViewConcurrentReads() throws Exception {
+        ViewRepository viewRepository = cont.metadata().getViewRepository();
+        View view = viewRepository.getView(User.class, "user.edit");
+
+        int threadCount = 8;
+        CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<View>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return view.getProperty("group").getView();
+                }));
+            }
+            View groupView = futures.get(0).get();
+            for (Future<View> future : futures) {
+                assertSame(groupView, future.get());
+            }
+            assertFalse(groupView.isSealed());
+            assertSame(groupView, view.getProperty("group").getView());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFetchGroupCache() throws Exception {
+        FetchGroupManager fetchGroupManager = AppBeans.get(FetchGroupManager.NAME);
+        String queryString = "select u from sec$User u where u.id = :id";
+
+        View view = metadata.getViewRepository().getView(User.class, "user.edit");
+        FetchGroupDescription description = fetchGroupManager.calculateFetchGroup(queryString, view, true, true);
+
+        View sameView = View.copy(metadata.getViewRepository().getView(User.class, "user.edit"));
+        assertSame(description, fetchGroupManager.calculateFetchGroup(queryString, sameView, true, true));
+        assertNotSame(description, fetchGroupManager.calculateFetchGroup(queryString, sameView, false, true));
+
+        sameView.addProperty("substitutions", new View(UserSubstitution.class).addProperty("startDate"));
+        FetchGroupDescription otherDescription = fetchGroupManager.calculateFetchGroup(queryString, sameView, true, true);
+        assertNotSame(description, otherDescription);
+        assertTrue(description.getAttributes().contains("substitutions.substitutedUser.login"));
+        assertFalse(otherDescription.getAttributes().contains("substitutions.substitutedUser.login"));
+
+        assertThrows(IllegalStateException.class, () -> description.addAttribute("login"));
+    }
+
+    @Test
+    public void testFetchGroupCacheKey() throws Exception {
+        FetchGroupManager fetchGroupManager = AppBeans.get(FetchGroupManager.NAME);
+        String queryString = "select u from sec$User u where u.id = :id";
+
+        // unmodified repository views and their copies are identified by the stored view
+        View view = metadata.getViewRepository().getView(User.class, "user.edit");
+        View copy = View.copy(view);
+        copy.setLoadPartialEntities(true);
+        assertNotNull(ViewInternalAccess.getStoredProperties(view));
+        assertSame(ViewInternalAccess.getStoredProperties(view), ViewInternalAccess.getStoredProperties(copy));
+
+        // other views are identified by their structure
+        View readView = metadata.getViewRepository().getView(User.class, "user.edit");
+        readView.getProperties();
+        assertNull(ViewInternalAccess.getStoredProperties(readView));
+        View readViewCopy = View.copy(readView);
+        assertNull(ViewInternalAccess.getStoredProperties(readViewCopy));
+
+        FetchGroupDescription description = fetchGroupManager.calculateFetchGroup(queryString, readView, true, true);
+        assertSame(description, fetchGroupManager.calculateFetchGroup(queryString, readViewCopy, true, true));
+        assertEquals(description.getAttributes(),
+                fetchGroupManager.calculateFetchGroup(queryString, copy, true, true).getAttributes());
+    }
+
     @Test
     public void testFetchGroupIsAbsentIfViewIsFull() throws Exception {
         ViewRepository viewRepository = cont.metadata().getViewRepository();
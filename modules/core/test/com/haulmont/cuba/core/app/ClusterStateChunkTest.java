@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClusterStateChunkTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Test
+    public void roundTripAcrossSeveralChunks() throws Exception {
+        byte[] state = randomBytes(3 * CHUNK_SIZE + 123);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        ClusterManager.StateChunkOutputStream chunks = new ClusterManager.StateChunkOutputStream(out, CHUNK_SIZE);
+        // mix single byte and array writes
+        chunks.write(state[0]);
+        chunks.write(state, 1, CHUNK_SIZE);
+        chunks.write(state, CHUNK_SIZE + 1, state.length - CHUNK_SIZE - 1);
+        chunks.finish();
+        out.writeInt(42);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        ClusterManager.StateChunkInputStream input = new ClusterManager.StateChunkInputStream(in);
+        assertFalse(input.isEmpty());
+        byte[] received = readAll(input);
+        input.skipRemaining();
+
+        assertArrayEquals(state, received);
+        assertEquals(state.length, chunks.getCount());
+        assertEquals(state.length, input.getCount());
+        assertEquals(42, in.readInt());
+    }
+
+    @Test
+    public void objectStreamRoundTrip() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        ClusterManager.StateChunkOutputStream chunks = new ClusterManager.StateChunkOutputStream(out, CHUNK_SIZE);
+        ObjectOutputStream oos = new ObjectOutputStream(chunks);
+        for (int i = 0; i < 10000; i++) {
+            oos.writeBoolean(true);
+            oos.writeObject("entry-" + i);
+        }
+        oos.writeBoolean(false);
+        oos.close();
+        chunks.finish();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        ClusterManager.StateChunkInputStream input = new ClusterManager.StateChunkInputStream(in);
+        ObjectInputStream ois = new ObjectInputStream(input);
+        int count = 0;
+        while (ois.readBoolean()) {
+            assertEquals("entry-" + count, ois.readObject());
+            count++;
+        }
+        input.skipRemaining();
+
+        assertEquals(10000, count);
+        assertTrue(chunks.getCount() > CHUNK_SIZE);
+        assertEquals(chunks.getCount(), input.getCount());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void abortedState() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+
+        // the first listener fails after writing more than a chunk
+        ClusterManager.StateChunkOutputStream failed = new ClusterManager.StateChunkOutputStream(out, CHUNK_SIZE);
+        failed.write(randomBytes(CHUNK_SIZE + 100));
+        failed.abort();
+
+        byte[] state = randomBytes(1000);
+        ClusterManager.StateChunkOutputStream chunks = new ClusterManager.StateChunkOutputStream(out, CHUNK_SIZE);
+        chunks.write(state);
+        chunks.finish();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        ClusterManager.StateChunkInputStream input = new ClusterManager.StateChunkInputStream(in);
+        assertThrows(IOException.class, () -> readAll(input));
+        input.skipRemaining();
+
+        ClusterManager.StateChunkInputStream next = new ClusterManager.StateChunkInputStream(in);
+        assertArrayEquals(state, readAll(next));
+        next.skipRemaining();
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void skipRemainingAfterPartialRead() throws Exception {
+        byte[] state = randomBytes(2 * CHUNK_SIZE + 10);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        ClusterManager.StateChunkOutputStream chunks = new ClusterManager.StateChunkOutputStream(out, CHUNK_SIZE);
+        chunks.write(state);
+        chunks.finish();
+        ClusterManager.StateChunkOutputStream empty = new ClusterManager.StateChunkOutputStream(out, CHUNK_SIZE);
+        empty.finish();
+        out.writeInt(42);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        ClusterManager.StateChunkInputStream input = new ClusterManager.StateChunkInputStream(in);
+        byte[] head = new byte[10];
+        new DataInputStream(input).readFully(head);
+        assertArrayEquals(Arrays.copyOf(state, 10), head);
+
+        input.skipRemaining();
+        assertEquals(state.length, input.getCount());
+
+        ClusterManager.StateChunkInputStream emptyInput = new ClusterManager.StateChunkInputStream(in);
+        assertTrue(emptyInput.isEmpty());
+        assertEquals(-1, emptyInput.read());
+        emptyInput.skipRemaining();
+        assertEquals(42, in.readInt());
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[5000];
+        int n;
+        while ((n = input.read(buffer)) >= 0) {
+            bos.write(buffer, 0, n);
+        }
+        return bos.toByteArray();
+    }
+}
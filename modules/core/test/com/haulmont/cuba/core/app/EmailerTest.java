@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.app;
 
 import com.google.common.collect.Lists;
+import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.entity.SendingAttachment;
 import com.haulmont.cuba.core.entity.SendingMessage;
 import com.haulmont.cuba.core.global.*;
@@ -467,6 +468,81 @@ public class EmailerTest {
         assertTrue(recipientSet.contains("tanya@example.com"));
     }
 
+    @Test
+    public void testBatchSendingWithFailedMessage() throws Exception {
+        emailerConfig.setSendingBatchSize(2);
+        testMailSender.clearBuffer();
+        testMailSender.failAddressPlease("tanya@example.com");
+        try {
+            EmailInfo myInfo = EmailInfoBuilder.create()
+                    .setAddresses("misha@example.com,kolya@example.com;tanya@example.com;")
+                    .setCaption("Test")
+                    .setBody("Test Email Body")
+                    .build();
+            List<SendingMessage> messages = emailer.sendEmailAsync(myInfo, 2, getDeadlineWhichDoesntMatter());
+            assertEquals(3, messages.size());
+
+            emailer.processQueuedEmails();
+
+            assertEquals(2, testMailSender.getBufferSize());
+            for (SendingMessage message : messages) {
+                SendingMessage sendingMsg = reload(message);
+                assertEquals(1, sendingMsg.getAttemptsMade().intValue());
+                if ("tanya@example.com".equals(sendingMsg.getAddress())) {
+                    assertEquals(SendingStatus.QUEUE, sendingMsg.getStatus());
+                    assertNull(sendingMsg.getDateSent());
+                } else {
+                    assertEquals(SendingStatus.SENT, sendingMsg.getStatus());
+                    assertNotNull(sendingMsg.getDateSent());
+                }
+            }
+        } finally {
+            testMailSender.workNormallyPlease();
+            emailerConfig.setSendingBatchSize(20);
+        }
+    }
+
+    @Test
+    public void testSendingLease() throws Exception {
+        testMailSender.clearBuffer();
+
+        EmailInfo myInfo = EmailInfoBuilder.create()
+                .setAddresses("lease@example.com")
+                .setCaption("Test")
+                .setBody("Test Email Body")
+                .build();
+        List<SendingMessage> messages = emailer.sendEmailAsync(myInfo, 2, getDeadlineWhichDoesntMatter());
+        assertEquals(1, messages.size());
+
+        // claimed by another node just now
+        setSendingLease(messages.get(0), timeSource.currentTimestamp());
+        emailer.processQueuedEmails();
+
+        assertTrue(testMailSender.isEmpty());
+        assertEquals(SendingStatus.SENDING, reload(messages.get(0)).getStatus());
+
+        // the lease of another node has expired
+        setSendingLease(messages.get(0),
+                DateUtils.addSeconds(timeSource.currentTimestamp(), -emailerConfig.getSendingTimeoutSec() - 1));
+        emailer.processQueuedEmails();
+
+        assertEquals(1, testMailSender.getBufferSize());
+        assertEquals(SendingStatus.SENT, reload(messages.get(0)).getStatus());
+    }
+
+    private void setSendingLease(SendingMessage sendingMessage, Date updateTs) {
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            cont.persistence().getEntityManager()
+                    .createQuery("update sys$SendingMessage sm set sm.status = :status, sm.updateTs = :updateTs" +
+                            " where sm.id = :id")
+                    .setParameter("status", SendingStatus.SENDING.getId())
+                    .setParameter("updateTs", updateTs)
+                    .setParameter("id", sendingMessage.getId())
+                    .executeUpdate();
+            tx.commit();
+        }
+    }
+
     @Test
     public void testSendAllToAdmin() throws Exception {
         emailerConfig.setSendAllToAdmin(true);
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.global;
+
+import com.haulmont.cuba.core.sys.jpql.*;
+import com.haulmont.cuba.core.sys.jpql.model.EntityBuilder;
+import com.haulmont.cuba.core.sys.jpql.model.JpqlEntityModel;
+import com.haulmont.cuba.core.sys.jpql.transform.QueryTransformerAstBased;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryTreeCacheTest {
+
+    @Test
+    public void sharedTree() {
+        DomainModel model = prepareDomainModel();
+        QueryTreeCache cache = new QueryTreeCache(10);
+
+        String query = "select h from sec$GroupHierarchy h where h.createdBy = :par";
+        QueryTree tree = cache.getTree(model, query);
+        assertSame(tree, cache.getTree(model, query));
+        assertEquals(1, cache.getStats().hitCount());
+
+        QueryParserAstBased parser = new QueryParserAstBased(model, query);
+        parser.queryTreeCache = cache;
+        assertEquals("sec$GroupHierarchy", parser.getEntityName());
+        assertTrue(parser.getParamNames().contains("par"));
+        assertEquals(2, cache.getStats().hitCount());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void transformerModifiesCopy() {
+        DomainModel model = prepareDomainModel();
+        QueryTreeCache cache = new QueryTreeCache(10);
+
+        String query = "select c from sec$GroupHierarchy h join h.parent.constraints c where h.group = :par";
+        String original = toQuery(cache.getTree(model, query));
+
+        QueryTransformerAstBased transformer = new QueryTransformerAstBased(model, query) {{
+            queryTreeCache = cache;
+        }};
+        transformer.addWhere("{E}.createdBy = :par1");
+        assertEquals("select c from sec$GroupHierarchy h join h.parent.constraints c where (h.group = :par) " +
+                "and (h.createdBy = :par1)", transformer.getResult());
+
+        assertEquals(original, toQuery(cache.getTree(model, query)));
+
+        transformer = new QueryTransformerAstBased(model, query) {{
+            queryTreeCache = cache;
+        }};
+        transformer.replaceWithCount();
+        assertEquals("select count(c) from sec$GroupHierarchy h join h.parent.constraints c where h.group = :par",
+                transformer.getResult());
+
+        assertEquals(original, toQuery(cache.getTree(model, query)));
+    }
+
+    @Test
+    public void concurrentSelectedExpressions() throws Exception {
+        DomainModel model = prepareDomainModel();
+        QueryTreeCache cache = new QueryTreeCache(10);
+
+        String query = "select h.group, h.createdBy, h.parent from sec$GroupHierarchy h where h.group = :par";
+        String original = toQuery(cache.getTree(model, query));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        QueryParserAstBased parser = new QueryParserAstBased(model, query);
+                        parser.queryTreeCache = cache;
+                        List<String> expressions = parser.getSelectedExpressionsList().stream()
+                                .map(String::trim)
+                                .collect(Collectors.toList());
+                        assertEquals(Arrays.asList("h.group", "h.createdBy", "h.parent"), expressions);
+
+                        // rendering the shared tree is not affected by the parsers
+                        assertEquals(original, toQuery(cache.getTree(model, query)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void copy() {
+        DomainModel model = prepareDomainModel();
+
+        QueryTree tree = QueryTreeCache.parse(model,
+                "select h from sec$GroupHierarchy h where h.createdBy = :par and h.group in " +
+                        "(select c.group.group from sec$Constraint c where c.group.createdBy = :user) order by h.group");
+        QueryTree copy = tree.copy();
+        assertNotSame(tree.getAstTree(), copy.getAstTree());
+        assertEquals(toQuery(tree), toQuery(copy));
+        assertEquals("sec$GroupHierarchy", copy.getQueryVariableContext().getEntityByVariableName("h").getName());
+
+        tree = QueryTreeCache.parse(model, "update sec$GroupHierarchy h set h.group = :group where h.createdBy = :par");
+        assertEquals(toQuery(tree), toQuery(tree.copy()));
+    }
+
+    @Test
+    public void invalidQueryIsNotCached() {
+        DomainModel model = prepareDomainModel();
+        QueryTreeCache cache = new QueryTreeCache(10);
+
+        assertThrows(JpqlSyntaxException.class, () -> cache.getTree(model, "select x from sec$Unknown x"));
+        assertEquals(0, cache.getSize());
+    }
+
+    private String toQuery(QueryTree tree) {
+        return tree.visit(new TreeToQuery()).getQueryString().trim();
+    }
+
+    private DomainModel prepareDomainModel() {
+        EntityBuilder builder = new EntityBuilder();
+        builder.startNewEntity("sec$GroupHierarchy");
+        builder.addStringAttribute("group");
+        builder.addStringAttribute("createdBy");
+        builder.addReferenceAttribute("parent", "sec$GroupHierarchy");
+        builder.addCollectionReferenceAttribute("constraints", "sec$Constraint");
+        JpqlEntityModel groupHierarchy = builder.produce();
+
+        builder = new EntityBuilder();
+        builder.startNewEntity("sec$Constraint");
+        builder.addReferenceAttribute("group", "sec$GroupHierarchy");
+        JpqlEntityModel constraintEntity = builder.produce();
+
+        return new DomainModel(groupHierarchy, constraintEntity);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.entitycache;
+
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StandardQueryCacheTest {
+
+    private StandardQueryCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new StandardQueryCache();
+        cache.queryCacheConfig = new QueryCacheConfig() {
+            @Override
+            public boolean getQueryCacheEnabled() {
+                return true;
+            }
+
+            @Override
+            public int getQueryCacheMaxSize() {
+                return 2;
+            }
+        };
+        cache.init();
+    }
+
+    @Test
+    public void testFindAndInvalidateById() {
+        QueryKey key = createKey("select u from sec$User u");
+        cache.put(key, createResult("sec$User"));
+
+        assertSame(key, cache.findQueryKeyById(key.getId()));
+        assertSame(key, cache.invalidate(key.getId()));
+        assertNull(cache.get(key));
+        assertNull(cache.findQueryKeyById(key.getId()));
+        assertTrue(cache.idIndex.isEmpty());
+        assertTrue(cache.typeIndex.isEmpty());
+    }
+
+    @Test
+    public void testInvalidateByType() {
+        QueryKey userKey = createKey("select u from sec$User u");
+        QueryKey groupKey = createKey("select g from sec$Group g");
+        cache.put(userKey, createResult("sec$User", "sec$Group"));
+        cache.put(groupKey, createResult("sec$Group"));
+
+        cache.invalidate("sec$User");
+        assertNull(cache.get(userKey));
+        assertNotNull(cache.get(groupKey));
+        assertFalse(cache.typeIndex.containsKey("sec$User"));
+
+        cache.invalidate(Collections.singleton("sec$Group"));
+        assertEquals(0, cache.size());
+        assertTrue(cache.idIndex.isEmpty());
+        assertTrue(cache.typeIndex.isEmpty());
+    }
+
+    @Test
+    public void testIndexesPrunedOnEviction() {
+        for (int i = 0; i < 10; i++) {
+            cache.put(createKey("select u from sec$User u where u.id = " + i), createResult("sec$User"));
+        }
+        cache.data.cleanUp();
+
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.idIndex.size());
+        assertEquals(2, cache.typeIndex.get("sec$User").size());
+    }
+
+    @Test
+    public void testPutEqualKey() {
+        QueryKey key = createKey("select u from sec$User u");
+        QueryKey equalKey = createKey("select u from sec$User u");
+        cache.put(key, createResult("sec$User"));
+        cache.put(equalKey, createResult("sec$User"));
+
+        assertEquals(1, cache.size());
+        assertNull(cache.findQueryKeyById(key.getId()));
+        assertSame(equalKey, cache.findQueryKeyById(equalKey.getId()));
+        assertEquals(1, cache.typeIndex.get("sec$User").size());
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        cache.put(createKey("select u from sec$User u"), createResult("sec$User"));
+        cache.put(createKey("select g from sec$Group g"), createResult("sec$Group"));
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertTrue(cache.idIndex.isEmpty());
+        assertTrue(cache.typeIndex.isEmpty());
+    }
+
+    private QueryKey createKey(String queryString) {
+        return new QueryKey(queryString, 0, 0, true, false, null, null);
+    }
+
+    private QueryResult createResult(String type, String... relatedTypes) {
+        Set<String> types = Sets.newHashSet(relatedTypes);
+        types.add(type);
+        return new QueryResult(Collections.emptyList(), type, types);
+    }
+}
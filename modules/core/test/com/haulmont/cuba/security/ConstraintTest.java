@@ -195,4 +195,35 @@ public class ConstraintTest {
             ((TestUserSessionSource) uss).setUserSession(savedUserSession);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRepeatedLoad() throws LoginException {
+        AuthenticationManager lw = AppBeans.get(AuthenticationManager.NAME);
+        Credentials credentials = new LoginPasswordCredentials(USER_LOGIN, USER_PASSW, Locale.getDefault());
+        UserSession userSession = lw.login(credentials).getSession();
+
+        UserSessionSource uss = AppBeans.get(UserSessionSource.class);
+        UserSession savedUserSession = uss.getUserSession();
+        ((TestUserSessionSource) uss).setUserSession(userSession);
+        try {
+            DataManager dm = AppBeans.get(DataManager.NAME);
+            // the second load uses the cached constrained query, parameters must still be set
+            for (int i = 0; i < 2; i++) {
+                List<Server> list = dm.loadList(new LoadContext<>(Server.class)
+                        .setQuery(new LoadContext.Query("select s from sys$Server s")));
+                for (Server server : list) {
+                    if (server.getId().equals(serverId))
+                        fail("Constraints have not taken effect for some reason");
+                }
+
+                List<UserRole> userRoles = dm.loadList(new LoadContext<>(UserRole.class)
+                        .setQuery(new LoadContext.Query("select ur from sec$UserRole ur")));
+                if (!userRoles.isEmpty()) {
+                    fail("Constraint with session attribute failed");
+                }
+            }
+        } finally {
+            ((TestUserSessionSource) uss).setUserSession(savedUserSession);
+        }
+    }
+}
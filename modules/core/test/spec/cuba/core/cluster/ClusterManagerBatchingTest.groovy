@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package spec.cuba.core.cluster
+
+import com.haulmont.cuba.core.app.ClusterConfig
+import com.haulmont.cuba.core.app.ClusterManager
+import com.haulmont.cuba.core.app.IdempotentClusterMessage
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport
+import groovy.transform.EqualsAndHashCode
+import spock.lang.Specification
+
+class ClusterManagerBatchingTest extends Specification {
+
+    private TestClusterManager clusterManager
+    private int batchMaxSize
+
+    void setup() {
+        clusterManager = new TestClusterManager()
+        clusterManager.clusterConfig = Stub(ClusterConfig) {
+            getClusterMessageSendingThreadPoolSize() >> 1
+            getClusterMessageSendingQueueCapacity() >> 5
+            getMessageBatchMaxSize() >> { batchMaxSize }
+            getMessageBatchMaxDelay() >> 0
+        }
+        clusterManager.init()
+    }
+
+    void cleanup() {
+        clusterManager.executor.shutdown()
+    }
+
+    def "queued messages are sent in frames of limited size"() {
+        batchMaxSize = 2 * messageSize() + 10
+
+        when:
+        ['a', 'b', 'c', 'd', 'e'].each { clusterManager.queueMessage(new TestMessage(it)) }
+        clusterManager.sendQueuedMessages()
+
+        then:
+        clusterManager.frames.collect { receive(it)*.value } == [['a', 'b'], ['c', 'd'], ['e']]
+        clusterManager.sentBatches.sum() == 2
+        clusterManager.getMessagesCount() == 0
+    }
+
+    def "zero batch size sends each message in a separate frame"() {
+        batchMaxSize = 0
+
+        when:
+        ['a', 'b', 'c'].each { clusterManager.queueMessage(new TestMessage(it)) }
+        clusterManager.sendQueuedMessages()
+
+        then:
+        clusterManager.frames.collect { receive(it)*.value } == [['a'], ['b'], ['c']]
+        clusterManager.sentBatches.sum() == 0
+    }
+
+    def "equal idempotent messages are sent once per frame"() {
+        batchMaxSize = 2 * messageSize() + 10
+
+        when:
+        ['a', 'a', 'b', 'c', 'a', 'c'].each { clusterManager.queueMessage(new TestIdempotentMessage(it)) }
+        clusterManager.sendQueuedMessages()
+
+        then: "a message equal to one in the previous frame is sent again"
+        clusterManager.frames.collect { receive(it)*.value } == [['a', 'b'], ['c', 'a']]
+        clusterManager.getCoalescedMessages() == 2
+    }
+
+    def "non-idempotent messages are not coalesced"() {
+        batchMaxSize = 10 * messageSize()
+
+        when:
+        ['a', 'a', 'a'].each { clusterManager.queueMessage(new TestMessage(it)) }
+        clusterManager.sendQueuedMessages()
+
+        then:
+        clusterManager.frames.collect { receive(it)*.value } == [['a', 'a', 'a']]
+        clusterManager.getCoalescedMessages() == 0
+    }
+
+    def "messages exceeding the queue capacity are dropped and counted"() {
+        batchMaxSize = 10 * messageSize()
+
+        when:
+        ['a', 'b', 'c', 'd', 'e', 'f', 'g'].each { clusterManager.queueMessage(new TestMessage(it)) }
+
+        then:
+        clusterManager.getMessagesCount() == 5
+        clusterManager.getDroppedMessages() == 2
+
+        when:
+        clusterManager.sendQueuedMessages()
+        clusterManager.queueMessage(new TestMessage('h'))
+        clusterManager.sendQueuedMessages()
+
+        then:
+        clusterManager.frames.collect { receive(it)*.value } == [['a', 'b', 'c', 'd', 'e'], ['h']]
+        clusterManager.getDroppedMessages() == 2
+    }
+
+    private int messageSize() {
+        return SerializationSupport.serialize(new TestIdempotentMessage('a')).length
+    }
+
+    private static List<Serializable> receive(byte[] frame) {
+        def data = SerializationSupport.deserialize(frame)
+        if (data instanceof ClusterManager.MessageBatch) {
+            return data.messages.collect { SerializationSupport.deserialize(it) as Serializable }
+        }
+        return [data as Serializable]
+    }
+
+    static class TestClusterManager extends ClusterManager {
+
+        List<byte[]> frames = []
+
+        @Override
+        protected void sendBytes(byte[] bytes, boolean sync) {
+            frames << bytes
+        }
+
+        @Override
+        protected void scheduleSending() {
+            // queued messages are sent explicitly by the test
+        }
+    }
+
+    static class TestMessage implements Serializable {
+
+        String value
+
+        TestMessage(String value) {
+            this.value = value
+        }
+    }
+
+    @EqualsAndHashCode
+    static class TestIdempotentMessage implements IdempotentClusterMessage {
+
+        String value
+
+        TestIdempotentMessage(String value) {
+            this.value = value
+        }
+    }
+}
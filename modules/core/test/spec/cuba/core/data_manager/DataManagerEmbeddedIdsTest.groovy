@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package spec.cuba.core.data_manager
+
+import com.haulmont.cuba.core.app.RdbmsStore
+import com.haulmont.cuba.core.app.ServerConfig
+import com.haulmont.cuba.core.global.*
+import com.haulmont.cuba.testmodel.primary_keys.CompositeKeyEntity
+import com.haulmont.cuba.testmodel.primary_keys.EntityKey
+import com.haulmont.cuba.testsupport.TestContainer
+import groovy.sql.Sql
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class DataManagerEmbeddedIdsTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private DataManager dataManager
+    private ServerConfig serverConfig
+
+    void setup() {
+        dataManager = AppBeans.get(DataManager)
+        serverConfig = AppBeans.get(Configuration).getConfig(ServerConfig)
+    }
+
+    void cleanup() {
+        serverConfig.setEmbeddedIdsLoadingBatchSize(50)
+    }
+
+    def "batch size is limited by the maximum number of query parameters"() {
+
+        given: 'the embedded id has two columns'
+
+        serverConfig.setEmbeddedIdsLoadingBatchSize(configuredBatchSize)
+        def store = new TestRdbmsStore(maxParametersCount)
+        store.metadataTools = AppBeans.get(MetadataTools)
+        store.serverConfig = serverConfig
+
+        expect:
+
+        store.getEmbeddedIdsBatchSize(cont.metadata().getClassNN(CompositeKeyEntity)) == batchSize
+
+        where:
+
+        configuredBatchSize | maxParametersCount | batchSize
+        50                  | null               | 50
+        5000                | null               | 5000
+        50                  | 2000               | 50
+        5000                | 2000               | 1000
+        5000                | 32000              | 5000
+        50000               | 32000              | 16000
+        50                  | 3                  | 1
+        1                   | 2000               | 1
+    }
+
+    def "entities are loaded by several batches in the order of identifiers"() {
+
+        given:
+
+        serverConfig.setEmbeddedIdsLoadingBatchSize(batchSize)
+
+        def ids = (1..5).collect { new EntityKey(tenant: 2, entityId: it) }
+        def entities = ids.collect { new CompositeKeyEntity(id: it, name: "e$it.entityId".toString()) }
+        dataManager.commit(new CommitContext(entities))
+
+        when:
+
+        def loadIds = [ids[3], ids[0], ids[4], ids[2], ids[1]]
+        def list = dataManager.loadList(LoadContext.create(CompositeKeyEntity).setIds(loadIds))
+
+        then:
+
+        list*.id == loadIds
+        list*.name == ['e4', 'e1', 'e5', 'e3', 'e2']
+
+        cleanup:
+
+        new Sql(cont.persistence().getDataSource()).execute('delete from TEST_COMPOSITE_KEY where TENANT = 2')
+
+        where:
+
+        batchSize << [1, 2, 5, 50]
+    }
+
+    static class TestRdbmsStore extends RdbmsStore {
+
+        private Integer maxParametersCount
+
+        TestRdbmsStore(Integer maxParametersCount) {
+            super(Stores.MAIN)
+            this.maxParametersCount = maxParametersCount
+        }
+
+        @Override
+        protected Integer getMaxQueryParametersCount() {
+            return maxParametersCount
+        }
+    }
+}
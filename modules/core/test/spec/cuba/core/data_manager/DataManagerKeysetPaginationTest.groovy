@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.core.data_manager
+
+import com.haulmont.chile.core.model.MetaPropertyPath
+import com.haulmont.cuba.core.app.DefaultJpqlSortExpressionProvider
+import com.haulmont.cuba.core.app.JpqlSortExpressionProvider
+import com.haulmont.cuba.core.app.SortJpqlGenerator
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.CommitContext
+import com.haulmont.cuba.core.global.DataManager
+import com.haulmont.cuba.core.global.LoadContext
+import com.haulmont.cuba.core.global.Sort
+import com.haulmont.cuba.security.entity.Group
+import com.haulmont.cuba.testsupport.TestContainer
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class DataManagerKeysetPaginationTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private DataManager dataManager
+    private List<Group> groups
+
+    void setup() {
+        dataManager = AppBeans.get(DataManager)
+
+        CommitContext commitContext = new CommitContext()
+        groups = (0..6).collect { i ->
+            Group group = cont.metadata().create(Group)
+            group.name = "keyset-group-$i"
+            commitContext.addInstanceToCommit(group)
+            group
+        }
+        dataManager.commit(commitContext)
+    }
+
+    void cleanup() {
+        cont.deleteRecord(*groups)
+    }
+
+    def "load pages in keyset pagination mode"() {
+
+        when:
+
+        def page1 = loadPage(null, Sort.Direction.ASC)
+        def page2 = loadPage(page1.last().id, Sort.Direction.ASC)
+        def page3 = loadPage(page2.last().id, Sort.Direction.ASC)
+
+        then:
+
+        page1*.name == ['keyset-group-0', 'keyset-group-1', 'keyset-group-2']
+        page2*.name == ['keyset-group-3', 'keyset-group-4', 'keyset-group-5']
+        page3*.name == ['keyset-group-6']
+    }
+
+    def "load pages in keyset pagination mode in descending order"() {
+
+        when:
+
+        def page1 = loadPage(null, Sort.Direction.DESC)
+        def page2 = loadPage(page1.last().id, Sort.Direction.DESC)
+
+        then:
+
+        page1*.name == ['keyset-group-6', 'keyset-group-5', 'keyset-group-4']
+        page2*.name == ['keyset-group-3', 'keyset-group-2', 'keyset-group-1']
+    }
+
+    def "keyset condition uses the sort expressions of the query"() {
+
+        given: 'string properties are sorted case-insensitively'
+
+        SortJpqlGenerator sortJpqlGenerator = AppBeans.get(SortJpqlGenerator)
+        JpqlSortExpressionProvider defaultProvider = sortJpqlGenerator.jpqlSortExpressionProvider
+        sortJpqlGenerator.jpqlSortExpressionProvider = new DefaultJpqlSortExpressionProvider() {
+            @Override
+            String getDatatypeSortExpression(MetaPropertyPath metaPropertyPath, boolean sortDirectionAsc) {
+                metaPropertyPath.metaProperty.javaType == String ?
+                        "upper({E}.${metaPropertyPath})".toString() :
+                        super.getDatatypeSortExpression(metaPropertyPath, sortDirectionAsc)
+            }
+        }
+
+        and:
+
+        CommitContext commitContext = new CommitContext()
+        def caseGroups = ['a', 'B', 'c', 'D'].collect { suffix ->
+            Group group = cont.metadata().create(Group)
+            group.name = "case-group-$suffix"
+            commitContext.addInstanceToCommit(group)
+            group
+        }
+        dataManager.commit(commitContext)
+
+        when:
+
+        def page1 = loadPage(null, Sort.Direction.ASC, 'case-group-%', 2)
+        def page2 = loadPage(page1.last().id, Sort.Direction.ASC, 'case-group-%', 2)
+
+        then:
+
+        page1*.name == ['case-group-a', 'case-group-B']
+        page2*.name == ['case-group-c', 'case-group-D']
+
+        cleanup:
+
+        sortJpqlGenerator.jpqlSortExpressionProvider = defaultProvider
+        cont.deleteRecord(*caseGroups)
+    }
+
+    def "keyset pagination flag takes part in query equality"() {
+
+        when:
+
+        def query = LoadContext.createQuery('select g from sec$Group g')
+        def keysetQuery = LoadContext.createQuery('select g from sec$Group g').setKeysetPagination(true)
+
+        then:
+
+        query != keysetQuery
+        query == query.copy()
+        keysetQuery == keysetQuery.copy()
+        keysetQuery.hashCode() == keysetQuery.copy().hashCode()
+    }
+
+    private List<Group> loadPage(Object afterId, Sort.Direction direction) {
+        return loadPage(afterId, direction, 'keyset-group-%', 3)
+    }
+
+    private List<Group> loadPage(Object afterId, Sort.Direction direction, String namePattern, int maxResults) {
+        LoadContext.Query query = LoadContext.createQuery('select g from sec$Group g where g.name like :name')
+                .setParameter('name', namePattern)
+                .setSort(Sort.by(direction, 'name'))
+                .setKeysetPagination(true)
+                .setAfterId(afterId)
+                .setMaxResults(maxResults)
+        return dataManager.loadList(LoadContext.create(Group).setQuery(query))
+    }
+}
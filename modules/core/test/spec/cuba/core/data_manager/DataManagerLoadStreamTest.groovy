@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.core.data_manager
+
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.CommitContext
+import com.haulmont.cuba.core.global.DataManager
+import com.haulmont.cuba.core.global.LoadContext
+import com.haulmont.cuba.core.global.Sort
+import com.haulmont.cuba.core.global.ValueLoadContext
+import com.haulmont.cuba.security.entity.Group
+import com.haulmont.cuba.testsupport.TestContainer
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.stream.Collectors
+
+class DataManagerLoadStreamTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private DataManager dataManager
+    private List<Group> groups
+
+    void setup() {
+        dataManager = AppBeans.get(DataManager)
+
+        CommitContext commitContext = new CommitContext()
+        groups = (0..6).collect { i ->
+            Group group = cont.metadata().create(Group)
+            group.name = "stream-group-$i"
+            commitContext.addInstanceToCommit(group)
+            group
+        }
+        dataManager.commit(commitContext)
+    }
+
+    void cleanup() {
+        cont.deleteRecord(*groups)
+    }
+
+    def "load entities by chunks"() {
+        LoadContext.Query query = LoadContext.createQuery('select g from sec$Group g where g.name like :name')
+                .setParameter('name', 'stream-group-%')
+                .setSort(Sort.by('name'))
+
+        when:
+
+        def names = dataManager.loadListStream(LoadContext.create(Group).setQuery(query), 3)
+                .map { it.name }
+                .collect(Collectors.toList())
+
+        then:
+
+        names == (0..6).collect { "stream-group-$it".toString() }
+        !query.keysetPagination
+    }
+
+    def "load entities by chunks in the order of the query"() {
+        LoadContext.Query query = LoadContext.createQuery('select g from sec$Group g where g.name like :name order by g.name desc')
+                .setParameter('name', 'stream-group-%')
+
+        when:
+
+        def names = dataManager.loadListStream(LoadContext.create(Group).setQuery(query), 3)
+                .map { it.name }
+                .collect(Collectors.toList())
+
+        then:
+
+        names == (6..0).collect { "stream-group-$it".toString() }
+    }
+
+    def "load entities by chunks with offset and limit"() {
+        LoadContext.Query query = LoadContext.createQuery('select g from sec$Group g where g.name like :name')
+                .setParameter('name', 'stream-group-%')
+                .setSort(Sort.by('name'))
+                .setFirstResult(1)
+                .setMaxResults(5)
+
+        when:
+
+        def names = dataManager.loadListStream(LoadContext.create(Group).setQuery(query), 2)
+                .map { it.name }
+                .collect(Collectors.toList())
+
+        then:
+
+        names == (1..5).collect { "stream-group-$it".toString() }
+    }
+
+    def "load values by chunks"() {
+        ValueLoadContext context = ValueLoadContext.create()
+                .setQuery(ValueLoadContext.createQuery('select g.name from sec$Group g where g.name like :name order by g.name')
+                        .setParameter('name', 'stream-group-%'))
+                .addProperty('name')
+
+        when:
+
+        def names = dataManager.loadValuesStream(context, 4)
+                .map { it.getValue('name') }
+                .collect(Collectors.toList())
+
+        then:
+
+        names == (0..6).collect { "stream-group-$it".toString() }
+        context.query.maxResults == 0
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package spec.cuba.core.entity_import_export
+
+import com.haulmont.cuba.core.app.FileStorageAPI
+import com.haulmont.cuba.core.app.importexport.EntityImportExportAPI
+import com.haulmont.cuba.core.app.importexport.EntityImportView
+import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI
+import com.haulmont.cuba.core.entity.FileDescriptor
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.CommitContext
+import com.haulmont.cuba.core.global.DataManager
+import com.haulmont.cuba.core.global.LoadContext
+import com.haulmont.cuba.security.entity.Group
+import com.haulmont.cuba.testsupport.TestContainer
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class EntityExportImportTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private EntityImportExportAPI entityImportExport
+    private DataManager dataManager
+    private List<Group> groups
+
+    void setup() {
+        entityImportExport = AppBeans.get(EntityImportExportAPI)
+        dataManager = AppBeans.get(DataManager)
+
+        CommitContext commitContext = new CommitContext()
+        groups = (0..4).collect { i ->
+            Group group = cont.metadata().create(Group)
+            group.name = "export-group-$i".toString()
+            commitContext.addInstanceToCommit(group)
+            group
+        }
+        dataManager.commit(commitContext)
+    }
+
+    void cleanup() {
+        cont.deleteRecord(*groups)
+    }
+
+    def "export to a ZIP stream and import back"() {
+
+        given:
+
+        def outputStream = new ByteArrayOutputStream()
+        entityImportExport.exportEntitiesToZIP(createLoadContext(), outputStream, compress)
+
+        and: 'the groups are changed after export'
+
+        renameGroups()
+
+        when:
+
+        def imported = entityImportExport.importEntitiesFromZIP(outputStream.toByteArray(),
+                new EntityImportView(Group).addLocalProperties())
+
+        then:
+
+        imported.size() == 5
+        loadGroupNames() == (0..4).collect { "export-group-$it".toString() }
+
+        where:
+
+        compress << [true, false]
+    }
+
+    def "export to a file and import back"() {
+
+        given:
+
+        FileStorageAPI fileStorage = AppBeans.get(FileStorageAPI)
+        FileDescriptor fd = cont.metadata().create(FileDescriptor)
+        fd.name = 'export.zip'
+        fd.extension = 'zip'
+        fd.createDate = new Date()
+
+        entityImportExport.exportEntitiesToZIP(createLoadContext(), fd, true)
+        renameGroups()
+
+        when:
+
+        def imported = entityImportExport.importEntitiesFromZIP(fileStorage.loadFile(fd),
+                new EntityImportView(Group).addLocalProperties())
+
+        then:
+
+        fd.size > 0
+        imported.size() == 5
+        loadGroupNames() == (0..4).collect { "export-group-$it".toString() }
+
+        cleanup:
+
+        fileStorage.removeFile(fd)
+    }
+
+    def "export to a JSON stream keeps the query order"() {
+
+        when:
+
+        def outputStream = new ByteArrayOutputStream()
+        entityImportExport.exportEntitiesToJSON(createLoadContext(), outputStream)
+        Collection<Group> exported = AppBeans.get(EntitySerializationAPI).entitiesCollectionFromJson(
+                new String(outputStream.toByteArray(), StandardCharsets.UTF_8), null)
+
+        then:
+
+        exported.collect { it.name } == (0..4).collect { "export-group-$it".toString() }
+    }
+
+    protected LoadContext<Group> createLoadContext() {
+        LoadContext.create(Group)
+                .setQuery(LoadContext.createQuery('select g from sec$Group g where g.name like :name order by g.name')
+                        .setParameter('name', 'export-group-%'))
+                .setView('_local')
+    }
+
+    protected void renameGroups() {
+        CommitContext commitContext = new CommitContext()
+        dataManager.loadList(createLoadContext()).each { group ->
+            group.name = group.name + '-changed'
+            commitContext.addInstanceToCommit(group)
+        }
+        dataManager.commit(commitContext)
+    }
+
+    protected List<String> loadGroupNames() {
+        dataManager.loadList(LoadContext.create(Group)
+                .setQuery(LoadContext.createQuery('select g from sec$Group g where g.id in :ids order by g.name')
+                        .setParameter('ids', groups.collect { it.id })))
+                .collect { it.name }
+    }
+}
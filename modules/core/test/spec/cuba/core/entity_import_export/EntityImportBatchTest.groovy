@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package spec.cuba.core.entity_import_export
+
+import com.haulmont.cuba.core.app.ServerConfig
+import com.haulmont.cuba.core.app.importexport.EntityImportException
+import com.haulmont.cuba.core.app.importexport.EntityImportExportAPI
+import com.haulmont.cuba.core.app.importexport.EntityImportView
+import com.haulmont.cuba.core.app.importexport.ReferenceImportBehaviour
+import com.haulmont.cuba.core.entity.Entity
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.Configuration
+import com.haulmont.cuba.core.global.DataManager
+import com.haulmont.cuba.core.global.LoadContext
+import com.haulmont.cuba.core.global.View
+import com.haulmont.cuba.security.entity.Group
+import com.haulmont.cuba.security.entity.User
+import com.haulmont.cuba.testmodel.primary_keys.StringKeyEntity
+import com.haulmont.cuba.testsupport.TestContainer
+import com.haulmont.cuba.testsupport.TestSupport
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class EntityImportBatchTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private EntityImportExportAPI entityImportExport
+    private DataManager dataManager
+    private ServerConfig serverConfig
+    private List<Entity> toDelete = []
+
+    void setup() {
+        entityImportExport = AppBeans.get(EntityImportExportAPI)
+        dataManager = AppBeans.get(DataManager)
+        serverConfig = AppBeans.get(Configuration).getConfig(ServerConfig)
+        serverConfig.setEntityImportLoadingBatchSize(2)
+    }
+
+    void cleanup() {
+        serverConfig.setEntityImportLoadingBatchSize(500)
+        cont.deleteRecord(*toDelete)
+    }
+
+    def "import of entities with string primary key"() {
+
+        given: 'one of the imported entities exists'
+
+        StringKeyEntity existing = cont.metadata().create(StringKeyEntity)
+        existing.code = 'import-1'
+        existing.name = 'old name'
+        toDelete << dataManager.commit(existing)
+
+        def entities = (1..3).collect { i ->
+            StringKeyEntity entity = cont.metadata().create(StringKeyEntity)
+            entity.code = "import-$i".toString()
+            entity.name = "name $i".toString()
+            entity
+        }
+        toDelete.addAll(entities.drop(1))
+
+        when:
+
+        def imported = entityImportExport.importEntities(entities,
+                new EntityImportView(StringKeyEntity).addLocalProperties())
+
+        then:
+
+        imported.size() == 3
+        (1..3).every { i ->
+            dataManager.load(LoadContext.create(StringKeyEntity).setId("import-$i".toString())).name == "name $i"
+        }
+    }
+
+    def "import of entities and references loaded by batches"() {
+
+        given: 'an existing user and users to create, all referencing an existing group'
+
+        Group group = dataManager.load(LoadContext.create(Group).setId(TestSupport.COMPANY_GROUP_ID))
+
+        User existing = cont.metadata().create(User)
+        existing.login = 'importBatch0'
+        existing.name = 'old name'
+        existing.group = group
+        toDelete << dataManager.commit(existing)
+
+        def users = (0..4).collect { i ->
+            User user = cont.metadata().create(User)
+            if (i == 0) {
+                user.id = existing.id
+            }
+            user.login = "importBatch$i".toString()
+            user.name = "name $i".toString()
+            Group groupRef = cont.metadata().create(Group)
+            groupRef.id = group.id
+            user.group = groupRef
+            user
+        }
+        toDelete.addAll(users.drop(1))
+
+        def importView = new EntityImportView(User)
+                .addLocalProperties()
+                .addManyToOneProperty('group', ReferenceImportBehaviour.ERROR_ON_MISSING)
+
+        when: 'imported by batches smaller than the number of entities'
+
+        def imported = entityImportExport.importEntities(users, importView, false, false, 3)
+
+        then:
+
+        imported.size() == 5
+        users.every { user ->
+            User loaded = dataManager.load(LoadContext.create(User).setId(user.id)
+                    .setView(new View(User).addProperty('name').addProperty('group', new View(Group).addProperty('name'))))
+            loaded.name == user.name && loaded.group == group
+        }
+    }
+
+    def "import fails on missing reference"() {
+
+        given:
+
+        User user = cont.metadata().create(User)
+        user.login = 'importBatchMissing'
+        Group groupRef = cont.metadata().create(Group)
+        user.group = groupRef
+
+        def importView = new EntityImportView(User)
+                .addLocalProperties()
+                .addManyToOneProperty('group', ReferenceImportBehaviour.ERROR_ON_MISSING)
+
+        when:
+
+        entityImportExport.importEntities([user], importView, false, false, 10)
+
+        then:
+
+        thrown(EntityImportException)
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package spec.cuba.core.entity_log
+
+import com.haulmont.cuba.core.EntityManager
+import com.haulmont.cuba.core.Persistence
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.Configuration
+import com.haulmont.cuba.core.global.TimeSource
+import com.haulmont.cuba.core.sys.AuditInfoProvider
+import com.haulmont.cuba.security.app.EntityLogAsyncWriter
+import com.haulmont.cuba.security.app.EntityLogConfig
+import com.haulmont.cuba.security.entity.EntityLogItem
+import com.haulmont.cuba.security.entity.User
+
+import java.sql.SQLException
+
+class EntityLogAsyncWriterTest extends AbstractEntityLogTest {
+
+    private EntityLogConfig entityLogConfig
+    private UUID userId
+
+    void setup() {
+        clearTables("SEC_LOGGED_ATTR", "SEC_LOGGED_ENTITY", "SEC_ENTITY_LOG")
+
+        withTransaction { EntityManager em ->
+            saveEntityLogAutoConfFor(em, 'sec$User', 'name', 'email')
+        }
+        initEntityLogAPI()
+
+        entityLogConfig = AppBeans.get(Configuration).getConfig(EntityLogConfig)
+    }
+
+    void cleanup() {
+        entityLogConfig.setAsyncWriting(false)
+        clearTables("SEC_LOGGED_ATTR", "SEC_LOGGED_ENTITY", "SEC_ENTITY_LOG")
+
+        if (userId != null)
+            cont.deleteRecord("SEC_USER", userId)
+    }
+
+    def "items are written by the writer thread after commit"() {
+
+        given:
+
+        entityLogConfig.setAsyncWriting(true)
+        def writer = AppBeans.get(EntityLogAsyncWriter)
+        long writtenCount = writer.writtenCount
+
+        when:
+
+        withTransaction { EntityManager em ->
+            User user = cont.metadata().create(User)
+            user.login = 'asyncTest'
+            user.name = 'name1'
+            user.group = findCompanyGroup()
+            em.persist(user)
+            userId = user.id
+        }
+        waitFor { writer.writtenCount > writtenCount }
+
+        then:
+
+        writer.queueSize == 0
+        getEntityLogItems('sec$User', userId).size() == 1
+        getLatestEntityLogItem('sec$User', userId).type == EntityLogItem.Type.CREATE
+    }
+
+    def "failed batch is retried"() {
+
+        given:
+
+        def writer = createWriter(2)
+        def items = [createItem(), createItem()]
+        writer.enqueue(items)
+
+        when:
+
+        writer.startWriterThread()
+        waitFor { writer.writtenCount == 2 }
+
+        then:
+
+        writer.attempts == 3
+        items.every { getEntityLogItems('sec$User', it.objectEntityId).size() == 1 }
+
+        cleanup:
+
+        writer.applicationStopped()
+    }
+
+    def "items of a batch failing all attempts are persisted one by one"() {
+
+        given:
+
+        def writer = createWriter(Integer.MAX_VALUE)
+        def items = [createItem(), createItem(), createItem()]
+        writer.enqueue(items)
+
+        when:
+
+        writer.startWriterThread()
+        waitFor { writer.writtenCount == 3 }
+
+        then:
+
+        writer.attempts == entityLogConfig.asyncRetryAttempts + 1
+        items.every { getEntityLogItems('sec$User', it.objectEntityId).size() == 1 }
+
+        cleanup:
+
+        writer.applicationStopped()
+    }
+
+    def "queued items are written on stop and items enqueued after stop are rejected"() {
+
+        given: 'a writer without the writer thread'
+
+        def writer = createWriter(0)
+        def items = [createItem(), createItem()]
+        writer.enqueue(items)
+
+        when:
+
+        writer.applicationStopped()
+
+        then:
+
+        writer.queueSize == 0
+        items.every { getEntityLogItems('sec$User', it.objectEntityId).size() == 1 }
+
+        when:
+
+        def lateItem = createItem()
+        def rejected = writer.enqueue([lateItem])
+
+        then:
+
+        rejected == [lateItem]
+        writer.rejectedCount == 1
+        writer.queueSize == 0
+    }
+
+    /**
+     * Creates a writer which does not start the writer thread on first enqueue, so the test can fill the queue
+     * and then start the thread to get a single batch.
+     */
+    protected TestEntityLogAsyncWriter createWriter(int failures) {
+        def writer = new TestEntityLogAsyncWriter(AppBeans.get(Configuration), failures)
+        writer.persistence = AppBeans.get(Persistence)
+        writer.timeSource = AppBeans.get(TimeSource)
+        writer.auditInfoProvider = AppBeans.get(AuditInfoProvider)
+        writer.retryDelayMs = 10
+        writer.stopTimeoutMs = 5000
+        writer
+    }
+
+    protected EntityLogItem createItem() {
+        EntityLogItem item = cont.metadata().create(EntityLogItem)
+        item.eventTs = new Date()
+        item.type = EntityLogItem.Type.MODIFY
+        item.entity = 'sec$User'
+        item.objectEntityId = UUID.randomUUID()
+        item
+    }
+
+    protected static void waitFor(Closure<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + 10000
+        while (!condition.call()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError('Condition is not met in time')
+            }
+            Thread.sleep(20)
+        }
+    }
+
+    static class TestEntityLogAsyncWriter extends EntityLogAsyncWriter {
+
+        int failures
+        volatile int attempts
+        boolean queueCreated
+
+        TestEntityLogAsyncWriter(Configuration configuration, int failures) {
+            super(configuration)
+            this.failures = failures
+        }
+
+        @Override
+        protected synchronized void startWriterThread() {
+            // the first call is made on creating the queue, then the thread is started by the test
+            if (queueCreated) {
+                super.startWriterThread()
+            }
+            queueCreated = true
+        }
+
+        @Override
+        protected void writeBatch(List<EntityLogAsyncWriter.QueuedItem> batch) throws SQLException {
+            if (attempts++ < failures) {
+                throw new SQLException('Test failure')
+            }
+            super.writeBatch(batch)
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package spec.cuba.core.entity_log
+
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.Configuration
+import com.haulmont.cuba.security.app.EntityLog
+import com.haulmont.cuba.security.app.EntityLogAPI
+import com.haulmont.cuba.security.entity.EntityLogAttr
+import com.haulmont.cuba.security.entity.EntityLogChangesFormat
+import com.haulmont.cuba.security.entity.EntityLogItem
+import com.haulmont.cuba.testsupport.TestContainer
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class EntityLogLegacyChangesTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    def "deprecated hook is used only if it is overridden"() {
+
+        expect:
+
+        !(AppBeans.get(EntityLogAPI) as EntityLog).legacyChangesOverridden
+        !new EntityLog(AppBeans.get(Configuration)).legacyChangesOverridden
+        new LegacyEntityLog(AppBeans.get(Configuration)).legacyChangesOverridden
+    }
+
+    def "deprecated hook encodes changes in the current format"() {
+
+        given:
+
+        def properties = new Properties()
+        properties.setProperty('name', 'new name')
+        properties.setProperty('name' + EntityLogAttr.OLD_VALUE_SUFFIX, 'old name')
+
+        when:
+
+        def changes = new EntityLog(AppBeans.get(Configuration)).getChanges(properties)
+        def attributes = EntityLogChangesFormat.decode(changes, new EntityLogItem())
+
+        then:
+
+        !EntityLogChangesFormat.isLegacyFormat(changes)
+        attributes.size() == 1
+        attributes[0].name == 'name'
+        attributes[0].value == 'new name'
+        attributes[0].oldValue == 'old name'
+    }
+
+    static class LegacyEntityLog extends EntityLog {
+
+        LegacyEntityLog(Configuration configuration) {
+            super(configuration)
+        }
+
+        @Override
+        protected String getChanges(Properties properties) {
+            return super.getChanges(properties)
+        }
+    }
+}
@@ -22,6 +22,7 @@ import com.haulmont.cuba.core.PersistenceTools
 import com.haulmont.cuba.core.global.AppBeans
 import com.haulmont.cuba.core.global.MetadataTools
 import com.haulmont.cuba.core.global.View
+import com.haulmont.cuba.security.entity.EntityLogItem
 import com.haulmont.cuba.security.entity.Group
 import com.haulmont.cuba.security.entity.User
 import com.haulmont.cuba.testmodel.entity_log.EntityLogA
@@ -167,6 +168,47 @@ class EntityLogTest extends AbstractEntityLogTest {
         getLatestEntityLogItem('sec$User', user1Id).entityInstanceName == instanceName
     }
 
+    def "items of several instances flushed in one transaction are grouped per instance"() {
+
+        given:
+
+        withTransaction { EntityManager em ->
+            user1Id = createAndSaveUser(em, [login: 'test', name: 'name1', email: 'email1'])
+        }
+
+        when:
+
+        withTransaction { EntityManager em ->
+            def user1 = em.find(User, user1Id)
+            user1.setEmail('email11')
+
+            user2Id = createAndSaveUser(em, [login: 'test2', name: 'name2'])
+            em.flush()
+
+            user1.setEmail('email111')
+            def user2 = em.find(User, user2Id)
+            user2.setName('name22')
+            em.flush()
+
+            user1.setName('name11')
+        }
+
+        then: 'one item is saved for each instance'
+
+        getEntityLogItems('sec$User', user1Id).size() == 2
+        def item1 = getLatestEntityLogItem('sec$User', user1Id)
+        item1.type == EntityLogItem.Type.MODIFY
+        loggedValueMatches(item1, 'email', 'email111')
+        loggedOldValueMatches(item1, 'email', 'email1')
+        loggedValueMatches(item1, 'name', 'name11')
+        loggedOldValueMatches(item1, 'name', 'name1')
+
+        getEntityLogItems('sec$User', user2Id).size() == 1
+        def item2 = getLatestEntityLogItem('sec$User', user2Id)
+        item2.type == EntityLogItem.Type.CREATE
+        loggedValueMatches(item2, 'name', 'name22')
+    }
+
     def "instance name with reference"() {
         when:
 
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package spec.cuba.core.entity_serialization
+
+import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI
+import com.haulmont.cuba.core.app.serialization.EntitySerializationOption
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.security.entity.Group
+import com.haulmont.cuba.security.entity.User
+import com.haulmont.cuba.testsupport.TestContainer
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class EntityJsonWriteTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private EntitySerializationAPI entitySerializationAPI
+
+    void setup() {
+        entitySerializationAPI = AppBeans.get(EntitySerializationAPI.class)
+    }
+
+    def "written JSON array is read back"() {
+
+        given: 'users sharing the same group'
+
+        Group group = cont.metadata().create(Group)
+        group.name = 'group'
+
+        def users = (1..3).collect { i ->
+            User user = cont.metadata().create(User)
+            user.login = "user$i".toString()
+            user.group = group
+            user
+        }
+
+        when:
+
+        def writer = new StringWriter()
+        entitySerializationAPI.writeJson(users, writer, null, EntitySerializationOption.COMPACT_REPEATED_ENTITIES)
+        Collection<User> result = entitySerializationAPI.entitiesCollectionFromJson(writer.toString(), null,
+                EntitySerializationOption.COMPACT_REPEATED_ENTITIES)
+
+        then: 'the group is written in full for each element'
+
+        result.collect { it.id } == users.collect { it.id }
+        result.collect { it.login } == ['user1', 'user2', 'user3']
+        result.every { it.group.id == group.id && it.group.name == 'group' }
+    }
+
+    def "entities are taken from the iterable one by one"() {
+
+        given:
+
+        int created = 0
+        Iterable<Group> groups = {
+            [
+                    hasNext: { created < 3 },
+                    next   : {
+                        Group group = cont.metadata().create(Group)
+                        group.name = "group${created++}".toString()
+                        group
+                    }
+            ] as Iterator<Group>
+        } as Iterable<Group>
+
+        when:
+
+        def writer = new StringWriter()
+        entitySerializationAPI.writeJson(groups, writer, null)
+        Collection<Group> result = entitySerializationAPI.entitiesCollectionFromJson(writer.toString(), null)
+
+        then:
+
+        result.collect { it.name } == ['group0', 'group1', 'group2']
+    }
+
+    def "empty iterable is written as an empty array"() {
+
+        when:
+
+        def writer = new StringWriter()
+        entitySerializationAPI.writeJson([], writer, null)
+
+        then:
+
+        writer.toString() == '[]'
+    }
+}
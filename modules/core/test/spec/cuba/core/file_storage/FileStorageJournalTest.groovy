@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.core.file_storage
+
+import com.haulmont.cuba.core.app.ServerConfig
+import com.haulmont.cuba.core.app.filestorage.FileStorageJournal
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.Configuration
+import com.haulmont.cuba.testsupport.TestContainer
+import org.apache.commons.io.FileUtils
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.file.Files
+
+class FileStorageJournalTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private FileStorageJournal journal
+    private File rootDir
+
+    void setup() {
+        journal = AppBeans.get(FileStorageJournal)
+        rootDir = Files.createTempDirectory('file-storage-journal').toFile()
+    }
+
+    void cleanup() {
+        FileUtils.deleteQuietly(rootDir)
+    }
+
+    def "records appended concurrently are written and replayed"() {
+        def conditions = new PollingConditions(timeout: 10)
+
+        when:
+        def threads = (0..3).collect { t ->
+            Thread.start {
+                (0..99).each { i -> journal.append(rootDir, "record $t $i\n") }
+            }
+        }
+        threads*.join()
+
+        then:
+        conditions.eventually {
+            assert replay().size() == 400
+        }
+        replay().findAll { it.startsWith('record 2 ') }.collect { it.split(' ')[2] as int } == (0..99).toList()
+    }
+
+    def "log is rotated after exceeding the max size and replayed across rotated files"() {
+        def journal = createJournal(100, sync)
+        // records are written synchronously after the journal is stopped
+        journal.applicationStopped()
+
+        when:
+        (0..59).each { i -> journal.append(rootDir, String.format('record %03d of the log %d\n', i, i)) }
+
+        then: "each file exceeds the limit by at most one record"
+        def logFiles = rootDir.listFiles().findAll { it.name.startsWith(FileStorageJournal.LOG_FILE_NAME) }
+        logFiles.size() > 10
+        logFiles.every { it.length() < 100 + 30 }
+
+        and:
+        replay(journal).collect { it.split(' ')[1] as int } == (0..59).toList()
+
+        where:
+        sync << [false, true]
+    }
+
+    def "rotated files are replayed in the order of rotation"() {
+        def journal = createJournal(0, false)
+        ['storage.log.20200101-120000-10': '4',
+         'storage.log.20200101-120000-2' : '3',
+         'storage.log.20200101-120000'   : '1',
+         'storage.log.20200101-120000-1' : '2',
+         'storage.log.20191231-235959'   : '0',
+         'storage.log'                   : '5'].each { name, line ->
+            new File(rootDir, name).text = line + '\n'
+        }
+
+        expect:
+        replay(journal) == ['0', '1', '2', '3', '4', '5']
+    }
+
+    def "log is not rotated if the max size is zero"() {
+        def journal = createJournal(0, false)
+        journal.applicationStopped()
+
+        when:
+        (0..99).each { i -> journal.append(rootDir, "record $i\n") }
+
+        then:
+        rootDir.list() as List == [FileStorageJournal.LOG_FILE_NAME]
+        replay(journal).size() == 100
+    }
+
+    private FileStorageJournal createJournal(long maxSize, boolean sync) {
+        def serverConfig = Stub(ServerConfig) {
+            getFileStorageLogMaxSize() >> maxSize
+            getFileStorageLogSync() >> sync
+        }
+        new FileStorageJournal(Stub(Configuration) {
+            getConfig(ServerConfig) >> serverConfig
+        })
+    }
+
+    private List<String> replay(FileStorageJournal journal = this.journal) {
+        List<String> lines = []
+        journal.replay(rootDir) { lines.add(it) }
+        lines
+    }
+}
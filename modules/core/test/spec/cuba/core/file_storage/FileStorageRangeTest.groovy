@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.core.file_storage
+
+import com.haulmont.cuba.core.app.FileStorageAPI
+import com.haulmont.cuba.core.entity.FileDescriptor
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.testsupport.TestContainer
+import org.apache.commons.io.IOUtils
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.channels.Channels
+import java.nio.charset.StandardCharsets
+
+class FileStorageRangeTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private FileStorageAPI fileStorage
+    private FileDescriptor fd
+    private byte[] content = ('0123456789' * 1000).getBytes(StandardCharsets.UTF_8)
+
+    void setup() {
+        fileStorage = AppBeans.get(FileStorageAPI)
+
+        fd = cont.metadata().create(FileDescriptor)
+        fd.name = 'range-test.txt'
+        fd.extension = 'txt'
+        fd.createDate = new Date()
+        fd.size = content.length
+
+        fileStorage.saveStream(fd, new ByteArrayInputStream(content))
+    }
+
+    void cleanup() {
+        fileStorage.removeFile(fd)
+    }
+
+    def "load file"() {
+        expect:
+        fileStorage.loadFile(fd) == content
+    }
+
+    def "open stream for a range"() {
+        when:
+        byte[] range = fileStorage.openStream(fd, 9990, 10).withCloseable { IOUtils.toByteArray(it) }
+
+        then:
+        new String(range, StandardCharsets.UTF_8) == '0123456789'
+
+        when:
+        byte[] pastEnd = fileStorage.openStream(fd, 9995, 10).withCloseable { IOUtils.toByteArray(it) }
+
+        then:
+        new String(pastEnd, StandardCharsets.UTF_8) == '56789'
+
+        when:
+        byte[] tail = fileStorage.openStream(fd, 9990, -1).withCloseable { IOUtils.toByteArray(it) }
+
+        then:
+        new String(tail, StandardCharsets.UTF_8) == '0123456789'
+    }
+
+    def "range starting past the end of the file is empty"() {
+        def outputStream = new ByteArrayOutputStream()
+
+        when:
+        byte[] range = fileStorage.openStream(fd, content.length + 10, 10).withCloseable { IOUtils.toByteArray(it) }
+        long count = fileStorage.transferTo(fd, content.length + 10, 10, Channels.newChannel(outputStream))
+
+        then:
+        range.length == 0
+        count == 0
+        outputStream.size() == 0
+    }
+
+    def "transfer a range to a channel"() {
+        def outputStream = new ByteArrayOutputStream()
+
+        when:
+        long count = fileStorage.transferTo(fd, 3, 5, Channels.newChannel(outputStream))
+
+        then:
+        count == 5
+        new String(outputStream.toByteArray(), StandardCharsets.UTF_8) == '34567'
+
+        when:
+        outputStream.reset()
+        count = fileStorage.transferTo(fd, content.length - 2, 100, Channels.newChannel(outputStream))
+
+        then:
+        count == 2
+        new String(outputStream.toByteArray(), StandardCharsets.UTF_8) == '89'
+    }
+}
@@ -106,6 +106,26 @@ class NumberIdConcurrencyTest extends Specification {
         AppContext.setProperty('cuba.numberIdCacheSize', null)
     }
 
+    def "generating ids with prefetching"() {
+
+        AppContext.setProperty('cuba.numberIdCacheSize', '20')
+        AppContext.setProperty('cuba.numberIdCachePrefetchThreshold', '5')
+
+        when:
+
+        generateSomeEntities(500)
+
+        then:
+
+        countEntities() == 500
+
+        cleanup:
+
+        AppBeans.get(NumberIdCache).reset()
+        AppContext.setProperty('cuba.numberIdCacheSize', null)
+        AppContext.setProperty('cuba.numberIdCachePrefetchThreshold', null)
+    }
+
     def "generate with zero size cache"() {
         AppContext.setProperty('cuba.numberIdCacheSize', '0')
 
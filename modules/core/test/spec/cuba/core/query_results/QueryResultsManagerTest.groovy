@@ -30,6 +30,11 @@ import org.junit.ClassRule
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.sql.Array
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.sql.Types
+
 class QueryResultsManagerTest extends Specification {
 
     @Shared @ClassRule
@@ -98,4 +103,109 @@ class QueryResultsManagerTest extends Specification {
         userSessions.remove(session1)
         userSessions.remove(session2)
     }
+
+    def "ids are inserted by JDBC batches"() {
+
+        given: 'more ids than fit into a single batch'
+
+        def ids = (1..2500).collect { idFactory(it) }
+        def sessionId = AppBeans.get(UserSessionSource).userSession.id
+
+        when:
+
+        queryResultsManager.insert(10, ids)
+
+        then:
+
+        def results = persistence.callInTransaction { em ->
+            em.createQuery('select e from sys$QueryResult e where e.sessionId = :sessionId and e.queryKey = 10')
+                    .setParameter('sessionId', sessionId)
+                    .resultList
+        }
+        results.collect { it."$property" }.toSet() == ids.toSet()
+
+        when:
+
+        queryResultsManager.delete(10)
+
+        then:
+
+        persistence.callInTransaction { em ->
+            em.createQuery('select count(e) from sys$QueryResult e where e.sessionId = :sessionId')
+                    .setParameter('sessionId', sessionId)
+                    .singleResult
+        } == 0
+
+        where:
+
+        property         | idFactory
+        'entityId'       | { int i -> UUID.randomUUID() }
+        'stringEntityId' | { int i -> "id-$i".toString() }
+        'intEntityId'    | { int i -> i }
+        'longEntityId'   | { int i -> (long) i }
+    }
+
+    def "results of other queries and sessions are not deleted"() {
+
+        given:
+
+        def sessionId = AppBeans.get(UserSessionSource).userSession.id
+        queryResultsManager.insert(20, [1L, 2L])
+        queryResultsManager.insert(21, [3L])
+        persistence.callInTransaction { em ->
+            def entity = metadata.create(QueryResult)
+            entity.setSessionId(UUID.randomUUID())
+            entity.setQueryKey(20)
+            entity.setLongEntityId(4L)
+            em.persist(entity)
+        }
+
+        when:
+
+        queryResultsManager.delete(20)
+
+        then:
+
+        loadLongIds() == [3L, 4L]
+
+        when:
+
+        queryResultsManager.deleteForCurrentSession()
+
+        then:
+
+        loadLongIds() == [4L]
+    }
+
+    def "ids are inserted by a single statement bound to an array"() {
+
+        given:
+
+        def ids = (1..3).collect { UUID.randomUUID() }
+        def sessionId = UUID.randomUUID()
+        def array = Mock(Array)
+        def statement = Mock(PreparedStatement)
+        def connection = Mock(Connection)
+        def converter = persistence.getDbTypeConverter()
+
+        when:
+
+        queryResultsManager.insertByArray(connection, sessionId, 30, 'ENTITY_ID', 'uuid', ids)
+
+        then:
+
+        1 * connection.createArrayOf('uuid', ids.toArray()) >> array
+        1 * connection.prepareStatement('insert into SYS_QUERY_RESULT (SESSION_ID, QUERY_KEY, ENTITY_ID) select ?, ?, unnest(?)') >> statement
+        1 * statement.setObject(1, converter.getSqlObject(sessionId), converter.getSqlType(UUID))
+        1 * statement.setObject(2, 30, Types.INTEGER)
+        1 * statement.setObject(3, array, Types.ARRAY)
+        1 * statement.executeUpdate() >> 3
+        1 * array.free()
+    }
+
+    private List<Long> loadLongIds() {
+        persistence.callInTransaction { em ->
+            em.createQuery('select e.longEntityId from sys$QueryResult e order by e.longEntityId').resultList
+        }
+    }
 }
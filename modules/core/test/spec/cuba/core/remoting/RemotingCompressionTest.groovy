@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package spec.cuba.core.remoting
+
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.sys.AppContext
+import com.haulmont.cuba.core.sys.remoting.ClusteredHttpInvokerRequestExecutor
+import com.haulmont.cuba.core.sys.remoting.HttpServiceExporter
+import com.haulmont.cuba.core.sys.remoting.HttpServiceProxy
+import com.haulmont.cuba.core.sys.remoting.PooledHttpInvokerRequestExecutor
+import com.haulmont.cuba.core.sys.remoting.RemotingHttpClientPool
+import com.haulmont.cuba.core.sys.remoting.RemotingStatistics
+import com.haulmont.cuba.core.sys.remoting.discovery.ServerSelector
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport
+import com.haulmont.cuba.testsupport.TestContainer
+import org.junit.ClassRule
+import org.springframework.remoting.httpinvoker.HttpInvokerClientConfiguration
+import org.springframework.remoting.support.RemoteInvocationResult
+import spock.lang.Shared
+import spock.lang.Specification
+
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+class RemotingCompressionTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private HttpInvokerClientConfiguration config = [
+            getServiceUrl : { 'test_Service' },
+            getCodebaseUrl: { null }
+    ] as HttpInvokerClientConfiguration
+
+    void setup() {
+        RemotingStatistics.reset()
+    }
+
+    void cleanup() {
+        AppContext.setProperty('cuba.remotingCompression', null)
+        AppContext.setProperty('cuba.remotingPooledHttpClient', null)
+        RemotingStatistics.reset()
+    }
+
+    def "large requests are compressed if compression is enabled"() {
+
+        given:
+
+        AppContext.setProperty('cuba.remotingCompression', compression)
+        def executor = new TestRequestExecutor(new TestServerSelector(['http://server1']))
+        def request = createRequest(size)
+
+        when:
+
+        def result = executor.doExecuteRequest(config, request)
+
+        then:
+
+        result.value == 'ok'
+        executor.compressed == compressed
+        executor.acceptGzipEncoding == (compression == 'true')
+        (compressed ? gunzip(executor.sentBody) : executor.sentBody) == request.toByteArray()
+        !compressed || executor.sentBody.length < size
+
+        where:
+
+        compression | size      | compressed
+        'true'      | 16 * 1024 | true
+        'true'      | 1024      | false
+        'false'     | 16 * 1024 | false
+    }
+
+    def "statistics count uncompressed request size and failover"() {
+
+        given:
+
+        AppContext.setProperty('cuba.remotingCompression', 'true')
+        def executor = new TestRequestExecutor(new TestServerSelector(['http://server1', 'http://server2']))
+        executor.failures = 1
+        def request = createRequest(16 * 1024)
+
+        when: 'the first server fails'
+
+        executor.doExecuteRequest(config, request)
+
+        then: 'the invocation succeeds on the second one'
+
+        executor.urls == ['http://server1/test_Service', 'http://server2/test_Service']
+        def statistics = RemotingStatistics.getStatistics()['test_Service']
+        statistics.invocations == 1
+        statistics.failures == 0
+        statistics.requestBytes == 16 * 1024
+        statistics.responseBytes == executor.responseBytes.length
+
+        when: 'all servers fail'
+
+        executor.failures = 2
+        executor.doExecuteRequest(config, request)
+
+        then:
+
+        thrown(IOException)
+        RemotingStatistics.getStatistics()['test_Service'].invocations == 1
+        RemotingStatistics.getStatistics()['test_Service'].failures == 1
+    }
+
+    def "exporter decompresses requests and compresses responses for clients accepting gzip"() {
+
+        given:
+
+        def exporter = new HttpServiceExporter()
+        def data = createRequest(16 * 1024).toByteArray()
+        def request = Mock(HttpServletRequest) {
+            getHeader('Content-Encoding') >> 'gzip'
+            getHeader('Accept-Encoding') >> 'gzip, deflate'
+        }
+        def response = Mock(HttpServletResponse)
+
+        when:
+
+        def input = exporter.decorateInputStream(request, new ByteArrayInputStream(gzip(data)))
+        def output = new ByteArrayOutputStream()
+        exporter.decorateOutputStream(request, response, output).withStream { it.write(data) }
+
+        then:
+
+        input.bytes == data
+        1 * response.setHeader('Content-Encoding', 'gzip')
+        gunzip(output.toByteArray()) == data
+    }
+
+    def "exporter keeps streams of clients without compression"() {
+
+        given:
+
+        def exporter = new HttpServiceExporter()
+        def request = Mock(HttpServletRequest)
+        def response = Mock(HttpServletResponse)
+        def input = new ByteArrayInputStream(new byte[1])
+        def output = new ByteArrayOutputStream()
+
+        when:
+
+        def decoratedInput = exporter.decorateInputStream(request, input)
+        def decoratedOutput = exporter.decorateOutputStream(request, response, output)
+
+        then:
+
+        decoratedInput.is(input)
+        decoratedOutput.is(output)
+        0 * response.setHeader(_, _)
+    }
+
+    def "pooled executor uses the client of the given pool"() {
+
+        given:
+
+        AppContext.setProperty('cuba.remotingPooledHttpClient', 'true')
+        def pool = new RemotingHttpClientPool()
+
+        when:
+
+        def proxy = new HttpServiceProxy(new TestServerSelector(['http://server1']), pool)
+        def notPooledProxy = new HttpServiceProxy(new TestServerSelector(['http://server1']))
+
+        then:
+
+        proxy.httpInvokerRequestExecutor instanceof PooledHttpInvokerRequestExecutor
+        proxy.httpInvokerRequestExecutor.httpClientPool.is(pool)
+        !(notPooledProxy.httpInvokerRequestExecutor instanceof PooledHttpInvokerRequestExecutor)
+
+        cleanup:
+
+        pool.close()
+    }
+
+    def "pool creates the client once and does not recreate it after closing"() {
+
+        given:
+
+        def pool = new RemotingHttpClientPool()
+        def httpClient = pool.getHttpClient()
+
+        expect:
+
+        pool.getHttpClient().is(httpClient)
+
+        when:
+
+        pool.close()
+        pool.getHttpClient()
+
+        then:
+
+        pool.closed
+        thrown(IllegalStateException)
+    }
+
+    def "pool of the context is a singleton bean"() {
+
+        expect:
+
+        AppBeans.get(RemotingHttpClientPool.NAME).is(AppBeans.get(RemotingHttpClientPool))
+    }
+
+    private static ByteArrayOutputStream createRequest(int size) {
+        def request = new ByteArrayOutputStream()
+        def random = new Random(size)
+        // repeated text is compressible like serialized invocations
+        while (request.size() < size) {
+            request.write("service-invocation-${random.nextInt(100)};".getBytes('UTF-8'))
+        }
+        def bytes = Arrays.copyOf(request.toByteArray(), size)
+        request.reset()
+        request.write(bytes)
+        return request
+    }
+
+    private static byte[] gzip(byte[] data) {
+        def result = new ByteArrayOutputStream()
+        new GZIPOutputStream(result).withStream { it.write(data) }
+        return result.toByteArray()
+    }
+
+    private static byte[] gunzip(byte[] data) {
+        return new GZIPInputStream(new ByteArrayInputStream(data)).bytes
+    }
+
+    static class TestServerSelector implements ServerSelector {
+
+        List<String> urls
+
+        TestServerSelector(List<String> urls) {
+            this.urls = urls
+        }
+
+        @Override
+        Object initContext() {
+            return [0] as int[]
+        }
+
+        @Override
+        String getUrl(Object context) {
+            int index = ((int[]) context)[0]
+            return index < urls.size() ? urls[index] : null
+        }
+
+        @Override
+        void success(Object context) {
+        }
+
+        @Override
+        void fail(Object context) {
+            ((int[]) context)[0]++
+        }
+    }
+
+    static class TestRequestExecutor extends ClusteredHttpInvokerRequestExecutor {
+
+        int failures
+        List<String> urls = []
+        byte[] sentBody
+        boolean compressed
+        byte[] responseBytes
+
+        TestRequestExecutor(ServerSelector serverSelector) {
+            super(serverSelector)
+            // written like HttpServiceExporter writes results
+            def response = new ByteArrayOutputStream()
+            def oos = new ObjectOutputStream(response)
+            SerializationSupport.serialize(new RemoteInvocationResult('ok'), oos)
+            oos.flush()
+            responseBytes = response.toByteArray()
+        }
+
+        @Override
+        protected InputStream executeRequest(HttpInvokerClientConfiguration config, String url,
+                                             ByteArrayOutputStream body, boolean compressed) throws IOException {
+            urls.add(url)
+            if (failures > 0) {
+                failures--
+                throw new IOException('Connection refused')
+            }
+            this.sentBody = body.toByteArray()
+            this.compressed = compressed
+            return new ByteArrayInputStream(responseBytes)
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package spec.cuba.core.user_sessions
+
+import com.haulmont.cuba.core.app.ClusterManagerAPI
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.Configuration
+import com.haulmont.cuba.core.global.TimeSource
+import com.haulmont.cuba.security.app.UserSessionLog
+import com.haulmont.cuba.security.app.UserSessions
+import com.haulmont.cuba.security.entity.User
+import com.haulmont.cuba.security.global.UserSession
+import com.haulmont.cuba.testsupport.TestContainer
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class UserSessionsTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private UserSessions userSessions
+    private ClusterManagerAPI clusterManager
+    private long now = 1_000_000_000L
+
+    void setup() {
+        clusterManager = Mock(ClusterManagerAPI)
+        userSessions = new UserSessions()
+        userSessions.timeSource = Mock(TimeSource) {
+            currentTimeMillis() >> { now }
+        }
+        userSessions.userSessionLog = Mock(UserSessionLog)
+        userSessions.setConfiguration(AppBeans.get(Configuration))
+        userSessions.setClusterManager(clusterManager)
+        userSessions.setExpirationTimeoutSec(60)
+    }
+
+    def "sessions are found by user and substituted user"() {
+        def user1 = createUser('user1')
+        def user2 = createUser('user2')
+
+        def session1 = createSession(user1)
+        def session2 = createSession(user2)
+        session2.setSubstitutedUser(user1)
+
+        when:
+
+        userSessions.add(session1)
+        userSessions.add(session2)
+
+        then:
+
+        userSessions.findUserSessionsByUser(user1.id) as Set == [session1.id, session2.id] as Set
+        userSessions.findUserSessionsByUser(user2.id) == [session2.id]
+
+        when:
+
+        userSessions.remove(session1)
+
+        then:
+
+        userSessions.findUserSessionsByUser(user1.id) == [session2.id]
+    }
+
+    def "only expired sessions are evicted"() {
+        def session1 = createSession(createUser('user1'))
+        def session2 = createSession(createUser('user2'))
+
+        userSessions.add(session1)
+        userSessions.add(session2)
+
+        when:
+
+        now += 50_000
+        userSessions.getAndRefresh(session2.id)
+        now += 20_000
+        userSessions.processEviction()
+
+        then:
+
+        userSessions.get(session1.id) == null
+        userSessions.get(session2.id) == session2
+        1 * clusterManager.send({ it instanceof UserSessions.UserSessionsTouch && it.lastUsedTs == [(session1.id): 0L] })
+
+        when:
+
+        now += 60_000
+        userSessions.processEviction()
+
+        then:
+
+        userSessions.get(session2.id) == null
+        userSessions.expiryBuckets.isEmpty()
+        userSessions.userIndex.isEmpty()
+    }
+
+    def "received touches only move existing sessions forward"() {
+        def session = createSession(createUser('user1'))
+        def unknownId = UUID.randomUUID()
+        userSessions.add(session)
+        def lastUsedTs = userSessions.getSessionInfo(session.id).lastUsedTs
+
+        when: 'a touch older than the local one arrives'
+
+        userSessions.receiveClusterTouch(new UserSessions.UserSessionsTouch([(session.id): lastUsedTs - 1000]))
+
+        then:
+
+        userSessions.getSessionInfo(session.id).lastUsedTs == lastUsedTs
+
+        when: 'a newer touch arrives'
+
+        userSessions.receiveClusterTouch(new UserSessions.UserSessionsTouch([(session.id): lastUsedTs + 5000]))
+
+        then:
+
+        userSessions.getSessionInfo(session.id).lastUsedTs == lastUsedTs + 5000
+
+        when: 'a touch of an unknown session arrives'
+
+        userSessions.receiveClusterTouch(new UserSessions.UserSessionsTouch([(unknownId): now]))
+
+        then:
+
+        userSessions.get(unknownId) == null
+    }
+
+    def "received removals are not undone by late touches"() {
+        def session1 = createSession(createUser('user1'))
+        def session2 = createSession(createUser('user2'))
+        userSessions.add(session1)
+        userSessions.add(session2)
+
+        when:
+
+        userSessions.receiveClusterTouch(new UserSessions.UserSessionsTouch([(session1.id): 0L, (session2.id): now + 2000]))
+
+        then:
+
+        userSessions.get(session1.id) == null
+        userSessions.getSessionInfo(session2.id).lastUsedTs == now + 2000
+        userSessions.findUserSessionsByUser(session1.user.id).isEmpty()
+
+        when: 'a touch sent before the removal arrives late'
+
+        userSessions.receiveClusterTouch(new UserSessions.UserSessionsTouch([(session1.id): now + 3000]))
+
+        then:
+
+        userSessions.get(session1.id) == null
+    }
+
+    def "touches are sent in one message not more often than the send timeout"() {
+        userSessions.setSendTimeoutSec(10)
+        def session1 = createSession(createUser('user1'))
+        def session2 = createSession(createUser('user2'))
+        def session3 = createSession(createUser('user3'))
+        userSessions.add(session1)
+        userSessions.add(session2)
+        userSessions.add(session3)
+
+        when: 'sessions are refreshed after the send timeout'
+
+        now += 11_000
+        userSessions.getAndRefresh(session1.id, true)
+        userSessions.getAndRefresh(session3.id, true)
+        userSessions.sendTouches()
+
+        then:
+
+        1 * clusterManager.send({ it instanceof UserSessions.UserSessionsTouch
+                && it.lastUsedTs == [(session1.id): now, (session3.id): now] })
+
+        when: 'another session is refreshed right after sending'
+
+        now += 1_000
+        userSessions.getAndRefresh(session2.id, true)
+        userSessions.sendTouches()
+
+        then: 'its touch waits for the send timeout'
+
+        0 * clusterManager.send(_)
+
+        when:
+
+        now += 10_000
+        userSessions.sendTouches()
+
+        then:
+
+        1 * clusterManager.send({ it instanceof UserSessions.UserSessionsTouch
+                && it.lastUsedTs == [(session2.id): now - 10_000] })
+
+        when: 'nothing is refreshed'
+
+        now += 11_000
+        userSessions.sendTouches()
+
+        then:
+
+        0 * clusterManager.send(_)
+    }
+
+    def "removed sessions are not sent as touches"() {
+        userSessions.setSendTimeoutSec(10)
+        def session = createSession(createUser('user1'))
+        userSessions.add(session)
+
+        when:
+
+        now += 11_000
+        userSessions.getAndRefresh(session.id, true)
+        userSessions.remove(session)
+        now += 11_000
+        userSessions.sendTouches()
+
+        then:
+
+        1 * clusterManager.send({ it instanceof UserSessions.UserSessionsTouch && it.lastUsedTs == [(session.id): 0L] })
+        0 * clusterManager.send(_)
+    }
+
+    private static User createUser(String login) {
+        def user = new User()
+        user.login = login
+        return user
+    }
+
+    private static UserSession createSession(User user) {
+        return new UserSession(UUID.randomUUID(), user, Collections.emptyList(), Locale.ENGLISH, false)
+    }
+}
@@ -33,6 +33,12 @@ public interface ConfigStorageService {
 
     Map<String, String> getDbProperties();
 
+    /**
+     * @return version of the properties returned by {@link #getDbProperties()}. It changes when the properties are
+     * changed, so clients can check it instead of loading all properties.
+     */
+    long getDbPropertiesVersion();
+
     String getDbProperty(String name);
 
     void setDbProperty(String name, @Nullable String value);
@@ -34,6 +34,10 @@ public interface EntityImportExportService {
      * EntitySerializationAPI} and packs the JSON file into ZIP archive.</p> <p>Serialization is described in the {@link
      * com.haulmont.cuba.core.app.serialization.EntitySerializationAPI#toJson(Collection)
      * EntitySerializationAPI#toJson(Collection)} method documentation</p>
+     * <p>The JSON file is written by {@link com.haulmont.cuba.core.app.serialization.EntitySerializationAPI#writeJson
+     * EntitySerializationAPI#writeJson}: the archive entry is deflated instead of stored, and repeated entities are
+     * compacted only inside the object graph of each exported entity, not across the whole array. Such archives are
+     * imported by {@link #importEntitiesFromZIP(byte[], EntityImportView)} as before.</p>
      *
      * @param entities a collection of entities to export
      * @return a byte array of zipped JSON file
@@ -137,4 +141,23 @@ public interface EntityImportExportService {
      */
     Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate,
                                       boolean optimisticLocking);
+
+    /**
+     * Persists entities in the same way as {@link #importEntities(Collection, EntityImportView, boolean, boolean)},
+     * but commits them by separate transactions, each containing at most {@code batchSize} of the passed entities.
+     * Progress and throughput of the import are logged after each batch.
+     * <p>
+     * The import is not atomic: batches committed before a failure remain in the database. An entity can reference
+     * entities imported in the same or previous batches only.
+     *
+     * @param importView {@code EntityImportView} with the rules that describes how entities should be persisted.
+     * @param validate   whether the passed entities should be validated by the {@link com.haulmont.cuba.core.global.BeanValidation}
+     *                   mechanism before entities are persisted
+     * @param optimisticLocking    whether the passed entities versions should be validated before entities are persisted
+     * @param batchSize  maximum number of the passed entities committed in one transaction. If not positive, all
+     *                   entities are committed in one transaction
+     * @return a collection of entities that have been imported
+     */
+    Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView, boolean validate,
+                                      boolean optimisticLocking, int batchSize);
 }
@@ -22,6 +22,7 @@ import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.View;
 
 import javax.annotation.Nullable;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.util.Collection;
 
@@ -87,6 +88,25 @@ public interface EntitySerializationAPI {
      */
     String toJson(Collection<? extends Entity> entities);
 
+    /**
+     * Serializes entities to the JSON array and writes it to the given writer. Entities are serialized one by one as
+     * they are obtained from the {@code entities} iterable, so it can lazily load entities and the whole JSON is never
+     * kept in memory.
+     * <p>
+     * Works like the {@link #toJson(Collection, View, EntitySerializationOption...)}, except that the
+     * {@link EntitySerializationOption#COMPACT_REPEATED_ENTITIES} option compacts repeated entities only inside the
+     * object graph of each element of the array.
+     *
+     * @param entities entities to be serialized
+     * @param writer   writer to write the JSON array to. It is flushed but not closed
+     * @param view     a view that defines which entity properties should be added to the result JSON object
+     * @param options  options specifying how an entity should be serialized
+     */
+    void writeJson(Iterable<? extends Entity> entities,
+                   Writer writer,
+                   @Nullable View view,
+                   EntitySerializationOption... options);
+
     /**
      * Serializes any custom POJO or collection of POJOs or JSON. If some field in POJO is an entity then this field
      * will be serialized according to entity serialization rules. Date fields are serialized according to the format of
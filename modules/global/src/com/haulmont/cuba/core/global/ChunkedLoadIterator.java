@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.global;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator over query results which are loaded by chunks when the consumer reaches the end of the previous chunk.
+ * So only one chunk is kept in memory on both the middleware and the client tiers.
+ *
+ * @param <T> type of loaded instances
+ * @see DataManager#loadListStream(LoadContext, int)
+ * @see DataManager#loadValuesStream(ValueLoadContext, int)
+ */
+public class ChunkedLoadIterator<T> implements Iterator<T> {
+
+    /**
+     * Loads a chunk of results.
+     */
+    @FunctionalInterface
+    public interface ChunkLoader<T> {
+        /**
+         * @param firstResult offset of the chunk
+         * @param maxResults  maximum size of the chunk
+         * @param last        last instance of the previous chunk, or null for the first chunk
+         * @return chunk of results, smaller than {@code maxResults} if there are no more results
+         */
+        List<T> load(int firstResult, int maxResults, @Nullable T last);
+    }
+
+    protected final ChunkLoader<T> loader;
+    protected final int chunkSize;
+    protected final int limit;
+
+    protected int nextFirstResult;
+    protected int loaded;
+    protected Iterator<T> chunkIterator = Collections.emptyIterator();
+    protected T last;
+    protected boolean exhausted;
+
+    /**
+     * @param loader      loader of chunks
+     * @param chunkSize   maximum number of instances loaded at once
+     * @param firstResult offset of the first chunk
+     * @param maxResults  maximum number of instances to load in total, 0 for no limit
+     */
+    public ChunkedLoadIterator(ChunkLoader<T> loader, int chunkSize, int firstResult, int maxResults) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.loader = loader;
+        this.chunkSize = chunkSize;
+        this.nextFirstResult = firstResult;
+        this.limit = maxResults > 0 ? maxResults : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Creates a sequential ordered stream over the results loaded by chunks.
+     */
+    public static <T> Stream<T> stream(ChunkLoader<T> loader, int chunkSize, int firstResult, int maxResults) {
+        Iterator<T> iterator = new ChunkedLoadIterator<>(loader, chunkSize, firstResult, maxResults);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (chunkIterator.hasNext()) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        loadNextChunk();
+        return chunkIterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        last = chunkIterator.next();
+        return last;
+    }
+
+    protected void loadNextChunk() {
+        int maxResults = Math.min(chunkSize, limit - loaded);
+        if (maxResults <= 0) {
+            exhausted = true;
+            return;
+        }
+        List<T> chunk = loader.load(nextFirstResult, maxResults, last);
+        loaded += chunk.size();
+        nextFirstResult += chunk.size();
+        if (chunk.size() < maxResults) {
+            exhausted = true;
+        }
+        chunkIterator = chunk.iterator();
+    }
+}
@@ -27,6 +27,7 @@ import com.haulmont.cuba.core.entity.contracts.Id;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Central interface to provide CRUD functionality. Can be used on both middle and client tiers.
@@ -176,6 +177,67 @@ public interface DataManager {
     @CheckReturnValue
     List<KeyValueEntity> loadValues(ValueLoadContext context);
 
+    /**
+     * Loads entity instances by chunks as the returned stream is consumed, so the whole result is never kept
+     * in memory. Each chunk is loaded by {@link #loadList(LoadContext)} in a separate transaction.
+     * <p>
+     * Chunks are loaded in the keyset pagination mode (see {@link LoadContext.Query#setKeysetPagination(boolean)})
+     * if it is requested by the context query, or if the query starts from the first result and its order is defined
+     * by {@link LoadContext.Query#setSort(Sort)} or not defined at all. Otherwise chunks are loaded by offsets,
+     * so the order of a query with its own ORDER BY clause is preserved.
+     * @param context   {@link LoadContext} object, defining what and how to load
+     * @param chunkSize maximum number of instances loaded at once
+     * @return lazily populated stream of the loaded detached instances
+     */
+    @CheckReturnValue
+    @SuppressWarnings("unchecked")
+    default <E extends Entity> Stream<E> loadListStream(LoadContext<E> context, int chunkSize) {
+        LoadContext.Query query = context.getQuery();
+        if (query == null) {
+            return loadList(context).stream();
+        }
+        LoadContext<E> chunkContext = (LoadContext<E>) context.copy();
+        LoadContext.Query chunkQuery = chunkContext.getQuery();
+        boolean keyset = query.isKeysetPagination();
+        if (!keyset && query.getFirstResult() == 0) {
+            keyset = query.getSort() != null
+                    || !AppBeans.get(QueryTransformerFactory.class).parser(query.getQueryString()).hasOrderBy();
+        }
+        chunkQuery.setKeysetPagination(keyset);
+
+        return ChunkedLoadIterator.stream((firstResult, maxResults, last) -> {
+            chunkQuery.setFirstResult(firstResult);
+            chunkQuery.setMaxResults(maxResults);
+            if (keyset && last != null) {
+                chunkQuery.setAfterId(last.getId());
+            }
+            return loadList(chunkContext);
+        }, chunkSize, query.getFirstResult(), query.getMaxResults());
+    }
+
+    /**
+     * Loads key-value pairs by chunks as the returned stream is consumed, so the whole result is never kept
+     * in memory. Each chunk is loaded by {@link #loadValues(ValueLoadContext)} in a separate transaction.
+     * @param context   defines a query for scalar values and a list of keys for returned KeyValueEntity
+     * @param chunkSize maximum number of instances loaded at once
+     * @return lazily populated stream of KeyValueEntity instances
+     */
+    @CheckReturnValue
+    default Stream<KeyValueEntity> loadValuesStream(ValueLoadContext context, int chunkSize) {
+        ValueLoadContext.Query query = context.getQuery();
+        if (query == null) {
+            return loadValues(context).stream();
+        }
+        ValueLoadContext chunkContext = context.copy();
+        ValueLoadContext.Query chunkQuery = chunkContext.getQuery();
+
+        return ChunkedLoadIterator.stream((firstResult, maxResults, last) -> {
+            chunkQuery.setFirstResult(firstResult);
+            chunkQuery.setMaxResults(maxResults);
+            return loadValues(chunkContext);
+        }, chunkSize, query.getFirstResult(), query.getMaxResults());
+    }
+
     /**
      * By default, DataManager does not apply security restrictions on entity operations and attributes, only row-level
      * constraints take effect.
@@ -185,6 +185,15 @@ public interface GlobalConfig extends Config {
     @DefaultInt(100)
     int getNumberIdCacheSize();
 
+    /**
+     * @return number of remaining cached ids at which the next block of {@code cuba.numberIdCacheSize} ids is requested
+     * from the sequence in background. The threshold is raised automatically if ids are allocated faster than the
+     * sequence responds. 0 disables prefetching.
+     */
+    @Property("cuba.numberIdCachePrefetchThreshold")
+    @DefaultInt(0)
+    int getNumberIdCachePrefetchThreshold();
+
     @Property("cuba.anonymousSessionId")
     @Factory(factory = UuidTypeFactory.class)
     @Nullable
@@ -277,4 +286,11 @@ public interface GlobalConfig extends Config {
     @Property("cuba.rememberMeExpirationTimeoutSec")
     @DefaultInt(30 * 24 * 60 * 60)
     int getRememberMeExpirationTimeoutSec();
+
+    /**
+     * @return maximum number of parsed JPQL queries kept by {@code QueryTreeCache}. 0 disables caching.
+     */
+    @Property("cuba.queryTreeCacheSize")
+    @DefaultInt(1000)
+    int getQueryTreeCacheSize();
 }
\ No newline at end of file
@@ -359,6 +359,8 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
         private boolean cacheable;
         private Condition condition;
         private Sort sort;
+        private boolean keysetPagination;
+        private Object afterId;
 
         /**
          * @param queryString JPQL query string. Only named parameters are supported.
@@ -519,6 +521,49 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             return cacheable;
         }
 
+        /**
+         * @return whether the keyset pagination mode is enabled
+         * @see #setKeysetPagination(boolean)
+         */
+        public boolean isKeysetPagination() {
+            return keysetPagination;
+        }
+
+        /**
+         * Enables the keyset (seek) pagination mode. In this mode, the results are ordered by the {@link #getSort() sort}
+         * properties and the primary key, and the pages are loaded by conditions on these values instead of offsets.
+         * Use {@link #setAfterId(Object)} to specify the last instance of the previous page; {@code firstResult} is
+         * ignored in this mode.
+         * <p>
+         * The mode is applied only to entity queries sorted in one direction by mandatory persistent datatype
+         * properties of entities with a simple primary key. Otherwise, the query is executed in the regular mode.
+         *
+         * @return this query instance for chaining
+         */
+        public Query setKeysetPagination(boolean keysetPagination) {
+            this.keysetPagination = keysetPagination;
+            return this;
+        }
+
+        /**
+         * @return identifier of the instance after which the results start in the keyset pagination mode
+         */
+        @Nullable
+        public Object getAfterId() {
+            return afterId;
+        }
+
+        /**
+         * @param afterId identifier of the last instance of the previous page in the keyset pagination mode,
+         *                or null to load the first page
+         * @return this query instance for chaining
+         * @see #setKeysetPagination(boolean)
+         */
+        public Query setAfterId(@Nullable Object afterId) {
+            this.afterId = afterId;
+            return this;
+        }
+
         @Nullable
         public String[] getNoConversionParams() {
             return noConversionParams;
@@ -535,6 +580,8 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             query.cacheable = cacheable;
             query.condition = condition == null ? null : condition.copy();
             query.sort = sort;
+            query.keysetPagination = keysetPagination;
+            query.afterId = afterId;
             return query;
         }
 
@@ -547,6 +594,8 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
 
             if (firstResult != query.firstResult) return false;
             if (maxResults != query.maxResults) return false;
+            if (keysetPagination != query.keysetPagination) return false;
+            if (!Objects.equals(afterId, query.afterId)) return false;
             if (!parameters.equals(query.parameters)) return false;
             return queryString.equals(query.queryString);
         }
@@ -557,6 +606,8 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             result = 31 * result + queryString.hashCode();
             result = 31 * result + firstResult;
             result = 31 * result + maxResults;
+            result = 31 * result + (keysetPagination ? 1 : 0);
+            result = 31 * result + Objects.hashCode(afterId);
             return result;
         }
 
@@ -568,6 +619,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
                     ", sort=" + sort +
                     ", firstResult=" + firstResult +
                     ", maxResults=" + maxResults +
+                    (keysetPagination ? ", afterId=" + afterId : "") +
                     "}";
             return StringHelper.removeExtraSpaces(stringResult.replace('\n', ' '));
         }
@@ -60,6 +60,11 @@ public interface QueryParser {
      */
     boolean isQueryWithJoins();
 
+    /**
+     * Returns true if the main query has an ORDER BY clause
+     */
+    boolean hasOrderBy();
+
     /**
      * @return Entity name if not main entity name is returned, otherwise null
      * Example: select u.group from sec$User u -&gt; sec$Group
@@ -30,6 +30,7 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import javax.inject.Inject;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -43,6 +44,9 @@ public class QueryParserAstBased implements QueryParser {
     protected QueryTree queryTree;
     protected QueryTreeAnalyzer queryAnalyzer;
 
+    @Inject
+    protected QueryTreeCache queryTreeCache;
+
     protected static class EntityNameAndPath {
         String entityName;
         String entityPath;
@@ -66,19 +70,26 @@ public class QueryParserAstBased implements QueryParser {
 
     protected QueryTree getTree() {
         if (queryTree == null) {
-            try {
-                queryTree = new QueryTree(model, query);
-            } catch (JPA2RecognitionException e) {
-                throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]\n%s", StringUtils.strip(query), e.getMessage()));
-            }
-            List<ErrorRec> errors = new ArrayList<>(queryTree.getInvalidIdVarNodes());
-            if (!errors.isEmpty()) {
-                throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]", StringUtils.strip(query)), errors);
+            if (queryTreeCache != null) {
+                // the cached tree is shared and must not be modified, see getTreeCopy()
+                queryTree = queryTreeCache.getTree(model, query);
+            } else {
+                queryTree = QueryTreeCache.parse(model, query);
             }
         }
         return queryTree;
     }
 
+    /**
+     * Returns a tree which can be modified by the parser, e.g. by setting rendering flags of nodes.
+     */
+    protected QueryTree getTreeCopy() {
+        if (queryTreeCache != null) {
+            return queryTreeCache.getTreeCopy(model, query);
+        }
+        return getTree();
+    }
+
     protected QueryTreeAnalyzer getAnalyzer() {
         if (queryAnalyzer == null) {
             queryAnalyzer = new QueryTreeAnalyzer(getTree());
@@ -154,6 +165,11 @@ public class QueryParserAstBased implements QueryParser {
         return getAnalyzer().isQueryWithJoins();
     }
 
+    @Override
+    public boolean hasOrderBy() {
+        return getTree().getAstOrderByNode() != null;
+    }
+
     @Override
     public String getOriginalEntityName() {
         EntityNameAndPath entityNameAndAlias = getOriginEntityNameAndPath();
@@ -205,7 +221,7 @@ public class QueryParserAstBased implements QueryParser {
 
     @Override
     public List<String> getSelectedExpressionsList() {
-        return getTree().getAstSelectedNodes()
+        return getTreeCopy().getAstSelectedNodes()
                 .map(node -> {
                     TreeToQuery toQuery = new TreeToQuery();
                     node.setSkipSeparator(true);
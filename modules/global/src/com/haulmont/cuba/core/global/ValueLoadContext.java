@@ -178,6 +178,21 @@ public class ValueLoadContext implements DataLoadContext, Serializable {
         return this;
     }
 
+    /**
+     * Creates a copy of this ValueLoadContext instance.
+     */
+    public ValueLoadContext copy() {
+        ValueLoadContext ctx = new ValueLoadContext();
+        ctx.storeName = storeName;
+        ctx.query = query != null ? query.copy() : null;
+        ctx.softDeletion = softDeletion;
+        ctx.idName = idName;
+        ctx.properties.addAll(properties);
+        ctx.authorizationRequired = authorizationRequired;
+        ctx.joinTransaction = joinTransaction;
+        return ctx;
+    }
+
     @Override
     public String toString() {
         return String.format("ValuesContext{query=%s, softDeletion=%s, keys=%s}", query, softDeletion, properties);
@@ -343,6 +358,20 @@ public class ValueLoadContext implements DataLoadContext, Serializable {
             return noConversionParams;
         }
 
+        /**
+         * Creates a copy of this Query instance.
+         */
+        public Query copy() {
+            Query query = new Query(queryString);
+            query.parameters.putAll(parameters);
+            query.firstResult = firstResult;
+            query.maxResults = maxResults;
+            query.noConversionParams = noConversionParams != null ? noConversionParams.clone() : null;
+            query.condition = condition != null ? condition.copy() : null;
+            query.sort = sort;
+            return query;
+        }
+
         @Override
         public String toString() {
             String stringResult = "Query{" +
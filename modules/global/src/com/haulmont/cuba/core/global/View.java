@@ -25,6 +25,7 @@ import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static org.apache.commons.collections4.CollectionUtils.isNotEmpty;
 
@@ -100,10 +101,21 @@ public class View implements Serializable {
 
     private String name;
 
-    private Map<String, ViewProperty> properties = new LinkedHashMap<>();
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<View, Map> PROPERTIES_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(View.class, Map.class, "properties");
+
+    private volatile Map<String, ViewProperty> properties = new LinkedHashMap<>();
 
     private boolean loadPartialEntities;
 
+    private transient boolean sealed;
+
+    /**
+     * Property map of a view stored in {@link ViewRepository} while it is shared by this view.
+     */
+    private transient Map<String, ViewProperty> sharedProperties;
+
     public View(Class<? extends Entity> entityClass) {
         this(entityClass, "", true);
     }
@@ -166,9 +178,18 @@ public class View implements Serializable {
                 View sourcePropertyView = sourceProperty.getView();
 
                 if (sourcePropertyView != null && isNotEmpty(sourcePropertyView.getProperties())) {
-
-                    Map<String, ViewProperty> thisViewProperties = thisProperties.get(sourcePropertyName).getView().properties;
-                    putProperties(thisViewProperties, sourcePropertyView.getProperties());
+                    // the existing property view can belong to another view, so merge into its copy
+                    ViewProperty thisProperty = thisProperties.get(sourcePropertyName);
+                    View thisPropertyView = thisProperty.getView();
+                    View mergedView = new View(new ViewParams()
+                            .entityClass(thisPropertyView.getEntityClass())
+                            .name(thisPropertyView.getName()));
+                    mergedView.properties.putAll(thisPropertyView.ownProperties());
+                    mergedView.loadPartialEntities = thisPropertyView.loadPartialEntities;
+
+                    putProperties(mergedView.properties, sourcePropertyView.getProperties());
+                    thisProperties.put(sourcePropertyName,
+                            new ViewProperty(sourcePropertyName, mergedView, thisProperty.getFetchMode()));
                 }
 
             } else {
@@ -187,6 +208,13 @@ public class View implements Serializable {
                 .entityClass(view.getEntityClass())
                 .name(view.getName());
         View copy = new View(viewParams);
+        Map<String, ViewProperty> viewProperties = view.properties;
+        if (viewProperties == view.sharedProperties) {
+            // the view is not modified since it was returned by ViewRepository, so the copy shares the same properties
+            copy.properties = viewProperties;
+            copy.sharedProperties = viewProperties;
+            return copy;
+        }
         for (ViewProperty property : view.getProperties()) {
             copy.addProperty(property.getName(), copy(property.getView()), property.getFetchMode());
         }
@@ -212,7 +240,7 @@ public class View implements Serializable {
      * @return collection of properties
      */
     public Collection<ViewProperty> getProperties() {
-        return properties.values();
+        return ownProperties().values();
     }
 
     /**
@@ -223,12 +251,14 @@ public class View implements Serializable {
      * @return      this view instance for chaining
      */
     public View addProperty(String name, @Nullable View view, FetchMode fetchMode) {
+        beforeModification();
         properties.put(name, new ViewProperty(name, view, fetchMode));
         return this;
     }
 
     @Deprecated
     public View addProperty(String name, @Nullable View view, boolean lazy) {
+        beforeModification();
         properties.put(name, new ViewProperty(name, view, lazy));
         return this;
     }
@@ -240,6 +270,7 @@ public class View implements Serializable {
      * @return      this view instance for chaining
      */
     public View addProperty(String name, View view) {
+        beforeModification();
         properties.put(name, new ViewProperty(name, view));
         return this;
     }
@@ -250,6 +281,7 @@ public class View implements Serializable {
      * @return      this view instance for chaining
      */
     public View addProperty(String name) {
+        beforeModification();
         properties.put(name, new ViewProperty(name, null));
         return this;
     }
@@ -283,7 +315,7 @@ public class View implements Serializable {
      */
     @Nullable
     public ViewProperty getProperty(String name) {
-        return properties.get(name);
+        return ownProperties().get(name);
     }
 
     /**
@@ -313,10 +345,84 @@ public class View implements Serializable {
      * @return this view instance for chaining
      */
     public View setLoadPartialEntities(boolean loadPartialEntities) {
+        // the flag is not shared with other views, so the properties are not copied
+        checkNotSealed();
         this.loadPartialEntities = loadPartialEntities;
         return this;
     }
 
+    /**
+     * @return true if this view is stored in {@link ViewRepository} and cannot be modified. Views returned by
+     * {@link ViewRepository} and views of their properties are never sealed.
+     */
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    protected void beforeModification() {
+        checkNotSealed();
+        ownProperties();
+    }
+
+    private void checkNotSealed() {
+        if (sealed) {
+            throw new IllegalStateException(String.format("View %s is shared by ViewRepository and cannot be modified. " +
+                    "Use View.copy() to create a modifiable view", this));
+        }
+    }
+
+    private Map<String, ViewProperty> ownProperties() {
+        Map<String, ViewProperty> currentProperties = properties;
+        if (currentProperties != sharedProperties) {
+            return currentProperties;
+        }
+        // views of the shared properties are sealed, so they are shared the same way
+        Map<String, ViewProperty> ownProperties = new LinkedHashMap<>();
+        for (ViewProperty property : currentProperties.values()) {
+            View view = property.getView();
+            ownProperties.put(property.getName(), view == null ? property
+                    : new ViewProperty(property.getName(), view.shareProperties(), property.getFetchMode()));
+        }
+        // concurrent readers of the same view must get the same nested views, so the first copy wins
+        PROPERTIES_UPDATER.compareAndSet(this, currentProperties, ownProperties);
+        return properties;
+    }
+
+    void seal() {
+        if (sealed) {
+            return;
+        }
+        sealed = true;
+        for (ViewProperty property : properties.values()) {
+            View view = property.getView();
+            if (view != null) {
+                view.seal();
+            }
+        }
+    }
+
+    @Nullable
+    Map<String, ViewProperty> getStoredProperties() {
+        Map<String, ViewProperty> currentProperties = properties;
+        return sealed || currentProperties == sharedProperties ? currentProperties : null;
+    }
+
+    View shareProperties() {
+        View view = new View(new ViewParams().entityClass(entityClass).name(name));
+        view.properties = properties;
+        view.sharedProperties = view.properties;
+        view.loadPartialEntities = loadPartialEntities;
+        return view;
+    }
+
+    void replaceProperty(ViewProperty property) {
+        // readers may iterate the current map without a lock, so the property is put to a new one
+        // which is published through the volatile field
+        Map<String, ViewProperty> newProperties = new LinkedHashMap<>(properties);
+        newProperties.put(property.getName(), property);
+        properties = newProperties;
+    }
+
     /**
      * DEPRECATED since v.6
      */
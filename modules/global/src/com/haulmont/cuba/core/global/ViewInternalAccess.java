@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.global;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * INTERNAL
+ */
+public final class ViewInternalAccess {
+
+    private ViewInternalAccess() {
+    }
+
+    /**
+     * Makes the view and all views referenced by its properties immutable.
+     */
+    public static void seal(View view) {
+        view.seal();
+    }
+
+    /**
+     * Creates a view which shares properties with the given one and copies them on the first modification.
+     */
+    public static View shareProperties(View view) {
+        return view.shareProperties();
+    }
+
+    /**
+     * Returns the property map of a view stored in {@link ViewRepository} if the given view is stored or shares
+     * the stored properties and is not modified. Views with the same stored properties have the same structure.
+     */
+    @Nullable
+    public static Map<String, ViewProperty> getStoredProperties(View view) {
+        return view.getStoredProperties();
+    }
+
+    /**
+     * Adds or replaces a property of the view even if it is sealed.
+     */
+    public static void replaceProperty(View view, ViewProperty property) {
+        view.replaceProperty(property);
+    }
+}
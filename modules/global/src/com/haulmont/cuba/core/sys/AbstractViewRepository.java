@@ -43,6 +43,7 @@ import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -70,6 +71,13 @@ public class AbstractViewRepository implements ViewRepository {
 
     protected volatile boolean initialized;
 
+    /**
+     * Incremented on each change of the deployed views, used to validate lock-free reads.
+     */
+    protected final AtomicInteger version = new AtomicInteger();
+
+    protected boolean copyViews;
+
     protected ReadWriteLock lock = new ReentrantReadWriteLock();
 
     protected void checkInitialized() {
@@ -92,6 +100,9 @@ public class AbstractViewRepository implements ViewRepository {
     protected void init() {
         StopWatch initTiming = new Slf4JStopWatch("ViewRepository.init." + getClass().getSimpleName());
 
+        version.incrementAndGet();
+        copyViews = Boolean.parseBoolean(AppContext.getProperty("cuba.copyRepositoryViews"));
+
         storage.clear();
         readFileNames.clear();
 
@@ -153,6 +164,14 @@ public class AbstractViewRepository implements ViewRepository {
 
     public void reset() {
         initialized = false;
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return counter that changes each time the deployed views are changed or reset
+     */
+    public int getVersion() {
+        return version.get();
     }
 
     /**
@@ -187,7 +206,11 @@ public class AbstractViewRepository implements ViewRepository {
     }
 
     /**
-     * Searches for a View for an entity
+     * Searches for a View for an entity.
+     * <p>
+     * Deployed views are sealed and shared. The returned view and the views of its properties share the deployed
+     * properties and copy them on the first modification, so they can be modified like deep copies.
+     * Set {@code cuba.copyRepositoryViews} application property to true to get deep copies of deployed views instead.
      *
      * @param metaClass entity class
      * @param name      view name
@@ -204,17 +227,35 @@ public class AbstractViewRepository implements ViewRepository {
             return null;
         }
 
+        if (initialized) {
+            // lock-free read of an already deployed view
+            int currentVersion = version.get();
+            Map<String, View> views = storage.get(metaClass);
+            View view = views == null ? null : views.get(name);
+            if (view != null && initialized && currentVersion == version.get()) {
+                return shareView(view);
+            }
+        }
+
         lock.readLock().lock();
         try {
             checkInitialized();
 
             View view = retrieveView(metaClass, name, new HashSet<>());
-            return copyView(view);
+            return shareView(view);
         } finally {
             lock.readLock().unlock();
         }
     }
 
+    @Nullable
+    protected View shareView(@Nullable View view) {
+        if (view == null) {
+            return null;
+        }
+        return copyViews ? copyView(view) : ViewInternalAccess.shareProperties(view);
+    }
+
     protected View copyView(@Nullable View view) {
         if (view == null) {
             return null;
@@ -515,7 +556,7 @@ public class AbstractViewRepository implements ViewRepository {
 
         if (replacements != null) {
             for (ViewProperty replacement : replacements) {
-                root.addProperty(replacement.getName(), replacement.getView(), replacement.getFetchMode());
+                ViewInternalAccess.replaceProperty(root, replacement);
             }
         }
     }
@@ -546,13 +587,12 @@ public class AbstractViewRepository implements ViewRepository {
     }
 
     protected void storeView(MetaClass metaClass, View view) {
-        Map<String, View> views = storage.get(metaClass);
-        if (views == null) {
-            views = new ConcurrentHashMap<>();
-        }
+        ViewInternalAccess.seal(view);
 
+        Map<String, View> views = storage.computeIfAbsent(metaClass, k -> new ConcurrentHashMap<>());
         views.put(view.getName(), view);
-        storage.put(metaClass, views);
+        // default views are stored under the read lock, so concurrent increments are possible
+        version.incrementAndGet();
     }
 
     protected List<View> getAllInitialized() {
@@ -17,37 +17,70 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.entity.annotation.IdSequence;
 import com.haulmont.cuba.core.global.GlobalConfig;
 import com.haulmont.cuba.core.global.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Intermediate cache for generated ids of entities with long/integer PK.
  * The cache size is determined by the {@code cuba.numberIdCacheSize} app property.
+ * <p>
+ * Ids are allocated from the current block without locking. If {@code cuba.numberIdCachePrefetchThreshold} is set,
+ * the next block is requested from the sequence in background before the current block is exhausted.
  */
 @Component(NumberIdCache.NAME)
 public class NumberIdCache {
 
     public static final String NAME = "cuba_NumberIdCache";
 
+    private static final Logger log = LoggerFactory.getLogger(NumberIdCache.class);
+
     @Inject
     protected Metadata metadata;
 
+    protected ExecutorService prefetchExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("NumberIdPrefetch-%d").setDaemon(true).build());
+
+    /**
+     * Range of ids obtained by a single call of the sequence.
+     */
+    protected static class Block {
+        protected final AtomicLong counter;
+        protected final int size;
+        protected final long lastId;
+        protected long prefetchId = Long.MIN_VALUE;
+        protected long startNanos;
+
+        public Block(long sequenceValue, int size) {
+            this.counter = new AtomicLong(sequenceValue);
+            this.size = size;
+            this.lastId = sequenceValue + size;
+        }
+    }
+
     protected class Generator {
-        protected long counter;
-        protected long sequenceValue;
         protected String entityName;
         protected String sequenceName;
         protected boolean cached;
         protected NumberIdSequence numberIdSequence;
 
+        protected volatile Block block;
+        protected volatile long fetchNanos;
+        // guarded by this
+        protected Future<Block> prefetchedBlock;
+
         public Generator(String entityName,
                          String sequenceName,
                          boolean cached,
@@ -57,7 +90,7 @@ public class NumberIdCache {
             this.cached = cached;
             this.numberIdSequence = sequence;
             if (useIdCache()) {
-                createCachedCounter();
+                switchBlock(null);
             }
         }
 
@@ -65,23 +98,88 @@ public class NumberIdCache {
             return config.getNumberIdCacheSize() != 0 && cached;
         }
 
-        protected void createCachedCounter() {
-            sequenceValue = numberIdSequence.createCachedLongId(entityName, sequenceName);
-            counter = sequenceValue;
-        }
-
-        public synchronized long getNext() {
+        public long getNext() {
             if (!useIdCache()) {
                 return numberIdSequence.createLongId(entityName, sequenceName);
-            } else {
-                long next = ++counter;
-                if (next > sequenceValue + config.getNumberIdCacheSize()) {
-                    createCachedCounter();
-                    next = ++counter;
+            }
+            while (true) {
+                Block current = block;
+                if (current != null) {
+                    long next = current.counter.incrementAndGet();
+                    if (next <= current.lastId) {
+                        if (next == current.prefetchId) {
+                            prefetchNextBlock();
+                        }
+                        return next;
+                    }
+                }
+                switchBlock(current);
+            }
+        }
+
+        protected Block fetchBlock() {
+            long start = System.nanoTime();
+            long sequenceValue = numberIdSequence.createCachedLongId(entityName, sequenceName);
+            fetchNanos = System.nanoTime() - start;
+            return new Block(sequenceValue, config.getNumberIdCacheSize());
+        }
+
+        protected synchronized void prefetchNextBlock() {
+            if (prefetchedBlock == null) {
+                try {
+                    prefetchedBlock = prefetchExecutor.submit(new SecurityContextAwareCallable<>(this::fetchBlock));
+                } catch (RejectedExecutionException e) {
+                    log.debug("Unable to prefetch ids of {}: {}", entityName, e.toString());
+                }
+            }
+        }
+
+        protected synchronized void awaitPrefetch() {
+            if (prefetchedBlock != null) {
+                try {
+                    prefetchedBlock.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    // ignore
                 }
-                return next;
             }
         }
+
+        protected synchronized void switchBlock(@Nullable Block exhausted) {
+            if (block != exhausted) {
+                // another thread has already switched the block
+                return;
+            }
+            Block next = null;
+            if (prefetchedBlock != null) {
+                try {
+                    next = prefetchedBlock.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    log.warn("Unable to prefetch ids of {}", entityName, e.getCause());
+                }
+                prefetchedBlock = null;
+            }
+            if (next == null) {
+                next = fetchBlock();
+            }
+
+            long now = System.nanoTime();
+            int threshold = config.getNumberIdCachePrefetchThreshold();
+            if (threshold > 0 && next.size > 0) {
+                long remaining = threshold;
+                if (exhausted != null) {
+                    // start prefetching earlier if the ids are allocated faster than the sequence responds
+                    long elapsed = Math.max(now - exhausted.startNanos, 1);
+                    remaining = Math.max(remaining, exhausted.size * 2 * fetchNanos / elapsed);
+                }
+                next.prefetchId = next.lastId - Math.min(remaining, next.size - 1);
+            }
+            next.startNanos = now;
+            block = next;
+        }
     }
 
     protected ConcurrentMap<String, Generator> cache = new ConcurrentHashMap<>();
@@ -122,9 +220,17 @@ public class NumberIdCache {
      * INTERNAL. Used by tests.
      */
     public void reset() {
+        for (Generator generator : cache.values()) {
+            generator.awaitPrefetch();
+        }
         cache.clear();
     }
 
+    @PreDestroy
+    protected void stopPrefetchExecutor() {
+        prefetchExecutor.shutdown();
+    }
+
     protected String getCacheKey(String entityName, String sequenceName) {
         return sequenceName == null ? entityName : sequenceName;
     }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.jmx;
+
+import com.haulmont.cuba.core.sys.remoting.RemotingStatistics;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component("cuba_JmxRemotingStatisticsMBean")
+public class JmxRemotingStatistics implements JmxRemotingStatisticsMBean {
+
+    @Override
+    public String printStatistics() {
+        Map<String, RemotingStatistics.ServiceStatistics> statistics = RemotingStatistics.getStatistics();
+        if (statistics.isEmpty()) {
+            return "No invocations";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, RemotingStatistics.ServiceStatistics> entry : statistics.entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void resetStatistics() {
+        RemotingStatistics.reset();
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.jmx;
+
+import org.springframework.jmx.export.annotation.ManagedOperation;
+
+/**
+ * MBean exposing statistics of remote service invocations made from this block.
+ */
+public interface JmxRemotingStatisticsMBean {
+
+    @ManagedOperation(description = "Prints number, size and time of invocations by services")
+    String printStatistics();
+
+    @ManagedOperation(description = "Resets accumulated statistics")
+    void resetStatistics();
+}
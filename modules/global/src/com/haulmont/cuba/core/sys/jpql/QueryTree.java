@@ -57,6 +57,22 @@ public class QueryTree {
         new TreeVisitor().visit(tree, idVarSelector);
     }
 
+    protected QueryTree(QueryTree source) {
+        this.model = source.model;
+        this.queryString = source.queryString;
+        this.tree = BaseCustomNode.dupTree(source.tree);
+
+        this.idVarSelector = new IdVarSelector(model);
+        new TreeVisitor().visit(tree, idVarSelector);
+    }
+
+    /**
+     * @return a deep copy of this tree that can be modified without affecting the original one
+     */
+    public QueryTree copy() {
+        return new QueryTree(this);
+    }
+
     public DomainModel getModel() {
         return model;
     }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.sys.jpql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.GlobalConfig;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Caches parsed {@link QueryTree}s by JPQL string, so the query parsers and transformers created for the same query
+ * within one load operation share a single parsing result.
+ * <p>
+ * Cached trees are shared and must not be modified. {@link #getTree(DomainModel, String)} is intended for read-only
+ * analysis, {@link #getTreeCopy(DomainModel, String)} returns a private copy which can be transformed.
+ * <p>
+ * The size of the cache is defined by {@link GlobalConfig#getQueryTreeCacheSize()}.
+ */
+@Component(QueryTreeCache.NAME)
+public class QueryTreeCache {
+
+    public static final String NAME = "cuba_QueryTreeCache";
+
+    protected Cache<Key, QueryTree> cache;
+
+    protected int maxSize;
+
+    @Inject
+    public QueryTreeCache(Configuration configuration) {
+        this(configuration.getConfig(GlobalConfig.class).getQueryTreeCacheSize());
+    }
+
+    public QueryTreeCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the shared parsed tree of the query, parsing it if it is not cached yet.
+     *
+     * @throws JpqlSyntaxException if the query is invalid
+     */
+    public QueryTree getTree(DomainModel model, String query) {
+        if (maxSize <= 0) {
+            return parse(model, query);
+        }
+        Key key = new Key(model, query);
+        QueryTree queryTree = cache.getIfPresent(key);
+        if (queryTree == null) {
+            queryTree = parse(model, query);
+            cache.put(key, queryTree);
+        }
+        return queryTree;
+    }
+
+    /**
+     * Returns a copy of the parsed tree of the query which can be modified by the caller.
+     *
+     * @throws JpqlSyntaxException if the query is invalid
+     */
+    public QueryTree getTreeCopy(DomainModel model, String query) {
+        if (maxSize <= 0) {
+            return parse(model, query);
+        }
+        return getTree(model, query).copy();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Parses the query without caching.
+     *
+     * @throws JpqlSyntaxException if the query is invalid
+     */
+    public static QueryTree parse(DomainModel model, String query) {
+        QueryTree queryTree;
+        try {
+            queryTree = new QueryTree(model, query);
+        } catch (JPA2RecognitionException e) {
+            throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]\n%s", StringUtils.strip(query), e.getMessage()));
+        }
+        List<ErrorRec> errors = new ArrayList<>(queryTree.getInvalidIdVarNodes());
+        if (!errors.isEmpty()) {
+            throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]", StringUtils.strip(query)), errors);
+        }
+        return queryTree;
+    }
+
+    /**
+     * Identifies a parsed query: the domain model instance and the query string.
+     */
+    protected static class Key {
+
+        protected final DomainModel model;
+        protected final String query;
+
+        public Key(DomainModel model, String query) {
+            this.model = model;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return model == key.model && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(model) + query.hashCode();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -46,6 +47,9 @@ public class QueryTransformerAstBased implements QueryTransformer {
     protected QueryTreeAnalyzer queryAnalyzer;
     protected Set<String> addedParams = new HashSet<>();
 
+    @Inject
+    protected QueryTreeCache queryTreeCache;
+
     public QueryTransformerAstBased(DomainModel model, String query) {
         this.model = model;
         this.query = query;
@@ -67,14 +71,11 @@ public class QueryTransformerAstBased implements QueryTransformer {
 
     protected QueryTree getTree() {
         if (queryTree == null) {
-            try {
-                queryTree = new QueryTree(model, query);
-            } catch (JPA2RecognitionException e) {
-                throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]\n%s", StringUtils.strip(query), e.getMessage()));
-            }
-            List<ErrorRec> errors = new ArrayList<>(queryTree.getInvalidIdVarNodes());
-            if (!errors.isEmpty()) {
-                throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]", StringUtils.strip(query)), errors);
+            if (queryTreeCache != null) {
+                // the transformer modifies the tree, so it works with a copy of the cached one
+                queryTree = queryTreeCache.getTreeCopy(model, query);
+            } else {
+                queryTree = QueryTreeCache.parse(model, query);
             }
         }
         return queryTree;
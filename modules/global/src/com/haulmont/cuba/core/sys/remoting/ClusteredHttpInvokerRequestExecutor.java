@@ -32,11 +32,13 @@ import org.springframework.util.StopWatch;
 import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * HttpInvokerRequestExecutor that executes a request on a server which is selected according to the current cluster
@@ -44,18 +46,34 @@ import java.net.URLConnection;
  */
 public class ClusteredHttpInvokerRequestExecutor extends SimpleHttpInvokerRequestExecutor {
 
+    /**
+     * Requests smaller than this size are not compressed.
+     */
+    protected static final int MIN_COMPRESSED_SIZE = 8 * 1024;
+
     private ServerSelector serverSelector;
 
+    protected int connectTimeout;
+
+    protected int readTimeout;
+
+    protected boolean compression;
+
     private static final Logger log = LoggerFactory.getLogger(ClusteredHttpInvokerRequestExecutor.class);
 
     public ClusteredHttpInvokerRequestExecutor(ServerSelector serverSelector) {
         this.serverSelector = serverSelector;
 
         String connectTimeoutProp = AppContext.getProperty("cuba.connectionTimeout");
-        setConnectTimeout(connectTimeoutProp == null ? -1 : Integer.parseInt(connectTimeoutProp));
+        connectTimeout = connectTimeoutProp == null ? -1 : Integer.parseInt(connectTimeoutProp);
+        setConnectTimeout(connectTimeout);
 
         String readTimeoutProp = AppContext.getProperty("cuba.connectionReadTimeout");
-        setReadTimeout(readTimeoutProp == null ? -1 : Integer.parseInt(readTimeoutProp));
+        readTimeout = readTimeoutProp == null ? -1 : Integer.parseInt(readTimeoutProp);
+        setReadTimeout(readTimeout);
+
+        compression = Boolean.parseBoolean(AppContext.getProperty("cuba.remotingCompression"));
+        setAcceptGzipEncoding(compression);
     }
 
     @Override
@@ -63,21 +81,25 @@ public class ClusteredHttpInvokerRequestExecutor extends SimpleHttpInvokerReques
             throws IOException, ClassNotFoundException {
 
         RemoteInvocationResult result;
+        long startTime = System.currentTimeMillis();
 
         Object context = serverSelector.initContext();
         String url = currentServiceUrl(serverSelector.getUrl(context), config);
         if (url == null)
             throw new IllegalStateException("Server URL list is empty");
 
+        ByteArrayOutputStream body = baos;
+        boolean compressed = compression && baos.size() >= MIN_COMPRESSED_SIZE;
+        if (compressed) {
+            body = compress(baos);
+        }
+
         while (true) {
-            HttpURLConnection con = openConnection(url);
             try {
                 StopWatch sw = new StopWatch();
-                prepareConnection(con, baos.size());
-                writeRequestBody(config, con, baos);
                 sw.start("waiting time");
-                validateResponse(config, con);
-                CountingInputStream responseInputStream = new CountingInputStream(readResponseBody(config, con));
+                CountingInputStream responseInputStream = new CountingInputStream(
+                        executeRequest(config, url, body, compressed));
                 sw.stop();
 
                 serverSelector.success(context);
@@ -91,6 +113,8 @@ public class ClusteredHttpInvokerRequestExecutor extends SimpleHttpInvokerReques
                     log.debug(String.format("Receiving HTTP invoker response for service at [%s], with size %s, %s", config.getServiceUrl(),
                             responseInputStream.getCount(), printStopWatch(sw)));
                 }
+                RemotingStatistics.registerInvocation(config.getServiceUrl(), baos.size(),
+                        responseInputStream.getCount(), System.currentTimeMillis() - startTime);
                 break;
             } catch (IOException e) {
                 log.info(String.format("Invocation of %s failed: %s", url, e));
@@ -102,12 +126,42 @@ public class ClusteredHttpInvokerRequestExecutor extends SimpleHttpInvokerReques
                     continue;
                 }
                 log.info("No more URL available");
+                RemotingStatistics.registerFailure(config.getServiceUrl());
                 throw e;
             }
         }
         return result;
     }
 
+    /**
+     * Sends the request to the given URL and returns the response body.
+     *
+     * @param config     HTTP invoker configuration
+     * @param url        service URL
+     * @param body       serialized request
+     * @param compressed whether the request body is compressed by gzip
+     * @return response body, decompressed if the server has compressed it
+     */
+    protected InputStream executeRequest(HttpInvokerClientConfiguration config, String url,
+                                         ByteArrayOutputStream body, boolean compressed) throws IOException {
+        HttpURLConnection con = openConnection(url);
+        prepareConnection(con, body.size());
+        if (compressed) {
+            con.setRequestProperty(HTTP_HEADER_CONTENT_ENCODING, ENCODING_GZIP);
+        }
+        writeRequestBody(config, con, body);
+        validateResponse(config, con);
+        return readResponseBody(config, con);
+    }
+
+    protected ByteArrayOutputStream compress(ByteArrayOutputStream baos) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(baos.size() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            baos.writeTo(gzip);
+        }
+        return compressed;
+    }
+
     @Nullable
     protected String currentServiceUrl(String url, HttpInvokerClientConfiguration config) {
         return url == null ? null :  url + "/" + config.getServiceUrl();
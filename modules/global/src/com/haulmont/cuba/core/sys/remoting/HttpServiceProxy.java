@@ -18,23 +18,40 @@
 package com.haulmont.cuba.core.sys.remoting;
 
 import com.haulmont.cuba.core.global.RemoteException;
+import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.remoting.discovery.ServerSelector;
 import org.springframework.remoting.httpinvoker.HttpInvokerProxyFactoryBean;
 import org.springframework.remoting.support.RemoteInvocationResult;
 import org.springframework.remoting.support.RemoteInvocationUtils;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.InvocationTargetException;
 
 public class HttpServiceProxy extends HttpInvokerProxyFactoryBean {
 
     public HttpServiceProxy(ServerSelector selector) {
+        this(selector, null);
+    }
+
+    /**
+     * @param httpClientPool pool used if the {@code cuba.remotingPooledHttpClient} application property is true
+     */
+    public HttpServiceProxy(ServerSelector selector, @Nullable RemotingHttpClientPool httpClientPool) {
         setRemoteInvocationFactory(new CubaRemoteInvocationFactory());
 
-        ClusteredHttpInvokerRequestExecutor executor = new ClusteredHttpInvokerRequestExecutor(selector);
+        ClusteredHttpInvokerRequestExecutor executor = createRequestExecutor(selector, httpClientPool);
         executor.setBeanClassLoader(getBeanClassLoader());
         setHttpInvokerRequestExecutor(executor);
     }
 
+    protected ClusteredHttpInvokerRequestExecutor createRequestExecutor(ServerSelector selector,
+                                                                        @Nullable RemotingHttpClientPool httpClientPool) {
+        if (httpClientPool != null && Boolean.parseBoolean(AppContext.getProperty("cuba.remotingPooledHttpClient"))) {
+            return new PooledHttpInvokerRequestExecutor(selector, httpClientPool);
+        }
+        return new ClusteredHttpInvokerRequestExecutor(selector);
+    }
+
     @Override
     protected Object recreateRemoteInvocationResult(RemoteInvocationResult result) throws Throwable {
         Throwable throwable = result.getException();
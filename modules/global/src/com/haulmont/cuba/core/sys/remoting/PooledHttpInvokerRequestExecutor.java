@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import com.haulmont.cuba.core.sys.remoting.discovery.ServerSelector;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.remoting.httpinvoker.HttpInvokerClientConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link ClusteredHttpInvokerRequestExecutor} that sends requests through a pooled Apache HttpClient, keeping
+ * connections to the servers alive between invocations. The client is provided by {@link RemotingHttpClientPool}
+ * shared by all service proxies of the application block.
+ * <p>
+ * Used instead of the default executor if the {@code cuba.remotingPooledHttpClient} application property is true.
+ */
+public class PooledHttpInvokerRequestExecutor extends ClusteredHttpInvokerRequestExecutor {
+
+    protected RemotingHttpClientPool httpClientPool;
+
+    protected RequestConfig requestConfig;
+
+    public PooledHttpInvokerRequestExecutor(ServerSelector serverSelector, RemotingHttpClientPool httpClientPool) {
+        super(serverSelector);
+        this.httpClientPool = httpClientPool;
+        requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .build();
+    }
+
+    @Override
+    protected InputStream executeRequest(HttpInvokerClientConfiguration config, String url,
+                                         ByteArrayOutputStream body, boolean compressed) throws IOException {
+        HttpPost post = new HttpPost(url);
+        post.setConfig(requestConfig);
+        post.setEntity(new ByteArrayEntity(body.toByteArray(), ContentType.create(getContentType())));
+        if (compressed) {
+            post.setHeader(HTTP_HEADER_CONTENT_ENCODING, ENCODING_GZIP);
+        }
+        if (isAcceptGzipEncoding()) {
+            post.setHeader(HTTP_HEADER_ACCEPT_ENCODING, ENCODING_GZIP);
+        }
+        LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+        if (localeContext != null && localeContext.getLocale() != null) {
+            post.setHeader(HTTP_HEADER_ACCEPT_LANGUAGE, localeContext.getLocale().toLanguageTag());
+        }
+
+        CloseableHttpResponse response = httpClientPool.getHttpClient().execute(post);
+        try {
+            StatusLine status = response.getStatusLine();
+            HttpEntity entity = response.getEntity();
+            if (status.getStatusCode() >= 300 || entity == null) {
+                throw new IOException("Did not receive successful HTTP response: status code = " + status.getStatusCode() +
+                        ", status message = [" + status.getReasonPhrase() + "]");
+            }
+            InputStream content = entity.getContent();
+            Header encoding = entity.getContentEncoding();
+            if (encoding != null && encoding.getValue().toLowerCase().contains(ENCODING_GZIP)) {
+                content = new GZIPInputStream(content);
+            }
+            return content;
+        } catch (IOException | RuntimeException e) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            response.close();
+            throw e;
+        }
+    }
+}
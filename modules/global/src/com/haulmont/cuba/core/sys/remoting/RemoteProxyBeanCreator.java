@@ -25,6 +25,7 @@ import org.springframework.beans.MutablePropertyValues;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.ApplicationContext;
@@ -71,6 +72,8 @@ public class RemoteProxyBeanCreator implements BeanFactoryPostProcessor, Applica
             String serviceInterface = entry.getValue();
             BeanDefinition definition = new RootBeanDefinition(HttpServiceProxy.class);
             definition.getConstructorArgumentValues().addIndexedArgumentValue(0, serverSelector);
+            definition.getConstructorArgumentValues().addIndexedArgumentValue(1,
+                    new RuntimeBeanReference(RemotingHttpClientPool.NAME));
             MutablePropertyValues propertyValues = definition.getPropertyValues();
             propertyValues.add("serviceUrl", serviceUrl);
             propertyValues.add("serviceInterface", serviceInterface);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import com.haulmont.cuba.core.sys.AppContext;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+
+/**
+ * Pooled Apache HttpClient used by {@link PooledHttpInvokerRequestExecutor}s of all service proxies of the
+ * application block. The client is created on the first invocation and closed with the application context.
+ * <p>
+ * The pool size is defined by {@code cuba.remotingMaxConnections} and {@code cuba.remotingMaxConnectionsPerRoute}.
+ */
+@Component(RemotingHttpClientPool.NAME)
+public class RemotingHttpClientPool {
+
+    public static final String NAME = "cuba_RemotingHttpClientPool";
+
+    private static final Logger log = LoggerFactory.getLogger(RemotingHttpClientPool.class);
+
+    protected CloseableHttpClient httpClient;
+
+    protected boolean closed;
+
+    /**
+     * @return the pooled HTTP client
+     * @throws IllegalStateException if the pool is already closed
+     */
+    public synchronized CloseableHttpClient getHttpClient() {
+        if (closed) {
+            throw new IllegalStateException("Remoting HTTP client pool is closed");
+        }
+        if (httpClient == null) {
+            httpClient = createHttpClient();
+        }
+        return httpClient;
+    }
+
+    protected CloseableHttpClient createHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(
+                NumberUtils.toInt(AppContext.getProperty("cuba.remotingMaxConnections"), 100));
+        connectionManager.setDefaultMaxPerRoute(
+                NumberUtils.toInt(AppContext.getProperty("cuba.remotingMaxConnectionsPerRoute"), 20));
+        return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .disableContentCompression()
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    /**
+     * Closes the HTTP client and its connection pool. Invocations made after that fail.
+     */
+    @PreDestroy
+    public void close() {
+        CloseableHttpClient httpClient;
+        synchronized (this) {
+            httpClient = this.httpClient;
+            this.httpClient = null;
+            closed = true;
+        }
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                log.warn("Unable to close remoting HTTP client", e);
+            }
+        }
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+}
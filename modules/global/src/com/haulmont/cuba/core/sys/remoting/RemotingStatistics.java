@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates statistics of remote service invocations performed by {@link ClusteredHttpInvokerRequestExecutor}
+ * in the current JVM.
+ */
+public class RemotingStatistics {
+
+    private static final ConcurrentMap<String, ServiceStatistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a completed invocation.
+     *
+     * @param serviceName   service URL relative to the server URL
+     * @param requestBytes  size of the serialized request
+     * @param responseBytes size of the serialized response
+     * @param timeMillis    invocation time including failover attempts
+     */
+    public static void registerInvocation(String serviceName, long requestBytes, long responseBytes, long timeMillis) {
+        ServiceStatistics serviceStatistics = statistics.computeIfAbsent(serviceName, name -> new ServiceStatistics());
+        serviceStatistics.invocations.increment();
+        serviceStatistics.requestBytes.add(requestBytes);
+        serviceStatistics.responseBytes.add(responseBytes);
+        serviceStatistics.totalTime.add(timeMillis);
+        serviceStatistics.maxTime.accumulate(timeMillis);
+    }
+
+    /**
+     * Registers an invocation failed on all available servers.
+     */
+    public static void registerFailure(String serviceName) {
+        statistics.computeIfAbsent(serviceName, name -> new ServiceStatistics()).failures.increment();
+    }
+
+    /**
+     * @return statistics by service names, sorted by names
+     */
+    public static Map<String, ServiceStatistics> getStatistics() {
+        return new TreeMap<>(statistics);
+    }
+
+    public static void reset() {
+        statistics.clear();
+    }
+
+    public static class ServiceStatistics {
+
+        protected final LongAdder invocations = new LongAdder();
+        protected final LongAdder failures = new LongAdder();
+        protected final LongAdder requestBytes = new LongAdder();
+        protected final LongAdder responseBytes = new LongAdder();
+        protected final LongAdder totalTime = new LongAdder();
+        protected final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+        public long getInvocations() {
+            return invocations.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getRequestBytes() {
+            return requestBytes.sum();
+        }
+
+        public long getResponseBytes() {
+            return responseBytes.sum();
+        }
+
+        public long getTotalTime() {
+            return totalTime.sum();
+        }
+
+        public long getMaxTime() {
+            return maxTime.get();
+        }
+
+        public double getAvgTime() {
+            long count = getInvocations();
+            return count == 0 ? 0 : (double) getTotalTime() / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("invocations=%d, failures=%d, requestBytes=%d, responseBytes=%d, avgTime=%.1f, maxTime=%d",
+                    getInvocations(), getFailures(), getRequestBytes(), getResponseBytes(), getAvgTime(), getMaxTime());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security.entity;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+
+import static com.haulmont.cuba.security.entity.EntityLogAttr.*;
+
+/**
+ * Encodes and decodes attribute changes stored in {@link EntityLogItem#getChanges()}.
+ * <p>
+ * The current format is a version header followed by a sequence of length-prefixed fields, six fields per
+ * attribute: name, value, value id, old value, old value id and messages pack. Each field is written as
+ * {@code <length>:<characters>}, or {@code ~} for null. Decoding requires a single pass over the string without
+ * escaping and creates no intermediate maps.
+ * <p>
+ * Changes written by previous versions in the {@link Properties} format are decoded as well.
+ */
+public class EntityLogChangesFormat {
+
+    public static final String VERSION_HEADER = "#v2\n";
+
+    protected static final char NULL_MARK = '~';
+    protected static final char LENGTH_SEPARATOR = ':';
+
+    protected static final String[] LEGACY_SUFFIXES = new String[]{VALUE_ID_SUFFIX,
+            MP_SUFFIX, OLD_VALUE_SUFFIX, OLD_VALUE_ID_SUFFIX};
+
+    /**
+     * Encodes attributes to the current format.
+     */
+    public static String encode(Collection<EntityLogAttr> attributes) {
+        StringBuilder sb = new StringBuilder(VERSION_HEADER);
+        for (EntityLogAttr attr : attributes) {
+            appendField(sb, attr.getName());
+            appendField(sb, attr.getValue());
+            appendField(sb, attr.getValueId());
+            appendField(sb, attr.getOldValue());
+            appendField(sb, attr.getOldValueId());
+            appendField(sb, attr.getMessagesPack());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes attributes from the current or the legacy format.
+     *
+     * @param changes encoded changes, can be null
+     * @param item    log item to set to the decoded attributes
+     * @return decoded attributes in the order of encoding
+     */
+    public static List<EntityLogAttr> decode(@Nullable String changes, EntityLogItem item) {
+        if (StringUtils.isEmpty(changes)) {
+            return new ArrayList<>();
+        }
+        if (changes.startsWith(VERSION_HEADER)) {
+            return decodeFields(changes, item);
+        }
+        return decodeLegacy(changes, item);
+    }
+
+    /**
+     * @return true if the changes are stored in the legacy {@link Properties} format
+     */
+    public static boolean isLegacyFormat(@Nullable String changes) {
+        return StringUtils.isNotEmpty(changes) && !changes.startsWith(VERSION_HEADER);
+    }
+
+    protected static void appendField(StringBuilder sb, @Nullable String value) {
+        if (value == null) {
+            sb.append(NULL_MARK);
+        } else {
+            sb.append(value.length()).append(LENGTH_SEPARATOR).append(value);
+        }
+    }
+
+    protected static List<EntityLogAttr> decodeFields(String changes, EntityLogItem item) {
+        List<EntityLogAttr> attributes = new ArrayList<>();
+        FieldReader reader = new FieldReader(changes, VERSION_HEADER.length());
+        while (reader.hasNext()) {
+            EntityLogAttr attr = new EntityLogAttr();
+            attr.setLogItem(item);
+            attr.setName(reader.next());
+            attr.setValue(reader.next());
+            attr.setValueId(reader.next());
+            attr.setOldValue(reader.next());
+            attr.setOldValueId(reader.next());
+            attr.setMessagesPack(reader.next());
+            attributes.add(attr);
+        }
+        return attributes;
+    }
+
+    protected static List<EntityLogAttr> decodeLegacy(String changes, EntityLogItem item) {
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(changes));
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading entity log attributes", e);
+        }
+
+        return fromProperties(properties, item);
+    }
+
+    /**
+     * Converts attributes from the legacy {@link Properties} representation.
+     *
+     * @param properties attribute values keyed by attribute names and names with {@link EntityLogAttr} suffixes
+     * @param item       log item to set to the attributes, can be null
+     */
+    public static List<EntityLogAttr> fromProperties(Properties properties, @Nullable EntityLogItem item) {
+        List<EntityLogAttr> attributes = new ArrayList<>();
+        Enumeration<?> names = properties.propertyNames();
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+            if (StringUtils.endsWithAny(name, LEGACY_SUFFIXES))
+                continue;
+
+            EntityLogAttr attr = new EntityLogAttr();
+            attr.setLogItem(item);
+            attr.setName(name);
+            attr.setValue(properties.getProperty(name));
+            attr.setValueId(properties.getProperty(name + VALUE_ID_SUFFIX));
+            attr.setOldValue(properties.getProperty(name + OLD_VALUE_SUFFIX));
+            attr.setOldValueId(properties.getProperty(name + OLD_VALUE_ID_SUFFIX));
+            attr.setMessagesPack(properties.getProperty(name + MP_SUFFIX));
+            attributes.add(attr);
+        }
+        return attributes;
+    }
+
+    /**
+     * Converts attributes to the legacy {@link Properties} representation.
+     */
+    public static Properties toProperties(Collection<EntityLogAttr> attributes) {
+        Properties properties = new Properties();
+        for (EntityLogAttr attr : attributes) {
+            properties.setProperty(attr.getName(), attr.getValue());
+            if (attr.getValueId() != null) {
+                properties.setProperty(attr.getName() + VALUE_ID_SUFFIX, attr.getValueId());
+            }
+            if (attr.getOldValue() != null) {
+                properties.setProperty(attr.getName() + OLD_VALUE_SUFFIX, attr.getOldValue());
+            }
+            if (attr.getOldValueId() != null) {
+                properties.setProperty(attr.getName() + OLD_VALUE_ID_SUFFIX, attr.getOldValueId());
+            }
+            if (attr.getMessagesPack() != null) {
+                properties.setProperty(attr.getName() + MP_SUFFIX, attr.getMessagesPack());
+            }
+        }
+        return properties;
+    }
+
+    protected static class FieldReader {
+
+        protected final String source;
+        protected int position;
+
+        protected FieldReader(String source, int position) {
+            this.source = source;
+            this.position = position;
+        }
+
+        protected boolean hasNext() {
+            return position < source.length();
+        }
+
+        @Nullable
+        protected String next() {
+            if (!hasNext()) {
+                throw new IllegalStateException("Unexpected end of entity log changes at " + position);
+            }
+            if (source.charAt(position) == NULL_MARK) {
+                position++;
+                return null;
+            }
+            int separator = source.indexOf(LENGTH_SEPARATOR, position);
+            if (separator < 0) {
+                throw new IllegalStateException("Invalid entity log changes at " + position);
+            }
+            int length = Integer.parseInt(source.substring(position, separator));
+            int start = separator + 1;
+            position = start + length;
+            if (position > source.length()) {
+                throw new IllegalStateException("Unexpected end of entity log changes at " + start);
+            }
+            return source.substring(start, position);
+        }
+    }
+}
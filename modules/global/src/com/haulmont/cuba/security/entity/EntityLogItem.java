@@ -31,11 +31,12 @@ import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.Messages;
 import com.haulmont.cuba.core.global.Metadata;
 
+import org.slf4j.LoggerFactory;
+
 import javax.annotation.PostConstruct;
 import javax.persistence.*;
 import javax.persistence.Entity;
-import java.util.Date;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Record containing information about entity lifecycle event.
@@ -120,6 +121,9 @@ public class EntityLogItem extends BaseUuidEntity implements Creatable, TenantEn
     @Column(name = "CHANGES")
     private String changes;
 
+    @Transient
+    private boolean attributesDecodedOnAccess;
+
     @PostConstruct
     public void init() {
         Metadata metadata = AppBeans.get(Metadata.NAME);
@@ -199,11 +203,35 @@ public class EntityLogItem extends BaseUuidEntity implements Creatable, TenantEn
     }
 
     public Set<EntityLogAttr> getAttributes() {
+        if (attributes == null && attributesDecodedOnAccess) {
+            attributesDecodedOnAccess = false;
+            attributes = decodeAttributes();
+        }
         return attributes;
     }
 
     public void setAttributes(Set<EntityLogAttr> attributes) {
         this.attributes = attributes;
+        this.attributesDecodedOnAccess = false;
+    }
+
+    /**
+     * INTERNAL. Makes {@link #getAttributes()} decode the attributes from the loaded {@link #getChanges()} value
+     * on first access.
+     */
+    public void decodeAttributesOnAccess() {
+        this.attributesDecodedOnAccess = true;
+    }
+
+    protected Set<EntityLogAttr> decodeAttributes() {
+        List<EntityLogAttr> decoded = new ArrayList<>();
+        try {
+            decoded = EntityLogChangesFormat.decode(getChanges(), this);
+        } catch (Exception e) {
+            LoggerFactory.getLogger(EntityLogItem.class).error("Unable to fill EntityLog attributes for {}", this, e);
+        }
+        decoded.sort(Comparator.comparing(EntityLogAttr::getName));
+        return new LinkedHashSet<>(decoded);
     }
 
     public String getChanges() {
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityLogChangesFormatTest {
+
+    @Test
+    public void testRoundTrip() {
+        EntityLogItem item = new EntityLogItem();
+
+        EntityLogAttr name = createAttr("name", "new:name\n=~", null, "old name", null, null);
+        EntityLogAttr group = createAttr("group", "Company", "0fa2b1a5-1d68-4d69-9fbd-dff348347f93",
+                "", "6a9a2a5c-8a1d-4b5e-8c8a-1f3b2d3e6ab1", "com.haulmont.cuba.security.entity");
+
+        String changes = EntityLogChangesFormat.encode(Arrays.asList(name, group));
+        assertTrue(changes.startsWith(EntityLogChangesFormat.VERSION_HEADER));
+        assertFalse(EntityLogChangesFormat.isLegacyFormat(changes));
+
+        List<EntityLogAttr> attributes = EntityLogChangesFormat.decode(changes, item);
+        assertEquals(2, attributes.size());
+        assertAttr(name, attributes.get(0));
+        assertAttr(group, attributes.get(1));
+        assertSame(item, attributes.get(0).getLogItem());
+    }
+
+    @Test
+    public void testEmpty() {
+        EntityLogItem item = new EntityLogItem();
+
+        assertTrue(EntityLogChangesFormat.decode(null, item).isEmpty());
+        assertTrue(EntityLogChangesFormat.decode("", item).isEmpty());
+        assertTrue(EntityLogChangesFormat.decode(EntityLogChangesFormat.encode(Collections.emptyList()), item).isEmpty());
+    }
+
+    @Test
+    public void testLegacyFormat() {
+        EntityLogItem item = new EntityLogItem();
+        String changes = "name=new name\n" +
+                "name-oldVl=old name\n" +
+                "group=Company\n" +
+                "group-id=0fa2b1a5-1d68-4d69-9fbd-dff348347f93\n" +
+                "group-mp=com.haulmont.cuba.security.entity\n";
+        assertTrue(EntityLogChangesFormat.isLegacyFormat(changes));
+
+        List<EntityLogAttr> attributes = EntityLogChangesFormat.decode(changes, item);
+        attributes.sort((a1, a2) -> a1.getName().compareTo(a2.getName()));
+
+        assertEquals(2, attributes.size());
+        assertAttr(createAttr("group", "Company", "0fa2b1a5-1d68-4d69-9fbd-dff348347f93",
+                null, null, "com.haulmont.cuba.security.entity"), attributes.get(0));
+        assertAttr(createAttr("name", "new name", null, "old name", null, null), attributes.get(1));
+    }
+
+    @Test
+    public void testPropertiesConversion() {
+        EntityLogAttr name = createAttr("name", "new name", null, "old name", null, null);
+        EntityLogAttr group = createAttr("group", "Company", "0fa2b1a5-1d68-4d69-9fbd-dff348347f93",
+                "", "6a9a2a5c-8a1d-4b5e-8c8a-1f3b2d3e6ab1", "com.haulmont.cuba.security.entity");
+
+        Properties properties = EntityLogChangesFormat.toProperties(Arrays.asList(name, group));
+        assertEquals("old name", properties.getProperty("name" + EntityLogAttr.OLD_VALUE_SUFFIX));
+
+        List<EntityLogAttr> attributes = EntityLogChangesFormat.fromProperties(properties, null);
+        attributes.sort((a1, a2) -> a1.getName().compareTo(a2.getName()));
+
+        assertEquals(2, attributes.size());
+        assertAttr(group, attributes.get(0));
+        assertAttr(name, attributes.get(1));
+        assertNull(attributes.get(0).getLogItem());
+    }
+
+    @Test
+    public void testTruncated() {
+        String changes = EntityLogChangesFormat.encode(Arrays.asList(
+                createAttr("name", "value", null, null, null, null)));
+
+        assertThrows(IllegalStateException.class, () ->
+                EntityLogChangesFormat.decode(changes.substring(0, changes.length() - 3), new EntityLogItem()));
+    }
+
+    @Test
+    public void testDecodeOnAccess() {
+        EntityLogItem item = new EntityLogItem();
+        item.setChanges(EntityLogChangesFormat.encode(Arrays.asList(
+                createAttr("name", "new name", null, null, null, null),
+                createAttr("active", "true", null, "false", null, null))));
+        assertNull(item.getAttributes());
+
+        item.decodeAttributesOnAccess();
+        Set<EntityLogAttr> attributes = item.getAttributes();
+        assertEquals(2, attributes.size());
+        assertSame(attributes, item.getAttributes());
+
+        Iterator<EntityLogAttr> iterator = attributes.iterator();
+        assertEquals("active", iterator.next().getName());
+        assertEquals("name", iterator.next().getName());
+
+        item.decodeAttributesOnAccess();
+        item.setAttributes(null);
+        assertNull(item.getAttributes());
+    }
+
+    private EntityLogAttr createAttr(String name, String value, String valueId,
+                                     String oldValue, String oldValueId, String messagesPack) {
+        EntityLogAttr attr = new EntityLogAttr();
+        attr.setName(name);
+        attr.setValue(value);
+        attr.setValueId(valueId);
+        attr.setOldValue(oldValue);
+        attr.setOldValueId(oldValueId);
+        attr.setMessagesPack(messagesPack);
+        return attr;
+    }
+
+    private void assertAttr(EntityLogAttr expected, EntityLogAttr actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getValue(), actual.getValue());
+        assertEquals(expected.getValueId(), actual.getValueId());
+        assertEquals(expected.getOldValue(), actual.getOldValue());
+        assertEquals(expected.getOldValueId(), actual.getOldValueId());
+        assertEquals(expected.getMessagesPack(), actual.getMessagesPack());
+    }
+}
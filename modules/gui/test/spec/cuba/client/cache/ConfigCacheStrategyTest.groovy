@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2008-2020 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package spec.cuba.client.cache
+
+import com.haulmont.cuba.client.sys.cache.CacheUserSessionProvider
+import com.haulmont.cuba.client.sys.cache.ClientCacheManager
+import com.haulmont.cuba.client.sys.cache.ConfigCacheStrategy
+import com.haulmont.cuba.core.app.ConfigStorageService
+import com.haulmont.cuba.core.sys.AppComponents
+import com.haulmont.cuba.core.sys.AppContext
+import com.haulmont.cuba.security.entity.User
+import com.haulmont.cuba.security.global.UserSession
+import spock.lang.Specification
+
+class ConfigCacheStrategyTest extends Specification {
+
+    private ConfigCacheStrategy strategy
+    private ClientCacheManager clientCacheManager
+    private ConfigStorageService configStorageService
+
+    void setupSpec() {
+        AppContext.Internals.setAppComponents(new AppComponents('web'))
+    }
+
+    void setup() {
+        configStorageService = Mock(ConfigStorageService)
+        clientCacheManager = new ClientCacheManager()
+
+        def session = new UserSession(UUID.randomUUID(), new User(login: 'admin'), [], Locale.ENGLISH, true)
+
+        strategy = new ConfigCacheStrategy()
+        strategy.configStorageService = configStorageService
+        strategy.clientCacheManager = clientCacheManager
+        strategy.cacheUserSessionProvider = Stub(CacheUserSessionProvider) {
+            getUserSession() >> session
+        }
+        clientCacheManager.addCachedObject(ConfigCacheStrategy.NAME, strategy)
+    }
+
+    void cleanup() {
+        clientCacheManager.destroy()
+    }
+
+    def "properties are transferred only when the version has changed"() {
+        when: "the cache is loaded for the first time"
+        def properties = clientCacheManager.getCached(ConfigCacheStrategy.NAME)
+
+        then:
+        1 * configStorageService.getDbPropertiesVersion() >> 1L
+        1 * configStorageService.getDbProperties() >> [prop: 'value1']
+        properties == [prop: 'value1']
+
+        when: "the version is unchanged"
+        strategy.updateCacheInBackground()
+
+        then:
+        1 * configStorageService.getDbPropertiesVersion() >> 1L
+        0 * configStorageService.getDbProperties()
+        clientCacheManager.getCached(ConfigCacheStrategy.NAME) == [prop: 'value1']
+
+        when: "the version has changed"
+        strategy.updateCacheInBackground()
+
+        then:
+        1 * configStorageService.getDbPropertiesVersion() >> 2L
+        1 * configStorageService.getDbProperties() >> [prop: 'value2']
+        clientCacheManager.getCached(ConfigCacheStrategy.NAME) == [prop: 'value2']
+    }
+
+    def "cache cleared during the background update is reloaded on the next access"() {
+        when:
+        clientCacheManager.getCached(ConfigCacheStrategy.NAME)
+
+        then:
+        1 * configStorageService.getDbPropertiesVersion() >> 1L
+        1 * configStorageService.getDbProperties() >> [prop: 'value1']
+
+        when: "the cache is cleared after the version has been polled"
+        strategy.updateCacheInBackground()
+
+        then:
+        1 * configStorageService.getDbPropertiesVersion() >> {
+            strategy.clearCache()
+            1L
+        }
+        0 * configStorageService.getDbProperties()
+        strategy.needToReload()
+
+        when:
+        def properties = clientCacheManager.getCached(ConfigCacheStrategy.NAME)
+
+        then:
+        1 * configStorageService.getDbPropertiesVersion() >> 1L
+        1 * configStorageService.getDbProperties() >> [prop: 'value2']
+        properties == [prop: 'value2']
+        !strategy.needToReload()
+    }
+
+    def "properties fetched before the cache is cleared are not applied"() {
+        when:
+        strategy.loadObject()
+
+        then:
+        1 * configStorageService.getDbPropertiesVersion() >> 1L
+        1 * configStorageService.getDbProperties() >> [prop: 'value1']
+
+        when: "the cache is cleared while the changed properties are transferred"
+        strategy.updateCacheInBackground()
+
+        then:
+        1 * configStorageService.getDbPropertiesVersion() >> 2L
+        1 * configStorageService.getDbProperties() >> {
+            strategy.clearCache()
+            [prop: 'value2']
+        }
+        strategy.getObject() == null
+        strategy.needToReload()
+    }
+}
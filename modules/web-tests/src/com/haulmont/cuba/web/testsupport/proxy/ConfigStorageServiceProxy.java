@@ -30,6 +30,11 @@ public class ConfigStorageServiceProxy implements ConfigStorageService {
         return Collections.emptyMap();
     }
 
+    @Override
+    public long getDbPropertiesVersion() {
+        return 0;
+    }
+
     @Override
     public String getDbProperty(String name) {
         return null;